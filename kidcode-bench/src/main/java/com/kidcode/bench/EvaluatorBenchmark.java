@@ -0,0 +1,68 @@
+package com.kidcode.bench;
+
+import com.kidcode.core.analysis.Optimizer;
+import com.kidcode.core.analysis.Resolver;
+import com.kidcode.core.analysis.TypeInference;
+import com.kidcode.core.ast.Scope;
+import com.kidcode.core.ast.Statement;
+import com.kidcode.core.bytecode.Bytecode;
+import com.kidcode.core.bytecode.BytecodeCompiler;
+import com.kidcode.core.bytecode.VirtualMachine;
+import com.kidcode.core.evaluator.Environment;
+import com.kidcode.core.evaluator.Evaluator;
+import com.kidcode.core.evaluator.ResourceLimits;
+import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.parser.Parser;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Running an already parsed, optimized and resolved program (the same
+// pipeline as KidCodeEngine), in both engines. Events
+// go straight into a Blackhole, so only the engine is measured.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+public class EvaluatorBenchmark {
+
+    private List<Statement> program;
+    private Scope globalScope;
+    private Bytecode bytecode;
+
+    @Setup
+    public void prepare(Workload workload) {
+        Parser parser = new Parser(new Lexer(workload.runnableSource));
+        List<Statement> parsed = parser.parseProgram();
+        if (!parser.getErrors().isEmpty()) {
+            throw new IllegalStateException("Workload does not parse: " + parser.getErrors());
+        }
+        List<Statement> optimized = new Optimizer(ResourceLimits.DEFAULT).optimize(parsed);
+        Resolver resolver = new Resolver();
+        List<Statement> resolved = resolver.resolve(optimized);
+        globalScope = resolver.getGlobalScope();
+        program = new TypeInference(globalScope).infer(resolved);
+        bytecode = new BytecodeCompiler().compile(program);
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        new Evaluator(() -> false).evaluate(program, new Environment(globalScope), blackhole::consume);
+    }
+
+    @Benchmark
+    public void bytecode(Blackhole blackhole) {
+        new VirtualMachine(() -> false).execute(bytecode, new Environment(globalScope), blackhole::consume);
+    }
+}
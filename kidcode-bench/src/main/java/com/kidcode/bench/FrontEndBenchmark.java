@@ -0,0 +1,41 @@
+package com.kidcode.bench;
+
+import com.kidcode.core.ast.Statement;
+import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.lexer.Token;
+import com.kidcode.core.lexer.TokenBuffer;
+import com.kidcode.core.parser.Parser;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Lexing and parsing. parseProgram includes the packed lexing it starts
+// with, so the parser's own cost is the difference from tokenize.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmark {
+
+    @Benchmark
+    public List<Token> allTokens(Workload workload) {
+        return new Lexer(workload.source).allTokens();
+    }
+
+    @Benchmark
+    public TokenBuffer tokenize(Workload workload) {
+        return new Lexer(workload.source).tokenize();
+    }
+
+    @Benchmark
+    public List<Statement> parseProgram(Workload workload) {
+        return new Parser(new Lexer(workload.source)).parseProgram();
+    }
+}
@@ -0,0 +1,75 @@
+package com.kidcode.bench;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.event.BinaryEventWriter;
+import com.kidcode.core.event.ExecutionEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Turning a run's events into response bytes: the whole list with Jackson
+// (how /api/execute used to answer), one event at a time through a typed
+// writer (how the streaming JsonEventSink does it), and BinaryEventFormat.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ObjectWriter listWriter;
+    private ObjectWriter eventWriter;
+    private List<ExecutionEvent> events;
+
+    @Setup
+    public void prepare(Workload workload) {
+        events = new KidCodeEngine().execute(workload.runnableSource);
+        listWriter = mapper.writerFor(new TypeReference<List<ExecutionEvent>>() {});
+        eventWriter = mapper.writerFor(ExecutionEvent.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Benchmark
+    public byte[] jsonList() throws IOException {
+        return listWriter.writeValueAsBytes(events);
+    }
+
+    @Benchmark
+    public byte[] jsonStreaming() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            for (ExecutionEvent event : events) {
+                eventWriter.writeValue(generator, event);
+            }
+            generator.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] binary() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BinaryEventWriter writer = new BinaryEventWriter(out)) {
+            events.forEach(writer::accept);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,163 @@
+package com.kidcode.bench;
+
+import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.parser.Parser;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// The KidCode program a benchmark runs, shared by all of them so lexer,
+// parser, evaluator and serialization numbers describe the same inputs.
+//
+//   corpus     every test_scripts/*.kc file, one after the other (found in
+//              -Dkidcode.bench.scripts, ./test_scripts or ../test_scripts).
+//              Some scripts have syntax errors on purpose; the benchmarks
+//              that run programs use runnableSource, which leaves them out.
+//   repeats    nested repeat loops of moves and turns
+//   recursion  a recursive tree, drawn 'scale' times
+//   lists      list literals, nested lists and indexing
+//   strings    string concatenation and say
+//
+// 'scale' is how many copies of the generated block the program has, so it
+// grows the source and the work together. The corpus ignores it.
+@State(Scope.Benchmark)
+public class Workload {
+
+    @Param({"corpus", "repeats", "recursion", "lists", "strings"})
+    public String workload;
+
+    @Param({"20"})
+    public int scale;
+
+    public String source;
+    public String runnableSource;
+
+    @Setup
+    public void load() {
+        source = source(workload, scale);
+        runnableSource = workload.equals("corpus") ? corpus(true) : source;
+    }
+
+    public static String source(String workload, int scale) {
+        return switch (workload) {
+            case "corpus" -> corpus(false);
+            case "repeats" -> repeats(scale);
+            case "recursion" -> recursion(scale);
+            case "lists" -> lists(scale);
+            case "strings" -> strings(scale);
+            default -> throw new IllegalArgumentException("Unknown workload: " + workload);
+        };
+    }
+
+    static String corpus(boolean runnableOnly) {
+        Path dir = Paths.get(System.getProperty("kidcode.bench.scripts", "test_scripts"));
+        if (!Files.isDirectory(dir)) {
+            dir = Paths.get("..", "test_scripts");
+        }
+        StringBuilder source = new StringBuilder();
+        try (Stream<Path> scripts = Files.list(dir)) {
+            for (Path file : scripts.filter(p -> p.toString().endsWith(".kc")).sorted().toList()) {
+                String script = Files.readString(file);
+                if (runnableOnly && !parses(script)) continue;
+                source.append(script).append('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the test_scripts corpus from " + dir.toAbsolutePath(), e);
+        }
+        return source.toString();
+    }
+
+    private static boolean parses(String script) {
+        Parser parser = new Parser(new Lexer(script));
+        parser.parseProgram();
+        return parser.getErrors().isEmpty();
+    }
+
+    static String repeats(int scale) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < scale; i++) {
+            source.append("""
+                    repeat 4
+                        repeat 10
+                            repeat 10
+                                move forward 2
+                                turn right 7
+                            end repeat
+                            pen up
+                            move forward 1
+                            pen down
+                        end repeat
+                        color "red"
+                        turn left 90
+                    end repeat
+                    """);
+        }
+        return source.toString();
+    }
+
+    static String recursion(int scale) {
+        StringBuilder source = new StringBuilder("""
+                define branch size
+                    if size == 0
+                        turn right 0
+                    else
+                        move forward size * 4
+                        turn left 30
+                        branch size - 1
+                        turn right 60
+                        branch size - 1
+                        turn left 30
+                        move forward 0 - size * 4
+                    end if
+                end define
+                """);
+        for (int i = 0; i < scale; i++) {
+            source.append("branch 6\nturn right 18\n");
+        }
+        return source.toString();
+    }
+
+    static String lists(int scale) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < scale; i++) {
+            source.append("""
+                    set row = [1, 2, 3, 4, 5, 6, 7, 8, 9, 10]
+                    set grid = [row, row, row, [row, row]]
+                    set total = 0
+                    repeat 10
+                        set total = total + grid[3][1][total / 10] + row[2]
+                        move forward row[4]
+                        turn right grid[0][9] * 3
+                    end repeat
+                    say grid[3]
+                    """);
+        }
+        return source.toString();
+    }
+
+    static String strings(int scale) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < scale; i++) {
+            source.append("""
+                    set text = "Cody"
+                    set n = 0
+                    repeat 20
+                        set text = text + " draws"
+                        set n = n + 1
+                        if n != 7
+                            say "Now: " + text + " " + [n, 2]
+                        end if
+                    end repeat
+                    color "blue"
+                    """);
+        }
+        return source.toString();
+    }
+}
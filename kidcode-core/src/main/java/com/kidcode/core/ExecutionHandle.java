@@ -0,0 +1,113 @@
+package com.kidcode.core;
+
+import com.kidcode.core.evaluator.RunMonitor;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// One run of a program, seen from any thread: stop it, follow its
+// progress, or wait for its ExecutionResult.
+//
+// KidCodeEngine.start() returns one for a run on the engine's executor. To
+// run on your own thread but still be stoppable from another, create one
+// and pass it to KidCodeEngine.execute(). A handle is good for one run.
+//
+// cancel() only asks: the run notices at its next poll (every 1024 steps),
+// sends no more events, closes its sink and completes with STOPPED. A
+// handle cancelled before its run starts completes without running
+// anything, so a queued run that nobody wants any more never takes a thread.
+public final class ExecutionHandle {
+    private final CompletableFuture<ExecutionResult> result = new CompletableFuture<>();
+    private volatile boolean cancelled = false;
+    private volatile long instructions = 0;
+    private volatile long events = 0;
+
+    private final RunMonitor monitor = new RunMonitor() {
+        @Override
+        public boolean getAsBoolean() {
+            return cancelled;
+        }
+
+        @Override
+        public void progress(long instructions, long events) {
+            ExecutionHandle.this.instructions = instructions;
+            ExecutionHandle.this.events = events;
+        }
+    };
+
+    public ExecutionHandle() {
+        // Cancelling the future (say, by a caller that gave up on it) stops the run too.
+        result.whenComplete((r, e) -> {
+            if (e instanceof CancellationException) cancelled = true;
+        });
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    // Statements and events so far. While the run goes on these are updated
+    // at every poll; once it is done they are its final counts.
+    public long instructions() {
+        return instructions;
+    }
+
+    public long events() {
+        return events;
+    }
+
+    // Completes when the run has ended and its sink is closed; exceptionally
+    // if the run failed (a sink that could not write, for instance).
+    public CompletableFuture<ExecutionResult> result() {
+        return result;
+    }
+
+    public ExecutionResult await() throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    // Waits at most 'timeout' for the run, then cancels it and waits for it
+    // to stop, so a caller that stops waiting also frees the run's thread.
+    public ExecutionResult await(Duration timeout) throws InterruptedException {
+        try {
+            return result.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            cancel();
+            return await();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    // --- Used by KidCodeEngine ---
+
+    RunMonitor monitor() {
+        return monitor;
+    }
+
+    void complete(ExecutionResult outcome) {
+        instructions = outcome.instructions();
+        events = outcome.events();
+        result.complete(outcome);
+    }
+
+    void fail(Throwable failure) {
+        result.completeExceptionally(failure);
+    }
+}
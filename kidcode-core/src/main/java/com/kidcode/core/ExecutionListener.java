@@ -0,0 +1,35 @@
+package com.kidcode.core;
+
+import com.kidcode.core.evaluator.ResourceLimits;
+
+// Hooks KidCodeEngine calls while it runs a program, so a host can time the
+// phases and count outcomes without the core depending on a metrics library.
+// Called on the thread running the program; every method is optional. One
+// listener serves every run of its engine, so it is called from as many
+// threads as run at once.
+public interface ExecutionListener {
+
+    ExecutionListener NONE = new ExecutionListener() {};
+
+    enum Phase {
+        LEX,      // source to tokens
+        PARSE,    // tokens to AST
+        ANALYZE,  // Optimizer, Resolver and TypeInference
+        COMPILE,  // AST to bytecode (BYTECODE mode only)
+        EVALUATE  // running the program, including time spent in the sink
+    }
+
+    enum Outcome {
+        COMPLETED,
+        PARSE_FAILED,
+        STOPPED,   // cancelled through its ExecutionHandle
+        EXHAUSTED  // a ResourceLimits budget ran out
+    }
+
+    // A phase finished after 'nanos' nanoseconds.
+    default void phase(Phase phase, long nanos) {}
+
+    // The run ended, before the sink is closed. 'exhausted' is set for
+    // EXHAUSTED only; 'instructions' and 'events' are what the run used.
+    default void finished(Outcome outcome, ResourceLimits.Budget exhausted, long instructions, long events) {}
+}
@@ -0,0 +1,9 @@
+package com.kidcode.core;
+
+// Which engine KidCodeEngine uses to run a parsed program.
+public enum ExecutionMode {
+    // Walks the AST directly (the original Evaluator).
+    INTERPRETER,
+    // Compiles the AST to bytecode and runs it on the VirtualMachine.
+    BYTECODE
+}
@@ -0,0 +1,9 @@
+package com.kidcode.core;
+
+import com.kidcode.core.evaluator.ResourceLimits;
+
+// How a run ended, as ExecutionListener.finished reports it: 'exhausted' is
+// set for EXHAUSTED only, and 'instructions' and 'events' are what the run
+// used (for PARSE_FAILED, no instructions and one event per error).
+public record ExecutionResult(ExecutionListener.Outcome outcome, ResourceLimits.Budget exhausted,
+                              long instructions, long events) {}
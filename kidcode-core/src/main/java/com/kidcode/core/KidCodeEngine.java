@@ -1,41 +1,269 @@
 package com.kidcode.core;
 
+import com.kidcode.core.analysis.Optimizer;
+import com.kidcode.core.analysis.Resolver;
+import com.kidcode.core.analysis.TypeInference;
 import com.kidcode.core.ast.Statement;
+import com.kidcode.core.bytecode.Bytecode;
+import com.kidcode.core.bytecode.BytecodeCompiler;
+import com.kidcode.core.bytecode.VirtualMachine;
 import com.kidcode.core.evaluator.Environment;
 import com.kidcode.core.evaluator.Evaluator;
+import com.kidcode.core.evaluator.Governor;
+import com.kidcode.core.evaluator.LineProfile;
+import com.kidcode.core.evaluator.LineProfiler;
+import com.kidcode.core.evaluator.ResourceLimits;
+import com.kidcode.core.event.EventSink;
 import com.kidcode.core.event.ExecutionEvent;
 import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.lexer.TokenBuffer;
+import com.kidcode.core.lexer.Utf8Source;
 import com.kidcode.core.parser.Parser;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Supplier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
 
+// Runs KidCode programs. An engine holds only its configuration, so one
+// engine can run any number of programs, one after another or at the same
+// time on different threads; everything about a run lives in that run, and
+// in its ExecutionHandle for whoever wants to stop or follow it.
 public class KidCodeEngine {
 
-    private volatile boolean executionStopped = false;
+    // Stack size for threads that run programs. The Evaluator recurses per
+    // call and per nested block; this leaves room for the default call depth
+    // with deeply nested blocks in every call, where a default 1 MB stack
+    // holds a few hundred calls.
+    public static final long THREAD_STACK_SIZE = 16L << 20;
 
-    public void stopExecution() {
-        this.executionStopped = true;
+    // Where start() runs programs unless the engine was given an executor:
+    // a thread per run, kept for a minute in case another run comes along.
+    private static final ExecutorService RUNS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(null, runnable, "kidcode-run", THREAD_STACK_SIZE);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutionMode mode;
+    private final ResourceLimits limits;
+    private final ExecutionListener listener;
+    private final Executor executor;
+    private final boolean optimizing;
+    private final boolean memoizing;
+
+    public KidCodeEngine() {
+        this(ExecutionMode.INTERPRETER);
+    }
+
+    public KidCodeEngine(ExecutionMode mode) {
+        this(mode, ResourceLimits.DEFAULT);
+    }
+
+    public KidCodeEngine(ExecutionMode mode, ResourceLimits limits) {
+        this(mode, limits, ExecutionListener.NONE);
+    }
+
+    public KidCodeEngine(ExecutionMode mode, ResourceLimits limits, ExecutionListener listener) {
+        this(mode, limits, listener, RUNS);
+    }
+
+    public KidCodeEngine(ExecutionMode mode, ResourceLimits limits, ExecutionListener listener, Executor executor) {
+        this(mode, limits, listener, executor, true, true);
+    }
+
+    private KidCodeEngine(ExecutionMode mode, ResourceLimits limits, ExecutionListener listener, Executor executor,
+                          boolean optimizing, boolean memoizing) {
+        this.mode = mode;
+        this.limits = limits;
+        this.listener = listener;
+        this.executor = executor;
+        this.optimizing = optimizing;
+        this.memoizing = memoizing;
+    }
+
+    // The same engine without the Optimizer, or without the Evaluator's
+    // MotionMemo, for tests that check those change nothing a program sees.
+    KidCodeEngine unoptimized() {
+        return new KidCodeEngine(mode, limits, listener, executor, false, memoizing);
+    }
+
+    KidCodeEngine unmemoized() {
+        return new KidCodeEngine(mode, limits, listener, executor, optimizing, false);
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    public ResourceLimits getLimits() {
+        return limits;
+    }
+
+    // Runs the program on the engine's executor and returns at once. The
+    // events go to the sink, which is closed when the run ends.
+    public ExecutionHandle start(CharSequence sourceCode, EventSink sink) {
+        ExecutionHandle handle = new ExecutionHandle();
+        try {
+            executor.execute(() -> {
+                try {
+                    execute(sourceCode, sink, handle);
+                } catch (RuntimeException e) {
+                    // Already passed on through the handle's result.
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            sink.close();
+            handle.fail(e);
+        }
+        return handle;
+    }
+
+    // Same, for a caller that only wants the result and the progress.
+    public ExecutionHandle start(CharSequence sourceCode) {
+        return start(sourceCode, event -> {});
     }
 
     public List<ExecutionEvent> execute(String sourceCode) {
-        this.executionStopped = false;
+        List<ExecutionEvent> events = new ArrayList<>();
+        execute(sourceCode, events::add);
+        return events;
+    }
 
-        Lexer lexer = new Lexer(sourceCode);
-        Parser parser = new Parser(lexer);
+    public List<ExecutionEvent> execute(Path sourceFile) throws IOException {
+        List<ExecutionEvent> events = new ArrayList<>();
+        execute(sourceFile, events::add);
+        return events;
+    }
+
+    // Runs a UTF-8 script file. The file is memory-mapped and lexed in
+    // place (see Utf8Source) instead of being decoded into a String first.
+    // If it cannot be read, the sink is closed and the error rethrown.
+    public ExecutionResult execute(Path sourceFile, EventSink sink) throws IOException {
+        Utf8Source source;
+        try {
+            source = Utf8Source.map(sourceFile);
+        } catch (IOException e) {
+            sink.close();
+            throw e;
+        }
+        return execute(source, sink);
+    }
+
+    // Streams the run's events into the sink as they are produced, then
+    // closes it (also when execution is stopped or fails).
+    public ExecutionResult execute(CharSequence sourceCode, EventSink sink) {
+        return execute(sourceCode, sink, new ExecutionHandle());
+    }
+
+    // Same, on the calling thread, but stoppable through 'handle' from any
+    // other; the handle's result completes once the sink is closed.
+    public ExecutionResult execute(CharSequence sourceCode, EventSink sink, ExecutionHandle handle) {
+        return run(sourceCode, sink, null, handle).result();
+    }
+
+    // Same as execute, and also returns how many statements, how much time
+    // and how many events each source line took (see LineProfiler). The
+    // time includes what the sink spends on the line's events. A run that
+    // is stopped or runs out of a budget still has a profile up to there.
+    public LineProfile profile(CharSequence sourceCode, EventSink sink) {
+        return profile(sourceCode, sink, new ExecutionHandle());
+    }
+
+    public LineProfile profile(CharSequence sourceCode, EventSink sink, ExecutionHandle handle) {
+        LineProfiler profiler = new LineProfiler();
+        List<Statement> program = run(sourceCode, sink, profiler, handle).program();
+        return (program != null) ? profiler.result(program) : LineProfile.EMPTY;
+    }
+
+    // The program that ran (null if it did not parse or never started) and how it ended.
+    private record Ran(List<Statement> program, ExecutionResult result) {}
+
+    private Ran run(CharSequence sourceCode, EventSink sink, LineProfiler profiler, ExecutionHandle handle) {
+        Ran ran;
+        try {
+            if (handle.isCancelled()) {
+                sink.close();
+                ran = new Ran(null, finished(ExecutionListener.Outcome.STOPPED, null, 0, 0));
+            } else {
+                try (sink) {
+                    ran = run(sourceCode, sink, profiler, handle.monitor());
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            handle.fail(e);
+            throw e;
+        }
+        handle.complete(ran.result());
+        return ran;
+    }
+
+    private Ran run(CharSequence sourceCode, EventSink sink, LineProfiler profiler, BooleanSupplier stopSignal) {
+        long start = System.nanoTime();
+        TokenBuffer tokens = new Lexer(sourceCode).tokenize();
+        start = phaseDone(ExecutionListener.Phase.LEX, start);
+        Parser parser = new Parser(tokens);
         List<Statement> program = parser.parseProgram();
+        start = phaseDone(ExecutionListener.Phase.PARSE, start);
 
         List<String> errors = parser.getErrors();
         if (!errors.isEmpty()) {
-            List<ExecutionEvent> errorEvents = new ArrayList<>();
-            errors.forEach(err -> errorEvents.add(new ExecutionEvent.ErrorEvent(err)));
-            return errorEvents;
+            errors.forEach(err -> sink.accept(new ExecutionEvent.ErrorEvent(err)));
+            return new Ran(null, finished(ExecutionListener.Outcome.PARSE_FAILED, null, 0, errors.size()));
+        }
+
+        if (optimizing) {
+            program = new Optimizer(limits).optimize(program);
         }
+        Resolver resolver = new Resolver();
+        program = resolver.resolve(program);
+        program = new TypeInference(resolver.getGlobalScope()).infer(program);
+        start = phaseDone(ExecutionListener.Phase.ANALYZE, start);
 
-        Supplier<Boolean> stopSignal = () -> executionStopped;
-        Evaluator evaluator = new Evaluator(stopSignal);
-        Environment environment = new Environment();
+        Environment environment = new Environment(resolver.getGlobalScope());
+
+        Governor governor;
+        ResourceLimits.Budget exhausted;
+        if (mode == ExecutionMode.BYTECODE) {
+            VirtualMachine vm = new VirtualMachine(stopSignal, limits, profiler);
+            Bytecode bytecode = new BytecodeCompiler().compile(program);
+            start = phaseDone(ExecutionListener.Phase.COMPILE, start);
+            if (profiler != null) profiler.start();
+            vm.execute(bytecode, environment, sink);
+            exhausted = vm.getExhausted();
+            governor = vm.getGovernor();
+        } else {
+            Evaluator evaluator = new Evaluator(stopSignal, limits, profiler);
+            evaluator.setMemoizing(memoizing);
+            if (profiler != null) profiler.start();
+            evaluator.evaluate(program, environment, sink);
+            exhausted = evaluator.getExhausted();
+            governor = evaluator.getGovernor();
+        }
+        if (profiler != null) profiler.stop();
+        phaseDone(ExecutionListener.Phase.EVALUATE, start);
+
+        ExecutionListener.Outcome outcome = (exhausted != null) ? ExecutionListener.Outcome.EXHAUSTED
+            : governor.isStopped() ? ExecutionListener.Outcome.STOPPED
+            : ExecutionListener.Outcome.COMPLETED;
+        return new Ran(program, finished(outcome, exhausted, governor.instructions(), governor.events()));
+    }
+
+    // Tells the listener, before the sink is closed.
+    private ExecutionResult finished(ExecutionListener.Outcome outcome, ResourceLimits.Budget exhausted,
+                                     long instructions, long events) {
+        listener.finished(outcome, exhausted, instructions, events);
+        return new ExecutionResult(outcome, exhausted, instructions, events);
+    }
 
-        return evaluator.evaluate(program, environment);
+    // Reports the phase that started at 'start' and returns when the next one starts.
+    private long phaseDone(ExecutionListener.Phase phase, long start) {
+        long now = System.nanoTime();
+        listener.phase(phase, now - start);
+        return now;
     }
-}
\ No newline at end of file
+}
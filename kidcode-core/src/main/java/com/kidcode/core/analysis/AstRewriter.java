@@ -0,0 +1,92 @@
+package com.kidcode.core.analysis;
+
+import com.kidcode.core.ast.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Rebuilds an AST node by node. Passes extend it and override only the node
+// kinds they change; everything else is copied through unchanged.
+public abstract class AstRewriter {
+
+    public List<Statement> rewriteBlock(List<Statement> block) {
+        if (block == null) return null;
+        List<Statement> rewritten = new ArrayList<>(block.size());
+        for (Statement stmt : block) {
+            Statement result = rewriteStatement(stmt);
+            if (result != null) {
+                rewritten.add(result);
+            }
+        }
+        return rewritten;
+    }
+
+    protected Statement rewriteStatement(Statement stmt) {
+        if (stmt instanceof SetStatement s) {
+            return new SetStatement(rewriteTarget(s.name()), rewriteExpression(s.value()), s.lineNumber(), s.column());
+        } else if (stmt instanceof MoveStatement s) {
+            return new MoveStatement(rewriteExpression(s.steps()), s.lineNumber(), s.column());
+        } else if (stmt instanceof TurnStatement s) {
+            return new TurnStatement(s.direction(), rewriteExpression(s.degrees()), s.lineNumber(), s.column());
+        } else if (stmt instanceof SetColorStatement s) {
+            return new SetColorStatement(rewriteExpression(s.colorName()), s.lineNumber(), s.column());
+        } else if (stmt instanceof SayStatement s) {
+            return new SayStatement(rewriteExpression(s.message()), s.lineNumber(), s.column());
+        } else if (stmt instanceof RepeatStatement s) {
+            return new RepeatStatement(rewriteExpression(s.times()), rewriteBlock(s.body()), s.lineNumber(), s.column());
+        } else if (stmt instanceof IfStatement s) {
+            return new IfStatement(rewriteExpression(s.condition()), rewriteBlock(s.consequence()), rewriteBlock(s.alternative()), s.lineNumber(), s.column());
+        } else if (stmt instanceof BlockStatement s) {
+            return new BlockStatement(rewriteBlock(s.body()), s.lineNumber(), s.column());
+        } else if (stmt instanceof FunctionDefinitionStatement s) {
+            return rewriteFunction(s);
+        } else if (stmt instanceof FunctionCallStatement s) {
+            return new FunctionCallStatement(rewriteFunctionName(s.function()), rewriteExpressions(s.arguments()), s.lineNumber(), s.column());
+        } else if (stmt instanceof ExpressionStatement s) {
+            return new ExpressionStatement(rewriteExpression(s.expression()), s.lineNumber(), s.column());
+        }
+        return stmt;
+    }
+
+    protected Statement rewriteFunction(FunctionDefinitionStatement def) {
+        return new FunctionDefinitionStatement(rewriteFunctionName(def.name()), def.parameters(), rewriteBlock(def.body()), def.scope(), def.lineNumber(), def.column());
+    }
+
+    // The name of a defined or called function.
+    protected Identifier rewriteFunctionName(Identifier name) {
+        return name;
+    }
+
+    // The variable assigned by a 'set' statement.
+    protected Identifier rewriteTarget(Identifier name) {
+        return name;
+    }
+
+    protected Expression rewriteExpression(Expression expr) {
+        if (expr instanceof Identifier id) {
+            return rewriteIdentifier(id);
+        } else if (expr instanceof InfixExpression infix) {
+            return rewriteInfix(infix, rewriteExpression(infix.left()), rewriteExpression(infix.right()));
+        } else if (expr instanceof ListLiteral list) {
+            return new ListLiteral(rewriteExpressions(list.elements()));
+        } else if (expr instanceof IndexExpression index) {
+            return new IndexExpression(rewriteExpression(index.left()), rewriteExpression(index.index()));
+        }
+        return expr;
+    }
+
+    protected Expression rewriteIdentifier(Identifier id) {
+        return id;
+    }
+
+    protected Expression rewriteInfix(InfixExpression infix, Expression left, Expression right) {
+        return new InfixExpression(left, infix.operator(), right, infix.type());
+    }
+
+    protected List<Expression> rewriteExpressions(List<Expression> expressions) {
+        List<Expression> rewritten = new ArrayList<>(expressions.size());
+        for (Expression expr : expressions) {
+            rewritten.add(rewriteExpression(expr));
+        }
+        return rewritten;
+    }
+}
@@ -0,0 +1,107 @@
+package com.kidcode.core.analysis;
+
+import com.kidcode.core.ast.*;
+import com.kidcode.core.evaluator.ErrorValue;
+import com.kidcode.core.evaluator.ListValue;
+import com.kidcode.core.evaluator.Operations;
+import com.kidcode.core.evaluator.ResourceLimits;
+import java.util.List;
+
+// Simplifies a parsed program before the Resolver sees it, without changing
+// a single event, message, line number or instruction count:
+//
+//   - infix and index expressions over constants are computed once, unless
+//     that gives an error ("10 / 0" still fails when and where it runs)
+//   - an 'if' with a constant condition becomes a BlockStatement holding the
+//     branch that always runs
+//   - a list literal of constants becomes one immutable list, shared by
+//     every evaluation instead of built again on each
+//
+// A string or list that would go over its ResourceLimits budget is left to
+// be built at run time, so the run still ends where it did.
+public class Optimizer extends AstRewriter {
+    private final ResourceLimits limits;
+
+    public Optimizer(ResourceLimits limits) {
+        this.limits = limits;
+    }
+
+    public List<Statement> optimize(List<Statement> program) {
+        return rewriteBlock(program);
+    }
+
+    @Override
+    protected Statement rewriteStatement(Statement stmt) {
+        if (stmt instanceof IfStatement s) {
+            Expression condition = rewriteExpression(s.condition());
+            List<Statement> consequence = rewriteBlock(s.consequence());
+            List<Statement> alternative = rewriteBlock(s.alternative());
+            if (isConstant(condition)) {
+                List<Statement> taken = Operations.isTruthy(valueOf(condition)) ? consequence : alternative;
+                return new BlockStatement((taken != null) ? taken : List.of(), s.lineNumber(), s.column());
+            }
+            return new IfStatement(condition, consequence, alternative, s.lineNumber(), s.column());
+        }
+        return super.rewriteStatement(stmt);
+    }
+
+    @Override
+    protected Expression rewriteExpression(Expression expr) {
+        Expression rewritten = super.rewriteExpression(expr);
+        if (rewritten instanceof ListLiteral list) {
+            return hoist(list);
+        }
+        if (rewritten instanceof IndexExpression index && isConstant(index.left()) && isConstant(index.index())) {
+            return fold(Operations.index(valueOf(index.left()), valueOf(index.index()), 0), rewritten);
+        }
+        return rewritten;
+    }
+
+    @Override
+    protected Expression rewriteInfix(InfixExpression infix, Expression left, Expression right) {
+        Expression rewritten = super.rewriteInfix(infix, left, right);
+        if (!isConstant(left) || !isConstant(right)) {
+            return rewritten;
+        }
+        Object value = Operations.infix(Operations.operatorCode(infix.operator()), infix.operator(),
+            valueOf(left), valueOf(right), 0);
+        return fold(value, rewritten);
+    }
+
+    private Expression hoist(ListLiteral list) {
+        if (list.elements().size() > limits.listSize()) {
+            return list;
+        }
+        Object[] values = new Object[list.elements().size()];
+        for (int i = 0; i < values.length; i++) {
+            Expression element = list.elements().get(i);
+            if (!isConstant(element)) return list;
+            values[i] = valueOf(element);
+        }
+        return new ConstantExpression(ListValue.of(values));
+    }
+
+    // The constant for 'value', or 'original' if it is an error or too long.
+    private Expression fold(Object value, Expression original) {
+        if (value instanceof ErrorValue) {
+            return original;
+        }
+        if (value instanceof Integer i) {
+            return new IntegerLiteral(i);
+        }
+        if (value instanceof String s) {
+            return (s.length() <= limits.stringLength()) ? new StringLiteral(s) : original;
+        }
+        return new ConstantExpression(value);
+    }
+
+    private static boolean isConstant(Expression expr) {
+        return expr instanceof IntegerLiteral || expr instanceof StringLiteral || expr instanceof ConstantExpression;
+    }
+
+    private static Object valueOf(Expression expr) {
+        if (expr instanceof IntegerLiteral i) return i.value();
+        if (expr instanceof StringLiteral s) return s.value();
+        return ((ConstantExpression) expr).value();
+    }
+}
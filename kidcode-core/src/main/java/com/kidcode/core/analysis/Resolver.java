@@ -0,0 +1,134 @@
+package com.kidcode.core.analysis;
+
+import com.kidcode.core.ast.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Binds every Identifier and SetStatement target to a frame slot ahead of execution.
+//
+// KidCode scopes are dynamic: a function's frame links to its caller's frame,
+// not to where it was defined. So a name is bound statically only where that
+// is always correct:
+//   - names assigned in the current body (or its parameters) get a local slot;
+//     if the slot is still empty at run time the lookup continues in the callers,
+//   - names read inside a function that no function ever uses as a local can
+//     only ever come from the main program, so they bind to its frame directly,
+//   - everything else stays unresolved and is looked up by name.
+//
+// Function names get a slot of their own in a table of every name the
+// program defines, so a call finds its target with one array load. The
+// table is global like the functions, and a 'define' that runs again just
+// rebinds its slot.
+public class Resolver extends AstRewriter {
+    private Scope globalScope = Scope.EMPTY;
+    private final Set<String> functionLocals = new LinkedHashSet<>();
+    private final Set<String> functionNames = new LinkedHashSet<>();
+    private Scope functionScope = Scope.EMPTY;
+
+    // The body being rewritten: the main program or a function.
+    private Scope currentScope;
+    private boolean isMain;
+
+    public List<Statement> resolve(List<Statement> program) {
+        collectFunctionLocals(program);
+        functionScope = new Scope(new ArrayList<>(functionNames));
+        globalScope = new Scope(new ArrayList<>(assignedNames(program, new LinkedHashSet<>())));
+        currentScope = globalScope;
+        isMain = true;
+        return rewriteBlock(program);
+    }
+
+    public Scope getGlobalScope() {
+        return globalScope;
+    }
+
+    // Slots of the function names, in the order they are defined.
+    public Scope getFunctionScope() {
+        return functionScope;
+    }
+
+    private void collectFunctionLocals(List<Statement> block) {
+        for (Statement stmt : block) {
+            if (stmt instanceof FunctionDefinitionStatement def) {
+                functionNames.add(def.name().value());
+                functionLocals.addAll(localNames(def));
+                collectFunctionLocals(def.body());
+            } else if (stmt instanceof RepeatStatement repeatStmt) {
+                collectFunctionLocals(repeatStmt.body());
+            } else if (stmt instanceof IfStatement ifStmt) {
+                collectFunctionLocals(ifStmt.consequence());
+                if (ifStmt.alternative() != null) collectFunctionLocals(ifStmt.alternative());
+            } else if (stmt instanceof BlockStatement blockStmt) {
+                collectFunctionLocals(blockStmt.body());
+            }
+        }
+    }
+
+    // Parameters first, in order, so that parameter i lives in slot i.
+    private static List<String> localNames(FunctionDefinitionStatement def) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Identifier param : def.parameters()) {
+            names.add(param.value());
+        }
+        return new ArrayList<>(assignedNames(def.body(), names));
+    }
+
+    // Targets of 'set' in a body, not counting nested function definitions.
+    private static Set<String> assignedNames(List<Statement> block, Set<String> names) {
+        for (Statement stmt : block) {
+            if (stmt instanceof SetStatement setStmt) {
+                names.add(setStmt.name().value());
+            } else if (stmt instanceof RepeatStatement repeatStmt) {
+                assignedNames(repeatStmt.body(), names);
+            } else if (stmt instanceof IfStatement ifStmt) {
+                assignedNames(ifStmt.consequence(), names);
+                if (ifStmt.alternative() != null) assignedNames(ifStmt.alternative(), names);
+            } else if (stmt instanceof BlockStatement blockStmt) {
+                assignedNames(blockStmt.body(), names);
+            }
+        }
+        return names;
+    }
+
+    @Override
+    protected Statement rewriteFunction(FunctionDefinitionStatement def) {
+        Scope outerScope = currentScope;
+        boolean outerIsMain = isMain;
+        currentScope = new Scope(localNames(def));
+        isMain = false;
+        List<Identifier> params = new ArrayList<>();
+        for (Identifier param : def.parameters()) {
+            params.add(rewriteTarget(param));
+        }
+        Statement resolved = new FunctionDefinitionStatement(rewriteFunctionName(def.name()), params, rewriteBlock(def.body()), currentScope, def.lineNumber(), def.column());
+        currentScope = outerScope;
+        isMain = outerIsMain;
+        return resolved;
+    }
+
+    @Override
+    protected Identifier rewriteFunctionName(Identifier name) {
+        return new Identifier(name.value(), Identifier.GLOBAL, functionScope.slotOf(name.value()));
+    }
+
+    @Override
+    protected Identifier rewriteTarget(Identifier name) {
+        return new Identifier(name.value(), 0, currentScope.slotOf(name.value()));
+    }
+
+    @Override
+    protected Expression rewriteIdentifier(Identifier id) {
+        String name = id.value();
+        int slot = currentScope.slotOf(name);
+        if (slot >= 0) {
+            return new Identifier(name, 0, slot);
+        }
+        int globalSlot = globalScope.slotOf(name);
+        if (!isMain && globalSlot >= 0 && !functionLocals.contains(name)) {
+            return new Identifier(name, Identifier.GLOBAL, globalSlot);
+        }
+        return new Identifier(name);
+    }
+}
@@ -0,0 +1,190 @@
+package com.kidcode.core.analysis;
+
+import com.kidcode.core.ast.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Proves which variables only ever hold ints and which expressions always
+// produce ints (or booleans from comparing ints), so the Evaluator can run them
+// on primitive values. Must run after the Resolver: only slot-bound variables
+// are typed. Anything it cannot prove stays UNKNOWN and takes the generic path.
+//
+// The proof is about values that are written; the Evaluator still guards every
+// read, because a local read can fall back to a caller's variable (or find
+// nothing at all) before the local is first assigned.
+public class TypeInference extends AstRewriter {
+    private final Scope globalScope;
+
+    // Per scope, the joined type of everything written to each slot.
+    // null means nothing has been written yet.
+    private final Map<Scope, StaticType[]> variables = new IdentityHashMap<>();
+    private final Map<String, List<FunctionDefinitionStatement>> functionsByName = new HashMap<>();
+    private boolean changed;
+
+    // Scope of the body being walked or rewritten.
+    private Scope currentScope;
+
+    public TypeInference(Scope globalScope) {
+        this.globalScope = globalScope;
+    }
+
+    public List<Statement> infer(List<Statement> program) {
+        collectFunctions(program);
+        do {
+            changed = false;
+            currentScope = globalScope;
+            walkBlock(program);
+        } while (changed);
+        currentScope = globalScope;
+        return rewriteBlock(program);
+    }
+
+    public StaticType typeOf(Scope scope, int slot) {
+        StaticType[] types = variables.get(scope);
+        StaticType type = (types != null && slot >= 0 && slot < types.length) ? types[slot] : null;
+        return (type != null) ? type : StaticType.UNKNOWN;
+    }
+
+    private void collectFunctions(List<Statement> block) {
+        if (block == null) return;
+        for (Statement stmt : block) {
+            if (stmt instanceof FunctionDefinitionStatement def) {
+                functionsByName.computeIfAbsent(def.name().value(), k -> new ArrayList<>()).add(def);
+                collectFunctions(def.body());
+            } else if (stmt instanceof RepeatStatement repeatStmt) {
+                collectFunctions(repeatStmt.body());
+            } else if (stmt instanceof IfStatement ifStmt) {
+                collectFunctions(ifStmt.consequence());
+                collectFunctions(ifStmt.alternative());
+            } else if (stmt instanceof BlockStatement blockStmt) {
+                collectFunctions(blockStmt.body());
+            }
+        }
+    }
+
+    // --- Fixpoint over assignments and call arguments ---
+
+    private void walkBlock(List<Statement> block) {
+        if (block == null) return;
+        for (Statement stmt : block) {
+            if (stmt instanceof SetStatement setStmt) {
+                Identifier target = setStmt.name();
+                if (target.isResolved()) {
+                    record(currentScope, target.slot(), typeOf(setStmt.value()));
+                }
+            } else if (stmt instanceof RepeatStatement repeatStmt) {
+                walkBlock(repeatStmt.body());
+            } else if (stmt instanceof IfStatement ifStmt) {
+                walkBlock(ifStmt.consequence());
+                walkBlock(ifStmt.alternative());
+            } else if (stmt instanceof BlockStatement blockStmt) {
+                walkBlock(blockStmt.body());
+            } else if (stmt instanceof FunctionDefinitionStatement def) {
+                Scope outer = currentScope;
+                currentScope = def.scope();
+                walkBlock(def.body());
+                currentScope = outer;
+            } else if (stmt instanceof FunctionCallStatement call) {
+                walkCall(call);
+            }
+        }
+    }
+
+    // Arguments flow into the parameter slots of every definition with that name.
+    private void walkCall(FunctionCallStatement call) {
+        List<FunctionDefinitionStatement> targets = functionsByName.get(call.function().value());
+        if (targets == null) return;
+        for (FunctionDefinitionStatement def : targets) {
+            if (def.parameters().size() != call.arguments().size()) continue;
+            for (int i = 0; i < def.parameters().size(); i++) {
+                Identifier param = def.parameters().get(i);
+                if (param.isResolved()) {
+                    record(def.scope(), param.slot(), typeOf(call.arguments().get(i)));
+                }
+            }
+        }
+    }
+
+    private void record(Scope scope, int slot, StaticType type) {
+        StaticType[] types = variables.computeIfAbsent(scope, s -> new StaticType[s.size()]);
+        StaticType joined = join(types[slot], type);
+        if (joined != types[slot]) {
+            types[slot] = joined;
+            changed = true;
+        }
+    }
+
+    private static StaticType join(StaticType a, StaticType b) {
+        if (a == null) return b;
+        if (b == null || a == b) return a;
+        return StaticType.UNKNOWN;
+    }
+
+    // Returns null while the type depends on variables that have no writes yet.
+    private StaticType typeOf(Expression expr) {
+        if (expr instanceof IntegerLiteral) {
+            return StaticType.INT;
+        }
+        if (expr instanceof ConstantExpression constant && constant.value() instanceof Boolean) {
+            return StaticType.BOOLEAN; // a comparison the Optimizer folded
+        }
+        if (expr instanceof Identifier id) {
+            if (!id.isResolved()) return StaticType.UNKNOWN;
+            Scope scope = (id.depth() == Identifier.GLOBAL) ? globalScope : currentScope;
+            StaticType[] types = variables.get(scope);
+            return (types != null) ? types[id.slot()] : null;
+        }
+        if (expr instanceof InfixExpression infix) {
+            StaticType left = typeOf(infix.left());
+            StaticType right = typeOf(infix.right());
+            if (left == StaticType.UNKNOWN || right == StaticType.UNKNOWN
+                    || left == StaticType.BOOLEAN || right == StaticType.BOOLEAN) {
+                return StaticType.UNKNOWN;
+            }
+            StaticType result = switch (infix.operator()) {
+                case "+", "-", "*", "/" -> StaticType.INT;
+                case "==", "!=", "<", ">" -> StaticType.BOOLEAN;
+                default -> StaticType.UNKNOWN;
+            };
+            return (left == null || right == null) && result != StaticType.UNKNOWN ? null : result;
+        }
+        return StaticType.UNKNOWN;
+    }
+
+    // --- Final rewrite with the proven types ---
+
+    @Override
+    protected Statement rewriteFunction(FunctionDefinitionStatement def) {
+        Scope outer = currentScope;
+        currentScope = def.scope();
+        List<Identifier> params = new ArrayList<>();
+        for (Identifier param : def.parameters()) {
+            params.add(rewriteTarget(param));
+        }
+        Statement typed = new FunctionDefinitionStatement(def.name(), params, rewriteBlock(def.body()), def.scope(), def.lineNumber(), def.column());
+        currentScope = outer;
+        return typed;
+    }
+
+    @Override
+    protected Identifier rewriteTarget(Identifier name) {
+        if (!name.isResolved()) return name;
+        return new Identifier(name.value(), name.depth(), name.slot(), typeOf(currentScope, name.slot()));
+    }
+
+    @Override
+    protected Expression rewriteIdentifier(Identifier id) {
+        if (!id.isResolved()) return id;
+        Scope scope = (id.depth() == Identifier.GLOBAL) ? globalScope : currentScope;
+        return new Identifier(id.value(), id.depth(), id.slot(), typeOf(scope, id.slot()));
+    }
+
+    @Override
+    protected Expression rewriteInfix(InfixExpression infix, Expression left, Expression right) {
+        StaticType type = typeOf(infix);
+        return new InfixExpression(left, infix.operator(), right, (type != null) ? type : StaticType.UNKNOWN);
+    }
+}
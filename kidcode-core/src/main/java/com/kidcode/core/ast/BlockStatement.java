@@ -0,0 +1,15 @@
+package com.kidcode.core.ast;
+
+import java.util.List;
+
+// What the Optimizer leaves of an 'if' whose condition is a constant: the
+// branch that always runs (possibly empty). It still counts as one statement
+// on the if's line, so instruction counts and limits are as before.
+public record BlockStatement(List<Statement> body, int lineNumber, int column) implements Statement {
+    public BlockStatement(List<Statement> body) {
+        this(body, 0, 0);
+    }
+
+    @Override
+    public String tokenLiteral() { return "if"; }
+}
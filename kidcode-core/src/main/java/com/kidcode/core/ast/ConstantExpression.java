@@ -0,0 +1,9 @@
+package com.kidcode.core.ast;
+
+// A value computed by the Optimizer that has no literal syntax: the boolean
+// of a constant comparison, or a list of constants built once and shared by
+// every evaluation. Lists here are immutable.
+public record ConstantExpression(Object value) implements Expression {
+    @Override
+    public String tokenLiteral() { return String.valueOf(value); }
+}
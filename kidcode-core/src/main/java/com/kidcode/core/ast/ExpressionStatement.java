@@ -1,6 +1,14 @@
 package com.kidcode.core.ast;
 
-public record ExpressionStatement(Expression expression) implements Statement {
+public record ExpressionStatement(Expression expression, int lineNumber, int column) implements Statement {
+    public ExpressionStatement(Expression expression) {
+        this(expression, 0);
+    }
+
+    public ExpressionStatement(Expression expression, int lineNumber) {
+        this(expression, lineNumber, 0);
+    }
+
     @Override
     public String tokenLiteral() { return expression.tokenLiteral(); }
-} 
\ No newline at end of file
+}
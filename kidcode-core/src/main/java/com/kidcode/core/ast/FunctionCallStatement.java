@@ -4,8 +4,18 @@ import java.util.List;
 
 public record FunctionCallStatement(
     Identifier function,
-    List<Expression> arguments
+    List<Expression> arguments,
+    int lineNumber,
+    int column
 ) implements Statement {
+    public FunctionCallStatement(Identifier function, List<Expression> arguments) {
+        this(function, arguments, 0);
+    }
+
+    public FunctionCallStatement(Identifier function, List<Expression> arguments, int lineNumber) {
+        this(function, arguments, lineNumber, 0);
+    }
+
     @Override
     public String tokenLiteral() { return function.tokenLiteral(); }
-} 
\ No newline at end of file
+}
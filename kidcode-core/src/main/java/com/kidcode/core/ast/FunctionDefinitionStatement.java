@@ -5,8 +5,23 @@ import java.util.List;
 public record FunctionDefinitionStatement(
     Identifier name,
     List<Identifier> parameters,
-    List<Statement> body
+    List<Statement> body,
+    Scope scope, // Slots for the parameters and local variables, set by the Resolver
+    int lineNumber,
+    int column
 ) implements Statement {
+    public FunctionDefinitionStatement(Identifier name, List<Identifier> parameters, List<Statement> body) {
+        this(name, parameters, body, Scope.EMPTY, 0, 0);
+    }
+
+    public FunctionDefinitionStatement(Identifier name, List<Identifier> parameters, List<Statement> body, int lineNumber) {
+        this(name, parameters, body, Scope.EMPTY, lineNumber, 0);
+    }
+
+    public FunctionDefinitionStatement(Identifier name, List<Identifier> parameters, List<Statement> body, int lineNumber, int column) {
+        this(name, parameters, body, Scope.EMPTY, lineNumber, column);
+    }
+
     @Override
     public String tokenLiteral() { return "define"; }
-} 
\ No newline at end of file
+}
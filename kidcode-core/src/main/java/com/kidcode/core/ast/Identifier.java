@@ -1,7 +1,24 @@
 package com.kidcode.core.ast;
 
-// Represents a variable name, e.g., 'x' in 'set x = 10'
-public record Identifier(String value) implements Expression {
+// Represents a variable name, e.g., 'x' in 'set x = 10'.
+// The Resolver binds it to a frame slot: depth 0 is the current frame and
+// GLOBAL is the main program's frame. Unresolved names are looked up by name.
+// Function names are bound to a slot in the table of defined functions.
+// TypeInference marks variables that only ever hold ints as INT.
+public record Identifier(String value, int depth, int slot, StaticType type) implements Expression {
+    public static final int UNRESOLVED = -1;
+    public static final int GLOBAL = Integer.MAX_VALUE;
+
+    public Identifier(String value) {
+        this(value, UNRESOLVED, UNRESOLVED);
+    }
+
+    public Identifier(String value, int depth, int slot) {
+        this(value, depth, slot, StaticType.UNKNOWN);
+    }
+
+    public boolean isResolved() { return slot >= 0; }
+
     @Override
     public String tokenLiteral() { return value; }
-} 
\ No newline at end of file
+}
@@ -5,8 +5,18 @@ import java.util.List;
 public record IfStatement(
     Expression condition,
     List<Statement> consequence,
-    List<Statement> alternative // This can be null if there is no 'else' block
+    List<Statement> alternative, // This can be null if there is no 'else' block
+    int lineNumber,
+    int column
 ) implements Statement {
+    public IfStatement(Expression condition, List<Statement> consequence, List<Statement> alternative) {
+        this(condition, consequence, alternative, 0);
+    }
+
+    public IfStatement(Expression condition, List<Statement> consequence, List<Statement> alternative, int lineNumber) {
+        this(condition, consequence, alternative, lineNumber, 0);
+    }
+
     @Override
     public String tokenLiteral() { return "if"; }
-} 
\ No newline at end of file
+}
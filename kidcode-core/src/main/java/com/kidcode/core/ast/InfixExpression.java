@@ -4,8 +4,13 @@ package com.kidcode.core.ast;
 public record InfixExpression(
     Expression left, 
     String operator, 
-    Expression right
+    Expression right,
+    StaticType type // Filled in by TypeInference
 ) implements Expression {
+    public InfixExpression(Expression left, String operator, Expression right) {
+        this(left, operator, right, StaticType.UNKNOWN);
+    }
+
     @Override
     public String tokenLiteral() { return "(" + left.tokenLiteral() + " " + operator + " " + right.tokenLiteral() + ")"; }
-} 
\ No newline at end of file
+}
@@ -1,6 +1,14 @@
 package com.kidcode.core.ast;
 
-public record MoveStatement(Expression steps) implements Statement {
+public record MoveStatement(Expression steps, int lineNumber, int column) implements Statement {
+    public MoveStatement(Expression steps) {
+        this(steps, 0);
+    }
+
+    public MoveStatement(Expression steps, int lineNumber) {
+        this(steps, lineNumber, 0);
+    }
+
     @Override
     public String tokenLiteral() { return "move"; }
-} 
\ No newline at end of file
+}
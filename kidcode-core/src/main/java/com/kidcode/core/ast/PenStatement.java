@@ -1,6 +1,14 @@
 package com.kidcode.core.ast;
 
-public record PenStatement(String state) implements Statement {
+public record PenStatement(String state, int lineNumber, int column) implements Statement {
+    public PenStatement(String state) {
+        this(state, 0);
+    }
+
+    public PenStatement(String state, int lineNumber) {
+        this(state, lineNumber, 0);
+    }
+
     @Override
     public String tokenLiteral() { return "pen"; }
-} 
\ No newline at end of file
+}
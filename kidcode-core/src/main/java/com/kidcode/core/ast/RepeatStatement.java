@@ -4,8 +4,18 @@ import java.util.List;
 
 public record RepeatStatement(
     Expression times, 
-    List<Statement> body
+    List<Statement> body,
+    int lineNumber,
+    int column
 ) implements Statement {
+    public RepeatStatement(Expression times, List<Statement> body) {
+        this(times, body, 0);
+    }
+
+    public RepeatStatement(Expression times, List<Statement> body, int lineNumber) {
+        this(times, body, lineNumber, 0);
+    }
+
     @Override
     public String tokenLiteral() { return "repeat"; }
-} 
\ No newline at end of file
+}
@@ -1,6 +1,14 @@
 package com.kidcode.core.ast;
 
-public record SayStatement(Expression message) implements Statement {
+public record SayStatement(Expression message, int lineNumber, int column) implements Statement {
+    public SayStatement(Expression message) {
+        this(message, 0);
+    }
+
+    public SayStatement(Expression message, int lineNumber) {
+        this(message, lineNumber, 0);
+    }
+
     @Override
     public String tokenLiteral() { return "say"; }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package com.kidcode.core.ast;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The variable slots of the main program or of one function body, assigned by
+// the Resolver. Frames are Object[] arrays indexed by these slots.
+public final class Scope {
+    public static final Scope EMPTY = new Scope(List.of());
+
+    private final String[] names;
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    public Scope(List<String> names) {
+        this.names = names.toArray(String[]::new);
+        for (int i = 0; i < this.names.length; i++) {
+            slots.putIfAbsent(this.names[i], i);
+        }
+    }
+
+    public int size() { return names.length; }
+
+    public String nameAt(int slot) { return names[slot]; }
+
+    // Returns -1 if the name has no slot in this scope.
+    public int slotOf(String name) {
+        Integer slot = slots.get(name);
+        return (slot != null) ? slot : -1;
+    }
+}
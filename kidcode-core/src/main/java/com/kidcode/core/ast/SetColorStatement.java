@@ -1,6 +1,14 @@
 package com.kidcode.core.ast;
 
-public record SetColorStatement(Expression colorName) implements Statement {
+public record SetColorStatement(Expression colorName, int lineNumber, int column) implements Statement {
+    public SetColorStatement(Expression colorName) {
+        this(colorName, 0);
+    }
+
+    public SetColorStatement(Expression colorName, int lineNumber) {
+        this(colorName, lineNumber, 0);
+    }
+
     @Override
     public String tokenLiteral() { return "color"; }
-} 
\ No newline at end of file
+}
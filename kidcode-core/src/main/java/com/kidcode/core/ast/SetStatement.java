@@ -2,8 +2,18 @@ package com.kidcode.core.ast;
 
 public record SetStatement(
     Identifier name, 
-    Expression value
+    Expression value,
+    int lineNumber,
+    int column
 ) implements Statement {
+    public SetStatement(Identifier name, Expression value) {
+        this(name, value, 0);
+    }
+
+    public SetStatement(Identifier name, Expression value, int lineNumber) {
+        this(name, value, lineNumber, 0);
+    }
+
     @Override
     public String tokenLiteral() { return "set"; }
-} 
\ No newline at end of file
+}
@@ -1,3 +1,9 @@
 package com.kidcode.core.ast;
 
-public interface Statement extends Node {} 
\ No newline at end of file
+public interface Statement extends Node {
+    // Source line the statement starts on, or 0 for statements built in code.
+    int lineNumber();
+
+    // 1-based column of the statement's first token, or 0 when unknown.
+    int column();
+}
@@ -0,0 +1,8 @@
+package com.kidcode.core.ast;
+
+// What the TypeInference pass could prove about an expression's value.
+public enum StaticType {
+    UNKNOWN,
+    INT,
+    BOOLEAN // result of comparing two ints
+}
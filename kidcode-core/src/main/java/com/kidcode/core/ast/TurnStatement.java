@@ -1,6 +1,14 @@
 package com.kidcode.core.ast;
 
-public record TurnStatement(String direction, Expression degrees) implements Statement {
+public record TurnStatement(String direction, Expression degrees, int lineNumber, int column) implements Statement {
+    public TurnStatement(String direction, Expression degrees) {
+        this(direction, degrees, 0);
+    }
+
+    public TurnStatement(String direction, Expression degrees, int lineNumber) {
+        this(direction, degrees, lineNumber, 0);
+    }
+
     @Override
     public String tokenLiteral() { return "turn"; }
-} 
\ No newline at end of file
+}
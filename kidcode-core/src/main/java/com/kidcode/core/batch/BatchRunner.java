@@ -0,0 +1,146 @@
+package com.kidcode.core.batch;
+
+import com.kidcode.core.ExecutionListener;
+import com.kidcode.core.ExecutionMode;
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.event.EventSink;
+import com.kidcode.core.event.ExecutionEvent;
+import com.kidcode.core.evaluator.ResourceLimits;
+import com.kidcode.core.lexer.Utf8Source;
+import com.kidcode.core.render.SegmentList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Runs many programs at once, for grading a whole class's submissions,
+// and keeps only a RunSummary of each instead of its events.
+//
+// Every program gets its own KidCodeEngine, so runs share nothing and are
+// spread over a pool of threads with KidCodeEngine.THREAD_STACK_SIZE stacks
+// (newPool), so a program recurses as deep in a batch as it does alone.
+// Each runs within its own ResourceLimits if it has them, the runner's
+// otherwise, so one endless loop cannot hold up the batch for longer than
+// its budget.
+public class BatchRunner {
+
+    // Used unless the runner is given a pool: one thread per processor.
+    private static final ExecutorService DEFAULT_POOL = newPool(Runtime.getRuntime().availableProcessors());
+
+    // One program to run; 'limits' may be null for the runner's own.
+    public record Program(String id, CharSequence source, ResourceLimits limits) {
+        public Program(String id, CharSequence source) {
+            this(id, source, null);
+        }
+    }
+
+    private final ExecutionMode mode;
+    private final ResourceLimits limits;
+    private final Executor pool;
+
+    public BatchRunner() {
+        this(ExecutionMode.INTERPRETER, ResourceLimits.DEFAULT);
+    }
+
+    public BatchRunner(ExecutionMode mode, ResourceLimits limits) {
+        this(mode, limits, DEFAULT_POOL);
+    }
+
+    // 'pool' should run on threads from newPool, or others as large.
+    public BatchRunner(ExecutionMode mode, ResourceLimits limits, Executor pool) {
+        this.mode = mode;
+        this.limits = limits;
+        this.pool = pool;
+    }
+
+    // The summaries, in the order of 'programs'.
+    public List<RunSummary> run(List<Program> programs) {
+        List<CompletableFuture<RunSummary>> runs = new ArrayList<>(programs.size());
+        for (Program program : programs) {
+            runs.add(CompletableFuture.supplyAsync(() -> run(program), pool));
+        }
+        return runs.stream().map(CompletableFuture::join).toList();
+    }
+
+    // A fixed pool of daemon threads with room for the default call depth.
+    public static ExecutorService newPool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(null, runnable, "kidcode-batch-" + count.incrementAndGet(),
+                KidCodeEngine.THREAD_STACK_SIZE);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Runs one program on the calling thread.
+    public RunSummary run(Program program) {
+        Summarizer summarizer = new Summarizer();
+        KidCodeEngine engine = new KidCodeEngine(mode, (program.limits() != null) ? program.limits() : limits, summarizer);
+        long start = System.nanoTime();
+        engine.execute(program.source(), summarizer);
+        return summarizer.summary(program.id(), System.nanoTime() - start);
+    }
+
+    // The *.kc files in 'dir', by name, each with its file name as the id.
+    // Files are memory-mapped (see Utf8Source), not read into Strings.
+    public static List<Program> programs(Path dir) throws IOException {
+        List<Program> programs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(p -> p.toString().endsWith(".kc")).sorted().toList()) {
+                programs.add(new Program(file.getFileName().toString(), Utf8Source.map(file)));
+            }
+        }
+        return programs;
+    }
+
+    // Listens to one run and keeps only what its summary needs.
+    private static final class Summarizer implements ExecutionListener, EventSink {
+        private final SegmentList segments = new SegmentList();
+        private final List<String> errors = new ArrayList<>();
+        private long events = 0;
+        private Outcome outcome;
+        private ResourceLimits.Budget exhausted;
+        private long instructions;
+
+        @Override
+        public void accept(ExecutionEvent event) {
+            events++;
+            segments.add(event);
+            if (event instanceof ExecutionEvent.ErrorEvent error && errors.size() < RunSummary.MAX_ERRORS) {
+                errors.add(error.errorMessage());
+            }
+        }
+
+        @Override
+        public void finished(Outcome outcome, ResourceLimits.Budget exhausted, long instructions, long events) {
+            this.outcome = outcome;
+            this.exhausted = exhausted;
+            this.instructions = instructions;
+        }
+
+        RunSummary summary(String id, long nanos) {
+            RunSummary.Bounds bounds = null;
+            if (segments.size() > 0) {
+                int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+                int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+                for (int i = 0; i < segments.size(); i++) {
+                    minX = Math.min(minX, Math.min(segments.x1(i), segments.x2(i)));
+                    minY = Math.min(minY, Math.min(segments.y1(i), segments.y2(i)));
+                    maxX = Math.max(maxX, Math.max(segments.x1(i), segments.x2(i)));
+                    maxY = Math.max(maxY, Math.max(segments.y1(i), segments.y2(i)));
+                }
+                bounds = new RunSummary.Bounds(minX, minY, maxX, maxY);
+            }
+            return new RunSummary(id, outcome, exhausted, instructions, events, segments.size(), bounds,
+                segments.canonicalHash(), List.copyOf(errors), nanos);
+        }
+    }
+}
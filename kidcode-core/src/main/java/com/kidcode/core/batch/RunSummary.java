@@ -0,0 +1,26 @@
+package com.kidcode.core.batch;
+
+import com.kidcode.core.ExecutionListener;
+import com.kidcode.core.evaluator.ResourceLimits;
+import java.util.List;
+
+// What one program of a batch did, without its events.
+//
+//   outcome, exhausted   how the run ended, as ExecutionListener reports it
+//   instructions         statements executed (0 if it did not parse)
+//   events               events the run sent
+//   segments             lines left on the canvas
+//   bounds               the box around those lines, null if there are none
+//   drawingHash          SegmentList.canonicalHash() of the drawing; equal
+//                        hashes mean the same picture
+//   errors               ErrorEvent messages: parse errors, or the budget
+//                        that ran out (at most MAX_ERRORS of them)
+//   nanos                wall-clock time of the run
+public record RunSummary(String id, ExecutionListener.Outcome outcome, ResourceLimits.Budget exhausted,
+                         long instructions, long events, int segments, Bounds bounds, String drawingHash,
+                         List<String> errors, long nanos) {
+
+    public static final int MAX_ERRORS = 20;
+
+    public record Bounds(int minX, int minY, int maxX, int maxY) {}
+}
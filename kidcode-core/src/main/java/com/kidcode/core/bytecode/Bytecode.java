@@ -0,0 +1,5 @@
+package com.kidcode.core.bytecode;
+
+// The output of BytecodeCompiler: one flat code array (main program first,
+// function bodies after it) and the constant pool its operands index into.
+public record Bytecode(int[] code, Object[] constants) {}
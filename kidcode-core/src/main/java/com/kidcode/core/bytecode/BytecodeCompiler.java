@@ -0,0 +1,166 @@
+package com.kidcode.core.bytecode;
+
+import com.kidcode.core.ast.*;
+import com.kidcode.core.evaluator.ErrorValue;
+import com.kidcode.core.evaluator.Operations;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Lowers the AST produced by Parser.parseProgram() into Bytecode for the VirtualMachine.
+public class BytecodeCompiler {
+    private static final String CANNOT_EVALUATE = "Error: Cannot evaluate expression";
+
+    private int[] code = new int[256];
+    private int size = 0;
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    // Function bodies are compiled after the main program; the DEFINE operand
+    // points at a constant slot that is filled in once the entry is known.
+    private record PendingFunction(FunctionDefinitionStatement definition, int constant) {}
+    private final Deque<PendingFunction> pendingFunctions = new ArrayDeque<>();
+
+    // Line of the statement being compiled, for errors known at compile time.
+    private int line;
+
+    public Bytecode compile(List<Statement> program) {
+        compileBlock(program);
+        emit(OpCode.HALT);
+        while (!pendingFunctions.isEmpty()) {
+            PendingFunction pending = pendingFunctions.poll();
+            FunctionDefinitionStatement def = pending.definition();
+            int entry = size;
+            compileBlock(def.body());
+            emit(OpCode.RETURN);
+            String[] parameters = def.parameters().stream().map(Identifier::value).toArray(String[]::new);
+            int[] parameterSlots = def.parameters().stream().mapToInt(Identifier::slot).toArray();
+            constants.set(pending.constant(), new FunctionPrototype(def.name().value(), parameters, parameterSlots, def.scope(), entry));
+        }
+        return new Bytecode(Arrays.copyOf(code, size), constants.toArray());
+    }
+
+    private void compileBlock(List<Statement> block) {
+        for (Statement statement : block) {
+            compileStatement(statement);
+        }
+    }
+
+    private void compileStatement(Statement stmt) {
+        line = stmt.lineNumber();
+        emit(OpCode.STMT, line);
+        if (stmt instanceof SetStatement setStmt) {
+            compileExpression(setStmt.value());
+            Identifier name = setStmt.name();
+            if (name.isResolved() && name.depth() == 0) {
+                emit(OpCode.SET_LOCAL, name.slot());
+            } else {
+                emit(OpCode.SET, constant(name.value()));
+            }
+        } else if (stmt instanceof MoveStatement moveStmt) {
+            compileExpression(moveStmt.steps());
+            emit(OpCode.MOVE);
+        } else if (stmt instanceof TurnStatement turnStmt) {
+            compileExpression(turnStmt.degrees());
+            emit(OpCode.TURN, turnStmt.direction().equalsIgnoreCase("right") ? 1 : 0);
+        } else if (stmt instanceof PenStatement penStmt) {
+            emit(OpCode.PEN, penStmt.state().equalsIgnoreCase("down") ? 1 : 0);
+        } else if (stmt instanceof SetColorStatement colorStmt) {
+            compileExpression(colorStmt.colorName());
+            emit(OpCode.COLOR);
+        } else if (stmt instanceof SayStatement sayStmt) {
+            compileExpression(sayStmt.message());
+            emit(OpCode.SAY);
+        } else if (stmt instanceof RepeatStatement repeatStmt) {
+            compileExpression(repeatStmt.times());
+            int initOperand = emit(OpCode.REPEAT_INIT, 0) + 1;
+            int loopTop = size;
+            int nextOperand = emit(OpCode.REPEAT_NEXT, 0) + 1;
+            compileBlock(repeatStmt.body());
+            emit(OpCode.JUMP, loopTop);
+            code[initOperand] = size;
+            code[nextOperand] = size;
+        } else if (stmt instanceof IfStatement ifStmt) {
+            compileExpression(ifStmt.condition());
+            int branchAt = emit(OpCode.BRANCH, 0, 0);
+            compileBlock(ifStmt.consequence());
+            int jumpOperand = emit(OpCode.JUMP, 0) + 1;
+            code[branchAt + 1] = size;
+            if (ifStmt.alternative() != null) {
+                compileBlock(ifStmt.alternative());
+            }
+            code[branchAt + 2] = size;
+            code[jumpOperand] = size;
+        } else if (stmt instanceof BlockStatement blockStmt) {
+            compileBlock(blockStmt.body());
+        } else if (stmt instanceof FunctionDefinitionStatement funcDefStmt) {
+            int slot = constants.size();
+            constants.add(null);
+            pendingFunctions.add(new PendingFunction(funcDefStmt, slot));
+            emit(OpCode.DEFINE, slot);
+        } else if (stmt instanceof FunctionCallStatement funcCallStmt) {
+            for (Expression argument : funcCallStmt.arguments()) {
+                compileExpression(argument);
+            }
+            emit(OpCode.CALL, constant(funcCallStmt.function().value()), funcCallStmt.arguments().size());
+        } else if (stmt instanceof ExpressionStatement exprStmt) {
+            compileExpression(exprStmt.expression());
+            emit(OpCode.POP);
+        }
+    }
+
+    private void compileExpression(Expression expr) {
+        if (expr instanceof IntegerLiteral i) {
+            emit(OpCode.CONST, constant(i.value()));
+        } else if (expr instanceof StringLiteral s) {
+            emit(OpCode.CONST, constant(s.value()));
+        } else if (expr instanceof ConstantExpression c) {
+            emit(OpCode.CONST, constant(c.value()));
+        } else if (expr instanceof Identifier id) {
+            if (!id.isResolved()) {
+                emit(OpCode.LOAD, constant(id.value()));
+            } else if (id.depth() == Identifier.GLOBAL) {
+                emit(OpCode.LOAD_GLOBAL, id.slot(), constant(id.value()));
+            } else {
+                emit(OpCode.LOAD_LOCAL, id.slot(), constant(id.value()));
+            }
+        } else if (expr instanceof InfixExpression infix) {
+            compileExpression(infix.left());
+            compileExpression(infix.right());
+            emit(OpCode.BINARY, Operations.operatorCode(infix.operator()), constant(infix.operator()));
+        } else if (expr instanceof ListLiteral listLiteral) {
+            for (Expression el : listLiteral.elements()) {
+                compileExpression(el);
+            }
+            emit(OpCode.LIST, listLiteral.elements().size());
+        } else if (expr instanceof IndexExpression indexExpr) {
+            compileExpression(indexExpr.left());
+            compileExpression(indexExpr.index());
+            emit(OpCode.INDEX);
+        } else {
+            emit(OpCode.CONST, constant(new ErrorValue(CANNOT_EVALUATE, line)));
+        }
+    }
+
+    private int constant(Object value) {
+        return constantIndex.computeIfAbsent(value, v -> {
+            constants.add(v);
+            return constants.size() - 1;
+        });
+    }
+
+    // Returns the position of the opcode.
+    private int emit(int... words) {
+        if (size + words.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + words.length));
+        }
+        int at = size;
+        System.arraycopy(words, 0, code, size, words.length);
+        size += words.length;
+        return at;
+    }
+}
@@ -0,0 +1,7 @@
+package com.kidcode.core.bytecode;
+
+import com.kidcode.core.ast.Scope;
+
+// A compiled 'define' block. The body lives in the shared code array at 'entry'.
+// parameterSlots[i] is the frame slot of parameters[i], or -1 if unresolved.
+public record FunctionPrototype(String name, String[] parameters, int[] parameterSlots, Scope scope, int entry) {}
@@ -0,0 +1,37 @@
+package com.kidcode.core.bytecode;
+
+// Instruction set of the KidCode VM. Each opcode is followed by the number of
+// int operands listed next to it.
+public final class OpCode {
+    // Expressions
+    public static final int CONST = 0;        // constant index
+    public static final int LOAD = 1;         // name constant index
+    public static final int LOAD_LOCAL = 2;   // slot, name constant index
+    public static final int LOAD_GLOBAL = 3;  // slot, name constant index
+    public static final int BINARY = 4;       // operator code, operator constant index
+    public static final int LIST = 5;         // element count
+    public static final int INDEX = 6;
+    public static final int POP = 7;
+
+    // Statements
+    public static final int STMT = 8;         // source line
+    public static final int SET = 9;          // name constant index
+    public static final int SET_LOCAL = 10;   // slot
+    public static final int MOVE = 11;
+    public static final int TURN = 12;        // 1 = right, 0 = left
+    public static final int PEN = 13;         // 1 = down, 0 = up
+    public static final int COLOR = 14;
+    public static final int SAY = 15;
+
+    // Control flow
+    public static final int REPEAT_INIT = 16; // jump target past the loop
+    public static final int REPEAT_NEXT = 17; // jump target past the loop
+    public static final int JUMP = 18;        // jump target
+    public static final int BRANCH = 19;      // else target, end target
+    public static final int DEFINE = 20;      // function constant index
+    public static final int CALL = 21;        // name constant index, argument count
+    public static final int RETURN = 22;
+    public static final int HALT = 23;
+
+    private OpCode() {}
+}
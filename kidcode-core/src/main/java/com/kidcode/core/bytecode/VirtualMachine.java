@@ -0,0 +1,325 @@
+package com.kidcode.core.bytecode;
+
+import com.kidcode.core.ast.Identifier;
+import com.kidcode.core.evaluator.Environment;
+import com.kidcode.core.evaluator.ErrorValue;
+import com.kidcode.core.evaluator.Governor;
+import com.kidcode.core.evaluator.LineProfiler;
+import com.kidcode.core.evaluator.ListValue;
+import com.kidcode.core.evaluator.Operations;
+import com.kidcode.core.evaluator.ResourceExhaustedException;
+import com.kidcode.core.evaluator.ResourceLimits;
+import com.kidcode.core.event.EventSink;
+import com.kidcode.core.event.ExecutionEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+// Runs Bytecode and produces the same ExecutionEvent stream as the Evaluator,
+// including where a run ends when it uses up one of its ResourceLimits.
+public class VirtualMachine {
+    private final BooleanSupplier stopSignal;
+    private final ResourceLimits limits;
+    private final LineProfiler profiler;
+    private Governor governor;
+    private ResourceLimits.Budget exhausted;
+    private EventSink sink;
+
+    public VirtualMachine(BooleanSupplier stopSignal) {
+        this(stopSignal, ResourceLimits.DEFAULT);
+    }
+
+    public VirtualMachine(BooleanSupplier stopSignal, ResourceLimits limits) {
+        this(stopSignal, limits, null);
+    }
+
+    // With a profiler, every run also records where it spent its time.
+    public VirtualMachine(BooleanSupplier stopSignal, ResourceLimits limits, LineProfiler profiler) {
+        this.stopSignal = stopSignal;
+        this.limits = limits;
+        this.profiler = profiler;
+    }
+
+    // The budget that ended the last run, or null if it finished or was stopped.
+    public ResourceLimits.Budget getExhausted() {
+        return exhausted;
+    }
+
+    // What the last run used, and whether it was stopped.
+    public Governor getGovernor() {
+        return governor;
+    }
+
+    public List<ExecutionEvent> execute(Bytecode bytecode, Environment env) {
+        List<ExecutionEvent> events = new ArrayList<>();
+        execute(bytecode, env, events::add);
+        return events;
+    }
+
+    // Pushes each event to the sink as soon as it happens. Closing the sink
+    // is left to the caller.
+    public void execute(Bytecode bytecode, Environment env, EventSink sink) {
+        governor = new Governor(limits, stopSignal, profiler);
+        exhausted = null;
+        this.sink = governor.meter(sink);
+        try {
+            this.sink.accept(new ExecutionEvent.ClearEvent());
+            addStateEvent(env);
+            run(bytecode.code(), bytecode.constants(), env);
+        } catch (ResourceExhaustedException e) {
+            exhausted = e.getBudget();
+            sink.accept(new ExecutionEvent.ErrorEvent(e.getMessage()));
+        }
+    }
+
+    private void run(int[] code, Object[] constants, Environment env) {
+        Object[] stack = new Object[32];
+        int sp = 0;
+        // Remaining iterations of the enclosing repeat loops, innermost last.
+        int[] loops = new int[8];
+        int lsp = 0;
+        // Call frames: where to resume and which scope to restore.
+        int[] returnPcs = new int[8];
+        Environment[] callerEnvs = new Environment[8];
+        int fp = 0;
+        Map<String, FunctionPrototype> functions = new HashMap<>();
+        int line = 0;
+        int pc = 0;
+
+        while (true) {
+            switch (code[pc++]) {
+                case OpCode.CONST -> {
+                    if (sp == stack.length) stack = Arrays.copyOf(stack, sp * 2);
+                    stack[sp++] = constants[code[pc++]];
+                }
+                case OpCode.LOAD, OpCode.LOAD_LOCAL, OpCode.LOAD_GLOBAL -> {
+                    int op = code[pc - 1];
+                    int slot = (op == OpCode.LOAD) ? Identifier.UNRESOLVED : code[pc++];
+                    String name = (String) constants[code[pc++]];
+                    Object value = env.lookup(name, (op == OpCode.LOAD_GLOBAL) ? Identifier.GLOBAL : 0, slot);
+                    if (sp == stack.length) stack = Arrays.copyOf(stack, sp * 2);
+                    stack[sp++] = (value != null) ? value : Operations.error("Error: variable '" + name + "' not found.", line);
+                }
+                case OpCode.BINARY -> {
+                    int operator = code[pc++];
+                    String operatorText = (String) constants[code[pc++]];
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    if (Operations.isError(left)) {
+                        stack[sp - 1] = left;
+                    } else if (Operations.isError(right)) {
+                        stack[sp - 1] = right;
+                    } else {
+                        stack[sp - 1] = Operations.infix(operator, operatorText, left, right, line, governor);
+                    }
+                    stack[sp] = null;
+                }
+                case OpCode.LIST -> {
+                    int count = code[pc++];
+                    int base = sp - count;
+                    Object result = null;
+                    for (int i = base; i < sp && result == null; i++) {
+                        if (Operations.isError(stack[i])) result = stack[i];
+                    }
+                    if (result == null) {
+                        governor.checkList(count);
+                        result = ListValue.of(Arrays.copyOfRange(stack, base, sp));
+                    }
+                    Arrays.fill(stack, base, sp, null);
+                    sp = base;
+                    if (sp == stack.length) stack = Arrays.copyOf(stack, sp * 2);
+                    stack[sp++] = result;
+                }
+                case OpCode.INDEX -> {
+                    Object index = stack[--sp];
+                    Object left = stack[sp - 1];
+                    if (Operations.isError(left)) {
+                        stack[sp - 1] = left;
+                    } else if (Operations.isError(index)) {
+                        stack[sp - 1] = index;
+                    } else {
+                        stack[sp - 1] = Operations.index(left, index, line);
+                    }
+                    stack[sp] = null;
+                }
+                case OpCode.POP -> stack[--sp] = null;
+                case OpCode.STMT -> {
+                    line = code[pc++];
+                    if (!governor.step(line)) return;
+                }
+                case OpCode.SET, OpCode.SET_LOCAL -> {
+                    int operand = code[pc++];
+                    Object value = stack[--sp];
+                    stack[sp] = null;
+                    if (value instanceof ErrorValue error) {
+                        sink.accept(new ExecutionEvent.ErrorEvent(error.message()));
+                    } else if (code[pc - 2] == OpCode.SET_LOCAL) {
+                        env.setSlot(operand, value);
+                    } else {
+                        env.set((String) constants[operand], value);
+                    }
+                }
+                case OpCode.MOVE -> {
+                    Object stepsVal = stack[--sp];
+                    stack[sp] = null;
+                    if (!(stepsVal instanceof Integer steps)) {
+                        sink.accept(new ExecutionEvent.SayEvent("Error: 'move forward' requires a number. Got: " + governor.text(stepsVal)));
+                        break;
+                    }
+                    int oldX = env.getX();
+                    int oldY = env.getY();
+                    int newX = oldX + Operations.deltaX(steps, env.getDirection());
+                    int newY = oldY + Operations.deltaY(steps, env.getDirection());
+                    env.setPosition(newX, newY);
+                    sink.accept(new ExecutionEvent.MoveEvent(oldX, oldY, newX, newY, env.getDirection(), env.isPenDown(), env.getPenColor()));
+                }
+                case OpCode.TURN -> {
+                    boolean right = code[pc++] == 1;
+                    Object degreesVal = stack[--sp];
+                    stack[sp] = null;
+                    if (!(degreesVal instanceof Integer degrees)) {
+                        sink.accept(new ExecutionEvent.SayEvent("Error: 'turn' requires a number. Got: " + governor.text(degreesVal)));
+                        break;
+                    }
+                    env.setDirection(Operations.turn(env.getDirection(), degrees, right));
+                    addStateEvent(env);
+                }
+                case OpCode.PEN -> {
+                    env.setPenDown(code[pc++] == 1);
+                    addStateEvent(env);
+                }
+                case OpCode.COLOR -> {
+                    Object colorVal = stack[--sp];
+                    stack[sp] = null;
+                    if (colorVal instanceof ErrorValue error) {
+                        sink.accept(new ExecutionEvent.ErrorEvent(error.message()));
+                        break;
+                    }
+                    if (!(Operations.flatten(colorVal) instanceof String colorName)) {
+                        sink.accept(new ExecutionEvent.SayEvent("Error: 'color' requires a string color name."));
+                        break;
+                    }
+                    if (!Operations.isSupportedColor(colorName)) {
+                        sink.accept(new ExecutionEvent.SayEvent("Error: Unknown color '" + colorName + "'."));
+                        break;
+                    }
+                    env.setPenColor(colorName.toLowerCase());
+                    addStateEvent(env);
+                }
+                case OpCode.SAY -> {
+                    Object message = stack[--sp];
+                    stack[sp] = null;
+                    if (message instanceof ErrorValue error) {
+                        sink.accept(new ExecutionEvent.ErrorEvent(error.message()));
+                    } else {
+                        sink.accept(new ExecutionEvent.SayEvent(governor.text(message)));
+                    }
+                }
+                case OpCode.REPEAT_INIT -> {
+                    int end = code[pc++];
+                    Object timesVal = stack[--sp];
+                    stack[sp] = null;
+                    if (!(timesVal instanceof Integer times)) {
+                        sink.accept(new ExecutionEvent.SayEvent("Error: 'repeat' requires a number."));
+                        pc = end;
+                        break;
+                    }
+                    if (lsp == loops.length) loops = Arrays.copyOf(loops, lsp * 2);
+                    loops[lsp++] = times;
+                }
+                case OpCode.REPEAT_NEXT -> {
+                    int end = code[pc++];
+                    if (!governor.iterate()) return;
+                    if (loops[lsp - 1] <= 0) {
+                        lsp--;
+                        pc = end;
+                    } else {
+                        loops[lsp - 1]--;
+                    }
+                }
+                case OpCode.JUMP -> pc = code[pc];
+                case OpCode.BRANCH -> {
+                    int elseTarget = code[pc++];
+                    int endTarget = code[pc++];
+                    Object cond = stack[--sp];
+                    stack[sp] = null;
+                    if (cond instanceof ErrorValue error) {
+                        sink.accept(new ExecutionEvent.SayEvent(error.message()));
+                        pc = endTarget;
+                    } else if (!Operations.isTruthy(cond)) {
+                        pc = elseTarget;
+                    }
+                }
+                case OpCode.DEFINE -> {
+                    FunctionPrototype function = (FunctionPrototype) constants[code[pc++]];
+                    functions.put(function.name(), function);
+                }
+                case OpCode.CALL -> {
+                    String name = (String) constants[code[pc++]];
+                    int argc = code[pc++];
+                    int base = sp - argc;
+                    FunctionPrototype function = functions.get(name);
+                    Environment localEnv = bindArguments(function, name, stack, base, argc, env);
+                    Arrays.fill(stack, base, sp, null);
+                    sp = base;
+                    if (localEnv == null) break;
+                    governor.enterCall();
+                    if (fp == returnPcs.length) {
+                        returnPcs = Arrays.copyOf(returnPcs, fp * 2);
+                        callerEnvs = Arrays.copyOf(callerEnvs, fp * 2);
+                    }
+                    returnPcs[fp] = pc;
+                    callerEnvs[fp++] = env;
+                    env = localEnv;
+                    pc = function.entry();
+                }
+                case OpCode.RETURN -> {
+                    governor.exitCall();
+                    pc = returnPcs[--fp];
+                    env = callerEnvs[fp];
+                    callerEnvs[fp] = null;
+                }
+                case OpCode.HALT -> {
+                    return;
+                }
+                default -> throw new IllegalStateException("Unknown opcode at " + (pc - 1));
+            }
+        }
+    }
+
+    // Mirrors Evaluator.evaluateFunctionCall: returns the callee scope, or null
+    // after reporting why the call cannot be made.
+    private Environment bindArguments(FunctionPrototype function, String name, Object[] stack, int base, int argc, Environment env) {
+        if (function == null) {
+            sink.accept(new ExecutionEvent.SayEvent("Error: function '" + name + "' not defined."));
+            return null;
+        }
+        String[] parameters = function.parameters();
+        if (parameters.length != argc) {
+            sink.accept(new ExecutionEvent.SayEvent("Error: function '" + name + "' expects " + parameters.length + " arguments, got " + argc + "."));
+            return null;
+        }
+        int[] parameterSlots = function.parameterSlots();
+        Environment localEnv = new Environment(env, function.scope());
+        for (int i = 0; i < argc; i++) {
+            Object argVal = stack[base + i];
+            if (argVal instanceof ErrorValue error) {
+                sink.accept(new ExecutionEvent.SayEvent(error.message()));
+                return null;
+            }
+            if (parameterSlots[i] >= 0) {
+                localEnv.setSlot(parameterSlots[i], argVal);
+            } else {
+                localEnv.set(parameters[i], argVal);
+            }
+        }
+        return localEnv;
+    }
+
+    private void addStateEvent(Environment env) {
+        sink.accept(new ExecutionEvent.MoveEvent(env.getX(), env.getY(), env.getX(), env.getY(), env.getDirection(), env.isPenDown(), env.getPenColor()));
+    }
+}
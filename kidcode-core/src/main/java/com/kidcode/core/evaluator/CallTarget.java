@@ -0,0 +1,48 @@
+package com.kidcode.core.evaluator;
+
+import com.kidcode.core.ast.FunctionDefinitionStatement;
+import com.kidcode.core.ast.Identifier;
+import com.kidcode.core.ast.Statement;
+import java.util.Arrays;
+
+// A 'define' prepared once for the Evaluator: its parameters and body as
+// arrays, and a pool of call frames sized for its Scope.
+//
+// A frame is only reachable from the call that uses it (KidCode has no
+// closures), so once the call returns the frame can serve the next one.
+// Recursion takes one frame per level; the pool keeps as many as the
+// deepest recursion so far. Frames lost to an exception that ends the run
+// are simply not returned.
+final class CallTarget {
+    final FunctionDefinitionStatement definition;
+    final Identifier[] parameters;
+    final Statement[] body;
+
+    private final Environment global;
+    private Environment[] free = new Environment[4];
+    private int freeCount = 0;
+
+    CallTarget(FunctionDefinitionStatement definition, Environment global) {
+        this.definition = definition;
+        this.parameters = definition.parameters().toArray(Identifier[]::new);
+        this.body = definition.body().toArray(Statement[]::new);
+        this.global = global;
+    }
+
+    int arity() {
+        return parameters.length;
+    }
+
+    // An empty frame whose variables fall back to the caller's.
+    Environment acquire(Environment caller) {
+        Environment frame = (freeCount > 0) ? free[--freeCount] : new Environment(global, definition.scope());
+        frame.enter(caller);
+        return frame;
+    }
+
+    void release(Environment frame) {
+        frame.leave();
+        if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+        free[freeCount++] = frame;
+    }
+}
@@ -1,94 +1,176 @@
 package com.kidcode.core.evaluator;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import com.kidcode.core.ast.FunctionDefinitionStatement;
+import com.kidcode.core.ast.Identifier;
+import com.kidcode.core.ast.Scope;
 
-// Holds the state of our "Cody" character.
+// One frame of variables, plus direct links to the state every frame shares.
 public class Environment {
-    private int x = 250;
-    private int y = 250;
-    private double direction = 0; // 0=North, 90=East, 180=South, 270=West
-
-    // Add a map to store variables
-    private final Map<String, Object> store = new HashMap<>();
-    
-    // NEW: Function storage
-    private final Map<String, FunctionDefinitionStatement> functions = new HashMap<>();
-    
-    // NEW: Link to the outer scope for lexical scoping
-    private final Environment outer;
-    
-    // Add pen state and color tracking
-    private boolean isPenDown = true;
-    private String penColor = "blue";
-
-    // Global environment constructor
+    // Cody's state and the function table belong to the whole run, so every
+    // frame points at the same objects instead of walking back to the global frame.
+    private final TurtleState turtle;
+    private final Map<String, FunctionDefinitionStatement> functions;
+
+    // Link to the calling scope (KidCode functions see their caller's variables).
+    // Not final so that a pooled call frame can be reused for another call.
+    private Environment outer;
+    private final Environment global;
+
+    // Variables the Resolver gave a slot live in the array; anything else
+    // (e.g. names set through set(String, Object)) goes into the overflow map.
+    private final Scope scope;
+    private final Object[] slots;
+    private Map<String, Object> overflow;
+
+    // Int variables are stored unboxed: the slot holds UNBOXED and the value
+    // lives in 'ints' (allocated on first use).
+    private static final Object UNBOXED = new Object();
+    private int[] ints;
+
+    // Global environment constructors
     public Environment() {
+        this(Scope.EMPTY);
+    }
+
+    public Environment(Scope scope) {
+        this.turtle = new TurtleState();
+        this.functions = new HashMap<>();
         this.outer = null;
+        this.global = this;
+        this.scope = scope;
+        this.slots = new Object[scope.size()];
     }
 
-    // Scoped environment constructor
+    // Scoped environment constructors
     public Environment(Environment outer) {
+        this(outer, Scope.EMPTY);
+    }
+
+    public Environment(Environment outer, Scope scope) {
+        this.turtle = outer.turtle;
+        this.functions = outer.functions;
         this.outer = outer;
+        this.global = outer.global;
+        this.scope = scope;
+        this.slots = new Object[scope.size()];
     }
 
-    // Turtle state should always be controlled by the global environment
-    public int getX() { return (outer != null) ? outer.getX() : x; }
-    public int getY() { return (outer != null) ? outer.getY() : y; }
-    public double getDirection() { return (outer != null) ? outer.getDirection() : direction; }
+    // A call frame taken from a pool is rebound to its new caller before the
+    // call, and emptied again afterwards so the pool holds on to nothing.
+    void enter(Environment caller) {
+        this.outer = caller;
+    }
 
-    public void setPosition(int x, int y) {
-        if (outer != null) outer.setPosition(x, y); else { this.x = x; this.y = y; }
+    void leave() {
+        this.outer = null;
+        Arrays.fill(slots, null);
+        overflow = null;
     }
 
-    public void setDirection(double direction) {
-        if (outer != null) outer.setDirection(direction); else { this.direction = direction; }
+    public TurtleState getTurtle() { return turtle; }
+
+    public int getX() { return turtle.getX(); }
+    public int getY() { return turtle.getY(); }
+    public double getDirection() { return turtle.getDirection(); }
+
+    public void setPosition(int x, int y) { turtle.setPosition(x, y); }
+    public void setDirection(double direction) { turtle.setDirection(direction); }
+
+    // Resolved access: one array load, falling back to the callers only when a
+    // local slot has not been assigned yet.
+    public Object get(Identifier id) {
+        return lookup(id.value(), id.depth(), id.slot());
     }
 
-    // Variable access now respects scope
-    public Object get(String name) {
-        if (store.containsKey(name)) {
-            return store.get(name);
+    public Object lookup(String name, int depth, int slot) {
+        if (slot < 0) {
+            return get(name);
+        }
+        if (depth == Identifier.GLOBAL) {
+            return global.getSlot(slot);
         }
-        if (outer != null) {
-            return outer.get(name);
+        Object value = getSlot(slot);
+        if (value != null || outer == null) {
+            return value;
+        }
+        return outer.get(name);
+    }
+
+    public void set(Identifier id, Object value) {
+        int slot = id.slot();
+        if (slot < 0) {
+            set(id.value(), value);
+        } else if (id.depth() == Identifier.GLOBAL) {
+            global.slots[slot] = value;
+        } else {
+            slots[slot] = value;
+        }
+    }
+
+    public Object getSlot(int slot) {
+        Object value = slots[slot];
+        return (value == UNBOXED) ? Integer.valueOf(ints[slot]) : value;
+    }
+
+    public void setSlot(int slot, Object value) { slots[slot] = value; }
+
+    public boolean holdsInt(int slot) { return slots[slot] == UNBOXED; }
+
+    public int getIntSlot(int slot) { return ints[slot]; }
+
+    public void setIntSlot(int slot, int value) {
+        if (ints == null) ints = new int[slots.length];
+        ints[slot] = value;
+        slots[slot] = UNBOXED;
+    }
+    public Environment getGlobal() { return global; }
+
+    // Variable access by name respects scope
+    public Object get(String name) {
+        for (Environment env = this; env != null; env = env.outer) {
+            Object value = env.getHere(name);
+            if (value != null) {
+                return value;
+            }
         }
         return null;
     }
 
     public void set(String name, Object value) {
-        store.put(name, value);
+        int slot = scope.slotOf(name);
+        if (slot >= 0) {
+            slots[slot] = value;
+        } else {
+            if (overflow == null) overflow = new HashMap<>();
+            overflow.put(name, value);
+        }
+    }
+
+    private Object getHere(String name) {
+        int slot = scope.slotOf(name);
+        if (slot >= 0) {
+            return getSlot(slot);
+        }
+        return (overflow != null) ? overflow.get(name) : null;
     }
-    
+
     // Function definitions are global
     public FunctionDefinitionStatement getFunction(String name) {
-        if (functions.containsKey(name)) {
-            return functions.get(name);
-        }
-        if (outer != null) {
-            return outer.getFunction(name);
-        }
-        return null;
+        return functions.get(name);
     }
-    
+
     public void defineFunction(String name, FunctionDefinitionStatement func) {
-        if (outer != null) {
-            outer.defineFunction(name, func);
-        } else {
-            functions.put(name, func);
-        }
+        functions.put(name, func);
     }
-    
+
     // Pen state methods
-    public boolean isPenDown() { return (outer != null) ? outer.isPenDown() : isPenDown; }
-    public void setPenDown(boolean isPenDown) { 
-        if (outer != null) outer.setPenDown(isPenDown); else { this.isPenDown = isPenDown; }
-    }
-    
+    public boolean isPenDown() { return turtle.isPenDown(); }
+    public void setPenDown(boolean isPenDown) { turtle.setPenDown(isPenDown); }
+
     // Color methods
-    public String getPenColor() { return (outer != null) ? outer.getPenColor() : penColor; }
-    public void setPenColor(String penColor) { 
-        if (outer != null) outer.setPenColor(penColor); else { this.penColor = penColor; }
-    }
-} 
\ No newline at end of file
+    public String getPenColor() { return turtle.getPenColor(); }
+    public void setPenColor(String penColor) { turtle.setPenColor(penColor); }
+}
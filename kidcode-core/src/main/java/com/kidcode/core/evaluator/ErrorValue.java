@@ -0,0 +1,17 @@
+package com.kidcode.core.evaluator;
+
+// The value of an expression that failed, e.g. a missing variable or a
+// division by zero. It flows through enclosing expressions unchanged until the
+// statement that evaluated it reports it as an ErrorEvent or SayEvent.
+//
+// Errors are their own type, so a user string that happens to start with
+// "Error:" is just a string, and checking for an error is a type test on a
+// final class rather than a string scan.
+public record ErrorValue(String message, int lineNumber) {
+
+    // Reports use the message only, exactly as the old string errors did.
+    @Override
+    public String toString() {
+        return message;
+    }
+}
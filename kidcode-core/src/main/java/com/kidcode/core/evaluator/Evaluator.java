@@ -1,114 +1,214 @@
 package com.kidcode.core.evaluator;
 
 import com.kidcode.core.ast.*;
+import com.kidcode.core.event.EventSink;
 import com.kidcode.core.event.ExecutionEvent;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.function.Supplier;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 public class Evaluator {
-    private static final int INSTRUCTION_LIMIT = 1_000_000;
-    private int instructionCount = 0;
-    private final Supplier<Boolean> stopSignal;
-    private final List<ExecutionEvent> events = new ArrayList<>();
+    public static final int INSTRUCTION_LIMIT = 1_000_000;
+    private final BooleanSupplier stopSignal;
+    private final ResourceLimits limits;
+    private final LineProfiler profiler;
+    private Governor governor;
+    private ResourceLimits.Budget exhausted;
+    private EventSink sink;
+    private boolean memoizing = true;
+    private MotionMemo memo; // null when not memoizing
 
-    public Evaluator(Supplier<Boolean> stopSignal) {
+    // Per run: the CallTarget bound to each function slot (see Resolver), so
+    // a call site reaches its target with one array load. A 'define' that
+    // runs rebinds its slot, which is what sends later calls elsewhere.
+    private CallTarget[] functions;
+    private Map<FunctionDefinitionStatement, CallTarget> targets;
+
+    // Unboxed int fast path (see evaluateInt): the last result, and whether
+    // the expression turned out not to produce an int after all.
+    private int intResult;
+    private boolean intBailout;
+
+    // Line of the statement being run; errors raised by expressions carry it.
+    private int line;
+
+    public Evaluator(BooleanSupplier stopSignal) {
+        this(stopSignal, ResourceLimits.DEFAULT);
+    }
+
+    public Evaluator(BooleanSupplier stopSignal, ResourceLimits limits) {
+        this(stopSignal, limits, null);
+    }
+
+    // With a profiler, every run also records where it spent its time.
+    public Evaluator(BooleanSupplier stopSignal, ResourceLimits limits, LineProfiler profiler) {
         this.stopSignal = stopSignal;
+        this.limits = limits;
+        this.profiler = profiler;
+        this.governor = new Governor(limits, stopSignal, profiler);
+    }
+
+    // The budget that ended the last run, or null if it finished or was stopped.
+    public ResourceLimits.Budget getExhausted() {
+        return exhausted;
+    }
+
+    // What the last run used, and whether it was stopped.
+    public Governor getGovernor() {
+        return governor;
+    }
+
+    // Repeated calls and repeat statements are replayed instead of run again
+    // (see MotionMemo), unless this is turned off or the run is profiled,
+    // which needs every statement to run.
+    public void setMemoizing(boolean memoizing) {
+        this.memoizing = memoizing;
     }
 
     public List<ExecutionEvent> evaluate(List<Statement> program, Environment env) {
-        instructionCount = 0;
-        events.clear();
-        events.add(new ExecutionEvent.ClearEvent());
-        events.add(new ExecutionEvent.MoveEvent(
-            env.getX(), env.getY(), env.getX(), env.getY(),
-            env.getDirection(), env.isPenDown(), env.getPenColor()));
-        for (Statement statement : program) {
-            if (stopSignal.get()) break;
-            evaluateStatement(statement, env);
-        }
+        List<ExecutionEvent> events = new ArrayList<>();
+        evaluate(program, env, events::add);
         return events;
     }
 
-    private void evaluateStatement(Statement stmt, Environment env) {
-        if (stopSignal.get() || ++instructionCount > INSTRUCTION_LIMIT) {
-            if(instructionCount > INSTRUCTION_LIMIT) {
-                events.add(new ExecutionEvent.ErrorEvent("Execution timed out! Possible infinite loop."));
+    // Pushes each event to the sink as soon as it happens. Closing the sink
+    // is left to the caller. A run that uses up one of its ResourceLimits
+    // ends with an ErrorEvent saying which.
+    public void evaluate(List<Statement> program, Environment env, EventSink sink) {
+        governor = new Governor(limits, stopSignal, profiler);
+        exhausted = null;
+        memo = (memoizing && profiler == null) ? new MotionMemo() : null;
+        functions = new CallTarget[8];
+        targets = new IdentityHashMap<>();
+        this.sink = (memo != null) ? memo.tap(governor.meter(sink)) : governor.meter(sink);
+        try {
+            this.sink.accept(new ExecutionEvent.ClearEvent());
+            this.sink.accept(new ExecutionEvent.MoveEvent(
+                env.getX(), env.getY(), env.getX(), env.getY(),
+                env.getDirection(), env.isPenDown(), env.getPenColor()));
+            for (Statement statement : program) {
+                if (governor.isStopped()) break;
+                evaluateStatement(statement, env);
             }
-            return;
+        } catch (ResourceExhaustedException e) {
+            exhausted = e.getBudget();
+            sink.accept(new ExecutionEvent.ErrorEvent(e.getMessage()));
+        } catch (StackOverflowError e) {
+            ResourceExhaustedException tooDeep = governor.stackExhausted();
+            exhausted = tooDeep.getBudget();
+            sink.accept(new ExecutionEvent.ErrorEvent(tooDeep.getMessage()));
         }
+    }
+
+    private void evaluateStatement(Statement stmt, Environment env) {
+        line = stmt.lineNumber();
+        if (!governor.step(line)) return;
         if (stmt instanceof SetStatement setStmt) {
+            Identifier target = setStmt.name();
+            if (target.type() == StaticType.INT && target.depth() == 0 && tryEvaluateInt(setStmt.value(), env)) {
+                env.setIntSlot(target.slot(), intResult);
+                return;
+            }
             Object value = evaluateExpression(setStmt.value(), env);
-            if (isError(value)) {
-                events.add(new ExecutionEvent.ErrorEvent((String) value));
+            if (value instanceof ErrorValue error) {
+                sink.accept(new ExecutionEvent.ErrorEvent(error.message()));
             } else {
-                env.set(setStmt.name().value(), value);
+                env.set(target, value);
             }
         } else if (stmt instanceof MoveStatement moveStmt) {
-            Object stepsVal = evaluateExpression(moveStmt.steps(), env);
-            if (!(stepsVal instanceof Integer steps)) {
-                events.add(new ExecutionEvent.SayEvent("Error: 'move forward' requires a number. Got: " + stepsVal));
-                return;
+            int steps;
+            if (tryEvaluateInt(moveStmt.steps(), env)) {
+                steps = intResult;
+            } else {
+                Object stepsVal = evaluateExpression(moveStmt.steps(), env);
+                if (!(stepsVal instanceof Integer boxed)) {
+                    sink.accept(new ExecutionEvent.SayEvent("Error: 'move forward' requires a number. Got: " + governor.text(stepsVal)));
+                    return;
+                }
+                steps = boxed;
             }
             int oldX = env.getX();
             int oldY = env.getY();
-            int newX = oldX + (int) (steps * Math.sin(Math.toRadians(env.getDirection())));
-            int newY = oldY - (int) (steps * Math.cos(Math.toRadians(env.getDirection())));
+            int newX = oldX + Operations.deltaX(steps, env.getDirection());
+            int newY = oldY + Operations.deltaY(steps, env.getDirection());
             env.setPosition(newX, newY);
-            events.add(new ExecutionEvent.MoveEvent(oldX, oldY, newX, newY, env.getDirection(), env.isPenDown(), env.getPenColor()));
+            sink.accept(new ExecutionEvent.MoveEvent(oldX, oldY, newX, newY, env.getDirection(), env.isPenDown(), env.getPenColor()));
         } else if (stmt instanceof TurnStatement turnStmt) {
-            Object degreesVal = evaluateExpression(turnStmt.degrees(), env);
-            if (!(degreesVal instanceof Integer degrees)) {
-                events.add(new ExecutionEvent.SayEvent("Error: 'turn' requires a number. Got: " + degreesVal));
-                return;
-            }
-            if (turnStmt.direction().equalsIgnoreCase("right")) {
-                env.setDirection((env.getDirection() + degrees) % 360);
+            int degrees;
+            if (tryEvaluateInt(turnStmt.degrees(), env)) {
+                degrees = intResult;
             } else {
-                env.setDirection((env.getDirection() - degrees + 360) % 360);
+                Object degreesVal = evaluateExpression(turnStmt.degrees(), env);
+                if (!(degreesVal instanceof Integer boxed)) {
+                    sink.accept(new ExecutionEvent.SayEvent("Error: 'turn' requires a number. Got: " + governor.text(degreesVal)));
+                    return;
+                }
+                degrees = boxed;
             }
-            events.add(new ExecutionEvent.MoveEvent(env.getX(), env.getY(), env.getX(), env.getY(), env.getDirection(), env.isPenDown(), env.getPenColor()));
+            env.setDirection(Operations.turn(env.getDirection(), degrees, turnStmt.direction().equalsIgnoreCase("right")));
+            sink.accept(new ExecutionEvent.MoveEvent(env.getX(), env.getY(), env.getX(), env.getY(), env.getDirection(), env.isPenDown(), env.getPenColor()));
         } else if (stmt instanceof PenStatement penStmt) {
             env.setPenDown(penStmt.state().equalsIgnoreCase("down"));
-            events.add(new ExecutionEvent.MoveEvent(env.getX(), env.getY(), env.getX(), env.getY(), env.getDirection(), env.isPenDown(), env.getPenColor()));
+            sink.accept(new ExecutionEvent.MoveEvent(env.getX(), env.getY(), env.getX(), env.getY(), env.getDirection(), env.isPenDown(), env.getPenColor()));
         } else if (stmt instanceof SetColorStatement colorStmt) {
             Object colorVal = evaluateExpression(colorStmt.colorName(), env);
-            if (!(colorVal instanceof String colorName)) {
-                events.add(new ExecutionEvent.SayEvent("Error: 'color' requires a string color name."));
+            if (colorVal instanceof ErrorValue error) {
+                sink.accept(new ExecutionEvent.ErrorEvent(error.message()));
+                return;
+            }
+            if (!(Operations.flatten(colorVal) instanceof String colorName)) {
+                sink.accept(new ExecutionEvent.SayEvent("Error: 'color' requires a string color name."));
                 return;
             }
-            if (!isSupportedColor(colorName)) {
-                events.add(new ExecutionEvent.SayEvent("Error: Unknown color '" + colorName + "'."));
+            if (!Operations.isSupportedColor(colorName)) {
+                sink.accept(new ExecutionEvent.SayEvent("Error: Unknown color '" + colorName + "'."));
                 return;
             }
             env.setPenColor(colorName.toLowerCase());
-            events.add(new ExecutionEvent.MoveEvent(env.getX(), env.getY(), env.getX(), env.getY(), env.getDirection(), env.isPenDown(), env.getPenColor()));
+            sink.accept(new ExecutionEvent.MoveEvent(env.getX(), env.getY(), env.getX(), env.getY(), env.getDirection(), env.isPenDown(), env.getPenColor()));
         } else if (stmt instanceof SayStatement sayStmt) {
+            if (tryEvaluateInt(sayStmt.message(), env)) {
+                sink.accept(new ExecutionEvent.SayEvent(String.valueOf(intResult)));
+                return;
+            }
             Object messageObj = evaluateExpression(sayStmt.message(), env);
-            if (isError(messageObj)) {
-                events.add(new ExecutionEvent.ErrorEvent((String) messageObj));  // Use ErrorEvent for consistency
+            if (messageObj instanceof ErrorValue error) {
+                sink.accept(new ExecutionEvent.ErrorEvent(error.message()));  // Use ErrorEvent for consistency
             } else {
-                events.add(new ExecutionEvent.SayEvent(String.valueOf(messageObj)));
+                sink.accept(new ExecutionEvent.SayEvent(governor.text(messageObj)));
             }
         } else if (stmt instanceof RepeatStatement repeatStmt) {
-            Object timesVal = evaluateExpression(repeatStmt.times(), env);
-            if (!(timesVal instanceof Integer times)) {
-                events.add(new ExecutionEvent.SayEvent("Error: 'repeat' requires a number."));
-                return;
-            }
-            for (int i = 0; i < times; i++) {
-                if (stopSignal.get()) return;
-                for (Statement bodyStatement : repeatStmt.body()) {
-                    evaluateStatement(bodyStatement, env);
+            int times;
+            if (tryEvaluateInt(repeatStmt.times(), env)) {
+                times = intResult;
+            } else {
+                Object timesVal = evaluateExpression(repeatStmt.times(), env);
+                if (!(timesVal instanceof Integer boxed)) {
+                    sink.accept(new ExecutionEvent.SayEvent("Error: 'repeat' requires a number."));
+                    return;
                 }
+                times = boxed;
             }
+            MotionMemo.Key key = (memo != null) ? memo.key(repeatStmt, List.of(times), env) : null;
+            if (key != null && replay(key, env)) return;
+            MotionMemo.Recording recording = (key != null) ? memo.start(key, env, governor) : null;
+            evaluateRepeat(repeatStmt, times, env);
+            if (recording != null) memo.finish(recording, env, governor);
         } else if (stmt instanceof IfStatement ifStmt) {
-            Object cond = evaluateExpression(ifStmt.condition(), env);
-            if (isError(cond)) {
-                events.add(new ExecutionEvent.SayEvent((String) cond));
-                return;
+            boolean condVal;
+            if (tryEvaluateCondition(ifStmt.condition(), env)) {
+                condVal = intResult != 0;
+            } else {
+                Object cond = evaluateExpression(ifStmt.condition(), env);
+                if (cond instanceof ErrorValue error) {
+                    sink.accept(new ExecutionEvent.SayEvent(error.message()));
+                    return;
+                }
+                condVal = Operations.isTruthy(cond);
             }
-            boolean condVal = (cond instanceof Boolean b && b) || (cond instanceof Integer i && i != 0);
             if (condVal) {
                 for (Statement bodyStatement : ifStmt.consequence()) {
                     evaluateStatement(bodyStatement, env);
@@ -118,8 +218,18 @@ public class Evaluator {
                     evaluateStatement(bodyStatement, env);
                 }
             }
+        } else if (stmt instanceof BlockStatement blockStmt) {
+            for (Statement bodyStatement : blockStmt.body()) {
+                evaluateStatement(bodyStatement, env);
+            }
         } else if (stmt instanceof FunctionDefinitionStatement funcDefStmt) {
             env.defineFunction(funcDefStmt.name().value(), funcDefStmt);
+            int slot = funcDefStmt.name().slot();
+            if (slot >= 0) {
+                if (slot >= functions.length) functions = Arrays.copyOf(functions, Math.max(slot + 1, functions.length * 2));
+                functions[slot] = target(funcDefStmt, env);
+            }
+            if (memo != null) memo.invalidate();
         } else if (stmt instanceof FunctionCallStatement funcCallStmt) {
             evaluateFunctionCall(funcCallStmt, env);
         } else if (stmt instanceof ExpressionStatement exprStmt) {
@@ -127,106 +237,224 @@ public class Evaluator {
         }
     }
 
-    private boolean isSupportedColor(String colorName) {
-        return switch (colorName.toLowerCase()) {
-            case "red", "green", "blue", "yellow", "orange", "purple", "black", "white" -> true;
-            default -> false;
-        };
+    private void evaluateRepeat(RepeatStatement repeatStmt, int times, Environment env) {
+        for (int i = 0; i < times; i++) {
+            if (!governor.iterate()) return;
+            for (Statement bodyStatement : repeatStmt.body()) {
+                evaluateStatement(bodyStatement, env);
+            }
+        }
     }
 
-    private Object evaluateExpression(Expression expr, Environment env) {
+    // Replays a memoized unit if there is an effect for its key that fits
+    // in what is left of the budgets.
+    private boolean replay(MotionMemo.Key key, Environment env) {
+        MotionMemo.Effect effect = memo.lookup(key);
+        if (effect == null || !governor.canReplay(effect.steps(), effect.events().length, effect.depth())) {
+            return false;
+        }
+        memo.replay(effect, env, sink);
+        governor.replay(effect.steps(), effect.ticks(), effect.depth());
+        return true;
+    }
+
+    // Package-private so tests can evaluate single expressions.
+    Object evaluateExpression(Expression expr, Environment env) {
         if (expr instanceof IntegerLiteral i) {
             return i.value();
         }
         if (expr instanceof StringLiteral s) {
             return s.value();
         }
+        if (expr instanceof ConstantExpression constant) {
+            return constant.value();
+        }
         if (expr instanceof Identifier id) {
-            Object value = env.get(id.value());
+            Object value = env.get(id);
             if (value == null) {
-                return "Error: variable '" + id.value() + "' not found.";
+                return Operations.error("Error: variable '" + id.value() + "' not found.", line);
             }
             return value;
         }
+        // Both operands (and every element) are evaluated before errors are
+        // checked, as the VM does, so a resource limit hit in either one ends
+        // the run in both engines.
         if (expr instanceof InfixExpression infix) {
             Object left = evaluateExpression(infix.left(), env);
-            if (isError(left)) return left;
             Object right = evaluateExpression(infix.right(), env);
+            if (isError(left)) return left;
             if (isError(right)) return right;
-            if (left instanceof String || right instanceof String) {
-                return String.valueOf(left) + String.valueOf(right);
-            }
-            if (left instanceof Integer l && right instanceof Integer r) {
-                return switch (infix.operator()) {
-                    case "+" -> l + r;
-                    case "-" -> l - r;
-                    case "*" -> l * r;
-                    case "/" -> (r == 0) ? "Error: Division by zero" : l / r;
-                    case "==" -> l.equals(r);
-                    case "!=" -> !l.equals(r);
-                    case ">" -> l > r;
-                    case "<" -> l < r;
-                    default -> "Error: Unknown operator '" + infix.operator() + "' for numbers.";
-                };
-            }
-            return "Error: Cannot perform operation '" + infix.operator() + "' on these types.";
+            return Operations.infix(Operations.operatorCode(infix.operator()), infix.operator(), left, right, line, governor);
         }
         if (expr instanceof ListLiteral listLiteral) {
-            List<Object> elements = new ArrayList<>();
-            for (Expression el : listLiteral.elements()) {
-                Object evaluated = evaluateExpression(el, env);
-                if (isError(evaluated)) return evaluated;
-                elements.add(evaluated);
+            List<Expression> elementExprs = listLiteral.elements();
+            Object[] elements = new Object[elementExprs.size()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = evaluateExpression(elementExprs.get(i), env);
+            }
+            for (Object element : elements) {
+                if (isError(element)) return element;
             }
-            return elements;
+            governor.checkList(elements.length);
+            return ListValue.of(elements);
         }
         if (expr instanceof IndexExpression indexExpr) {
             Object left = evaluateExpression(indexExpr.left(), env);
-            if (isError(left)) return left;
+            if (tryEvaluateInt(indexExpr.index(), env)) {
+                return isError(left) ? left : Operations.index(left, intResult, line);
+            }
             Object index = evaluateExpression(indexExpr.index(), env);
+            if (isError(left)) return left;
             if (isError(index)) return index;
-            if (!(left instanceof List)) {
-                return "Error: index operator [] cannot be used on non-list type.";
+            return Operations.index(left, index, line);
+        }
+        return Operations.error("Error: Cannot evaluate expression", line);
+    }
+
+    private boolean tryEvaluateInt(Expression expr, Environment env) {
+        if (!isTyped(expr, StaticType.INT)) return false;
+        intBailout = false;
+        intResult = evaluateInt(expr, env);
+        return !intBailout;
+    }
+
+    // Int and boolean-typed conditions both reduce to "non-zero is true".
+    private boolean tryEvaluateCondition(Expression expr, Environment env) {
+        if (!isTyped(expr, StaticType.INT) && !isTyped(expr, StaticType.BOOLEAN)) return false;
+        intBailout = false;
+        intResult = evaluateInt(expr, env);
+        return !intBailout;
+    }
+
+    private static boolean isTyped(Expression expr, StaticType type) {
+        if (expr instanceof IntegerLiteral) return type == StaticType.INT;
+        if (expr instanceof Identifier id) return id.type() == type;
+        if (expr instanceof InfixExpression infix) return infix.type() == type;
+        return false;
+    }
+
+    // Evaluates an expression TypeInference proved int-typed (comparisons give
+    // 1 or 0) without boxing. If a value is not an int after all (an unassigned
+    // variable, division by zero) it sets intBailout, and the caller re-runs the
+    // generic path to get the exact same result or error as before. Expressions
+    // have no side effects, so evaluating twice is safe.
+    private int evaluateInt(Expression expr, Environment env) {
+        if (expr instanceof IntegerLiteral i) {
+            return i.value();
+        }
+        if (expr instanceof Identifier id) {
+            Environment frame = (id.depth() == Identifier.GLOBAL) ? env.getGlobal() : env;
+            int slot = id.slot();
+            if (frame.holdsInt(slot)) {
+                return frame.getIntSlot(slot);
             }
-            if (!(index instanceof Integer)) {
-                return "Error: index must be a number.";
+            if (frame.getSlot(slot) instanceof Integer boxed) {
+                return boxed;
             }
-            List<Object> list = (List<Object>) left;
-            int idx = (Integer) index;
-            if (idx < 0 || idx >= list.size()) {
-                return "Error: index " + idx + " out of bounds for list of size " + list.size() + ".";
+        } else if (expr instanceof InfixExpression infix) {
+            int l = evaluateInt(infix.left(), env);
+            if (intBailout) return 0;
+            int r = evaluateInt(infix.right(), env);
+            if (intBailout) return 0;
+            switch (infix.operator()) {
+                case "+": return l + r;
+                case "-": return l - r;
+                case "*": return l * r;
+                case "/": if (r != 0) return l / r; break;
+                case "==": return (l == r) ? 1 : 0;
+                case "!=": return (l != r) ? 1 : 0;
+                case ">": return (l > r) ? 1 : 0;
+                case "<": return (l < r) ? 1 : 0;
+                default: break;
             }
-            return list.get(idx);
         }
-        return "Error: Cannot evaluate expression";
+        intBailout = true;
+        return 0;
     }
 
     private boolean isError(Object obj) {
-        return obj instanceof String s && s.startsWith("Error:");
+        return Operations.isError(obj);
     }
 
     private void evaluateFunctionCall(FunctionCallStatement call, Environment env) {
-        FunctionDefinitionStatement func = env.getFunction(call.function().value());
-        if (func == null) {
-            events.add(new ExecutionEvent.SayEvent("Error: function '" + call.function().value() + "' not defined."));
+        CallTarget target = callTarget(call.function(), env);
+        List<Expression> argExprs = call.arguments();
+        if (target == null) {
+            evaluateRest(argExprs, 0, env);
+            sink.accept(new ExecutionEvent.SayEvent("Error: function '" + call.function().value() + "' not defined."));
             return;
         }
-        List<String> paramNames = func.parameters().stream().map(Identifier::value).toList();
-        List<Expression> argExprs = call.arguments();
-        if (paramNames.size() != argExprs.size()) {
-            events.add(new ExecutionEvent.SayEvent("Error: function '" + call.function().value() + "' expects " + paramNames.size() + " arguments, got " + argExprs.size() + "."));
+        Identifier[] params = target.parameters;
+        if (params.length != argExprs.size()) {
+            evaluateRest(argExprs, 0, env);
+            sink.accept(new ExecutionEvent.SayEvent("Error: function '" + call.function().value() + "' expects " + params.length + " arguments, got " + argExprs.size() + "."));
             return;
         }
-        Environment localEnv = new Environment(env);
-        for (int i = 0; i < paramNames.size(); i++) {
+        Environment localEnv = target.acquire(env);
+        for (int i = 0; i < params.length; i++) {
+            Identifier param = params[i];
+            if (param.type() == StaticType.INT && tryEvaluateInt(argExprs.get(i), env)) {
+                localEnv.setIntSlot(param.slot(), intResult);
+                continue;
+            }
             Object argVal = evaluateExpression(argExprs.get(i), env);
-            if (isError(argVal)) {
-                events.add(new ExecutionEvent.SayEvent((String) argVal));
+            if (argVal instanceof ErrorValue error) {
+                target.release(localEnv);
+                evaluateRest(argExprs, i + 1, env);
+                sink.accept(new ExecutionEvent.SayEvent(error.message()));
+                return;
+            }
+            localEnv.set(param, argVal);
+        }
+        MotionMemo.Key key = null;
+        if (memo != null) {
+            List<Object> arguments = new ArrayList<>(params.length);
+            for (Identifier param : params) {
+                arguments.add(localEnv.get(param));
+            }
+            key = memo.key(target.definition, arguments, env);
+            if (key != null && replay(key, env)) {
+                target.release(localEnv);
                 return;
             }
-            localEnv.set(paramNames.get(i), argVal);
         }
-        for (Statement bodyStmt : func.body()) {
+        MotionMemo.Recording recording = (key != null) ? memo.start(key, env, governor) : null;
+        governor.enterCall();
+        for (Statement bodyStmt : target.body) {
             evaluateStatement(bodyStmt, localEnv);
         }
+        governor.exitCall();
+        target.release(localEnv);
+        if (recording != null) memo.finish(recording, env, governor);
+    }
+
+    // The target bound to the function's slot, or for names the Resolver did
+    // not see (or functions defined before this run), the one in the
+    // function table. Null if there is no such function.
+    private CallTarget callTarget(Identifier function, Environment env) {
+        int slot = function.slot();
+        if (slot >= 0 && slot < functions.length && functions[slot] != null) {
+            return functions[slot];
+        }
+        FunctionDefinitionStatement func = env.getFunction(function.value());
+        return (func != null) ? target(func, env) : null;
+    }
+
+    private CallTarget target(FunctionDefinitionStatement func, Environment env) {
+        CallTarget target = targets.get(func);
+        if (target == null) {
+            target = new CallTarget(func, env.getGlobal());
+            targets.put(func, target);
+        }
+        return target;
+    }
+
+    // The VM evaluates every argument before it looks at the call, so a call
+    // that fails still evaluates the rest, in case one of them uses up a
+    // resource limit. Their values are not needed.
+    private void evaluateRest(List<Expression> argExprs, int from, Environment env) {
+        for (int i = from; i < argExprs.size(); i++) {
+            evaluateExpression(argExprs.get(i), env);
+        }
     }
+}
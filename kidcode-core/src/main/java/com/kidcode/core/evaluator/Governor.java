@@ -0,0 +1,238 @@
+package com.kidcode.core.evaluator;
+
+import com.kidcode.core.event.EventSink;
+import com.kidcode.core.event.ExecutionEvent;
+import java.util.function.BooleanSupplier;
+
+// Meters one run against its ResourceLimits. The engines call it at every
+// statement, loop pass, call, list and string they make; each check is a
+// counter compare. The stop signal and the clock are only read once every
+// POLL_INTERVAL steps.
+//
+// A stop request is not an error: step() and iterate() start returning
+// false and the engine unwinds quietly, as before. Running out of a budget
+// throws ResourceExhaustedException, which the engine turns into the run's
+// final ErrorEvent.
+//
+// A profiled run also passes each step and event on to its LineProfiler.
+// A stop signal that is a RunMonitor is told the counts at every poll.
+public final class Governor {
+    private static final int POLL_INTERVAL = 1024;
+
+    private final ResourceLimits limits;
+    private final BooleanSupplier stopSignal;
+    private final RunMonitor monitor; // the stop signal, if it is one
+    private final LineProfiler profiler; // null unless the run is profiled
+    private final long startNanos = System.nanoTime();
+    private long instructions = 0;
+    private long events = 0;
+    private int callDepth = 0;
+    private int peakDepth = 0;
+    private int untilPoll = POLL_INTERVAL;
+    private long polls = 0;
+    private boolean stopped = false;
+
+    public Governor(ResourceLimits limits, BooleanSupplier stopSignal) {
+        this(limits, stopSignal, null);
+    }
+
+    public Governor(ResourceLimits limits, BooleanSupplier stopSignal, LineProfiler profiler) {
+        this.limits = limits;
+        this.stopSignal = stopSignal;
+        this.monitor = (stopSignal instanceof RunMonitor m) ? m : null;
+        this.profiler = profiler;
+    }
+
+    // Counts one statement on 'line'. Returns false once the run has been stopped.
+    public boolean step(int line) {
+        if (profiler != null) {
+            profiler.enter(line);
+        }
+        if (++instructions > limits.instructions()) {
+            throw new ResourceExhaustedException(ResourceLimits.Budget.INSTRUCTIONS,
+                "Execution timed out! Possible infinite loop.");
+        }
+        return iterate();
+    }
+
+    // One pass of a repeat loop: not an instruction, but a loop with an empty
+    // body must still notice a stop or the deadline.
+    public boolean iterate() {
+        if (--untilPoll == 0) {
+            untilPoll = POLL_INTERVAL;
+            polls++;
+            poll();
+        }
+        return !stopped;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private void poll() {
+        if (monitor != null) {
+            monitor.progress(instructions, events);
+        }
+        if (stopSignal.getAsBoolean()) {
+            stopped = true;
+        }
+        long timeMillis = limits.timeMillis();
+        if (timeMillis > 0 && System.nanoTime() - startNanos > timeMillis * 1_000_000) {
+            throw new ResourceExhaustedException(ResourceLimits.Budget.TIME,
+                "Time limit exceeded: the program was stopped after " + timeMillis + " ms.");
+        }
+    }
+
+    public long instructions() {
+        return instructions;
+    }
+
+    public long events() {
+        return events;
+    }
+
+    // Wraps the run's sink so every event is counted against the budget.
+    public EventSink meter(EventSink sink) {
+        return new EventSink() {
+            @Override
+            public void accept(ExecutionEvent event) {
+                if (++events > limits.events()) {
+                    throw new ResourceExhaustedException(ResourceLimits.Budget.EVENTS,
+                        "Event limit exceeded: the program made more than " + limits.events() + " events.");
+                }
+                if (profiler != null) {
+                    profiler.event();
+                }
+                sink.accept(event);
+            }
+
+            @Override
+            public void flush() {
+                sink.flush();
+            }
+        };
+    }
+
+    public void enterCall() {
+        if (++callDepth > limits.callDepth()) {
+            throw tooDeep();
+        }
+        if (callDepth > peakDepth) {
+            peakDepth = callDepth;
+        }
+    }
+
+    public void exitCall() {
+        callDepth--;
+    }
+
+    // --- Replaying memoized work (see MotionMemo) ---
+    // A replay must use up exactly what running the work again would have:
+    // the same instructions, the same ticks towards the next poll, and the
+    // same call depth on top of the current one.
+
+    // Steps and loop passes so far.
+    long ticks() {
+        return polls * POLL_INTERVAL + (POLL_INTERVAL - untilPoll);
+    }
+
+    int callDepth() {
+        return callDepth;
+    }
+
+    // The deepest call depth reached since it was last set.
+    int peakDepth() {
+        return peakDepth;
+    }
+
+    void setPeakDepth(int peakDepth) {
+        this.peakDepth = peakDepth;
+    }
+
+    // Whether work that took these can be replayed without running out of a
+    // budget part-way; if not, it is run again so it stops at the same point.
+    boolean canReplay(long steps, long eventCount, int depth) {
+        return instructions + steps <= limits.instructions()
+            && events + eventCount <= limits.events()
+            && callDepth + depth <= limits.callDepth();
+    }
+
+    // Counts the steps and ticks of replayed work. Its events were already
+    // counted by the metered sink.
+    void replay(long steps, long ticks, int depth) {
+        instructions += steps;
+        peakDepth = Math.max(peakDepth, callDepth + depth);
+        long remaining = untilPoll - ticks;
+        if (remaining > 0) {
+            untilPoll = (int) remaining;
+            return;
+        }
+        polls += 1 + (-remaining) / POLL_INTERVAL;
+        untilPoll = (int) (POLL_INTERVAL - (-remaining) % POLL_INTERVAL);
+        poll();
+    }
+
+    public ResourceExhaustedException tooDeep() {
+        return new ResourceExhaustedException(ResourceLimits.Budget.CALL_DEPTH,
+            "Recursion limit exceeded: more than " + limits.callDepth() + " function calls in progress.");
+    }
+
+    // The Evaluator ran out of JVM stack before the call depth limit, which
+    // only happens on threads smaller than the engine's own. It ends the run
+    // against the same budget but says what actually happened.
+    public ResourceExhaustedException stackExhausted() {
+        return new ResourceExhaustedException(ResourceLimits.Budget.CALL_DEPTH,
+            "Recursion too deep for this thread's stack.");
+    }
+
+    public void checkList(int size) {
+        if (size > limits.listSize()) {
+            throw new ResourceExhaustedException(ResourceLimits.Budget.LIST_SIZE,
+                "List limit exceeded: a list cannot have more than " + limits.listSize() + " items.");
+        }
+    }
+
+    // A value as 'say' shows it. Lists are written out only up to the
+    // string budget, so a deeply nested list cannot blow up while printing.
+    public String text(Object value) {
+        if ((value instanceof String || value instanceof Rope) && ((CharSequence) value).length() <= limits.stringLength()) {
+            return value.toString();
+        }
+        StringBuilder out = new StringBuilder();
+        if (!Operations.appendText(out, value, limits.stringLength())) {
+            throw stringTooLong();
+        }
+        return out.toString();
+    }
+
+    // Same text as String.valueOf(left) + String.valueOf(right), within the
+    // budget. Long results are Ropes, so a string grown one piece at a time
+    // is not copied on every '+'.
+    public Object concat(Object left, Object right) {
+        CharSequence l = textOf(left);
+        CharSequence r = textOf(right);
+        long length = (long) l.length() + r.length();
+        if (length > limits.stringLength()) throw stringTooLong();
+        if (length < Rope.MIN_LENGTH) {
+            return l.toString() + r;
+        }
+        return Rope.concat(l, r);
+    }
+
+    private CharSequence textOf(Object value) {
+        if (value instanceof String || value instanceof Rope) {
+            return (CharSequence) value;
+        }
+        StringBuilder out = new StringBuilder();
+        if (!Operations.appendText(out, value, limits.stringLength())) {
+            throw stringTooLong();
+        }
+        return out;
+    }
+
+    private ResourceExhaustedException stringTooLong() {
+        return new ResourceExhaustedException(ResourceLimits.Budget.STRING_LENGTH,
+            "Text limit exceeded: a string cannot be longer than " + limits.stringLength() + " characters.");
+    }
+}
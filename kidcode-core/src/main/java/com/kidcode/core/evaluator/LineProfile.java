@@ -0,0 +1,37 @@
+package com.kidcode.core.evaluator;
+
+import java.util.List;
+
+// Where a run spent its statements, time and events, per source line (see
+// LineProfiler and KidCodeEngine.profile). Empty if the program did not parse.
+public record LineProfile(List<Line> lines) {
+
+    public static final LineProfile EMPTY = new LineProfile(List.of());
+
+    public LineProfile {
+        lines = List.copyOf(lines);
+    }
+
+    //   lineNumber  1-based source line
+    //   column      1-based column of the first statement on the line
+    //   count       statements executed on the line
+    //   selfNanos   time spent running them, not counting nested blocks
+    //               and called functions
+    //   events      events the line sent
+    public record Line(int lineNumber, int column, long count, long selfNanos, long events) {}
+
+    public long totalNanos() {
+        long total = 0;
+        for (Line line : lines) total += line.selfNanos();
+        return total;
+    }
+
+    // The line with the most self time, or null if nothing ran.
+    public Line hottest() {
+        Line hottest = null;
+        for (Line line : lines) {
+            if (hottest == null || line.selfNanos() > hottest.selfNanos()) hottest = line;
+        }
+        return hottest;
+    }
+}
@@ -0,0 +1,178 @@
+package com.kidcode.core.evaluator;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+// A KidCode list. Lists never change once built, so each one is stored in
+// the most compact form that fits:
+//
+//   - Ints       every element is an int: an int[], 4 bytes an element and
+//                no Integer objects
+//   - Objects    anything else: a plain Object[] of exactly the right size
+//   - Appended   a list built by appended(): a persistent vector, a 32-way
+//                tree whose nodes are shared with the list it was built
+//                from, so appending copies at most one path of small arrays
+//                instead of the whole list
+//
+// All three are java.util.Lists with AbstractList's equals and hashCode,
+// and print exactly as an ArrayList would, so 'say' and string
+// concatenation are unchanged. Indexing is an array load (a few, for
+// Appended).
+public abstract class ListValue extends AbstractList<Object> implements RandomAccess {
+
+    public static final ListValue EMPTY = new Objects(new Object[0]);
+
+    // Takes ownership of 'values'; the caller must not change it afterwards.
+    public static ListValue of(Object[] values) {
+        for (Object value : values) {
+            if (!(value instanceof Integer)) {
+                return new Objects(values);
+            }
+        }
+        int[] ints = new int[values.length];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = (Integer) values[i];
+        }
+        return new Ints(ints);
+    }
+
+    // This list with 'value' added at the end. The caller checks the new
+    // size against the list budget (Governor.checkList).
+    public ListValue appended(Object value) {
+        Appended list = Appended.EMPTY;
+        for (int i = 0; i < size(); i++) {
+            list = list.appended(get(i));
+        }
+        return list.appended(value);
+    }
+
+    static final class Ints extends ListValue {
+        private final int[] values;
+
+        Ints(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object get(int index) {
+            return values[index];
+        }
+
+        public int getInt(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+
+    static final class Objects extends ListValue {
+        private final Object[] values;
+
+        Objects(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+
+    static final class Appended extends ListValue {
+        private static final int BITS = 5;
+        private static final int WIDTH = 1 << BITS;
+        private static final int MASK = WIDTH - 1;
+        static final Appended EMPTY = new Appended(0, BITS, new Object[WIDTH], new Object[0]);
+
+        // Every element but the last (up to) 32 lives in the tree under
+        // 'root', 'shift' bits per level; the rest are in 'tail', so most
+        // appends only copy the tail.
+        private final int size;
+        private final int shift;
+        private final Object[] root;
+        private final Object[] tail;
+
+        private Appended(int size, int shift, Object[] root, Object[] tail) {
+            this.size = size;
+            this.shift = shift;
+            this.root = root;
+            this.tail = tail;
+        }
+
+        @Override
+        public Object get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            if (index >= tailOffset()) {
+                return tail[index - tailOffset()];
+            }
+            Object[] node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                node = (Object[]) node[(index >>> level) & MASK];
+            }
+            return node[index & MASK];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Appended appended(Object value) {
+            if (size - tailOffset() < WIDTH) {
+                Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+                newTail[tail.length] = value;
+                return new Appended(size + 1, shift, root, newTail);
+            }
+            // The tail is full: it becomes a leaf of the tree, adding a
+            // level on top when the tree itself is full.
+            Object[] newRoot;
+            int newShift = shift;
+            if ((size >>> BITS) > (1 << shift)) {
+                newRoot = new Object[WIDTH];
+                newRoot[0] = root;
+                newRoot[1] = newPath(shift, tail);
+                newShift += BITS;
+            } else {
+                newRoot = pushTail(shift, root);
+            }
+            return new Appended(size + 1, newShift, newRoot, new Object[] {value});
+        }
+
+        private int tailOffset() {
+            return (size < WIDTH) ? 0 : ((size - 1) >>> BITS) << BITS;
+        }
+
+        private Object[] pushTail(int level, Object[] parent) {
+            int child = ((size - 1) >>> level) & MASK;
+            Object[] node = parent.clone();
+            if (level == BITS) {
+                node[child] = tail;
+            } else {
+                Object[] below = (Object[]) parent[child];
+                node[child] = (below != null) ? pushTail(level - BITS, below) : newPath(level - BITS, tail);
+            }
+            return node;
+        }
+
+        private static Object[] newPath(int level, Object[] leaf) {
+            if (level == 0) {
+                return leaf;
+            }
+            Object[] node = new Object[WIDTH];
+            node[0] = newPath(level - BITS, leaf);
+            return node;
+        }
+    }
+}
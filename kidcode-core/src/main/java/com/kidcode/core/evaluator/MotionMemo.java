@@ -0,0 +1,304 @@
+package com.kidcode.core.evaluator;
+
+import com.kidcode.core.ast.*;
+import com.kidcode.core.event.EventSink;
+import com.kidcode.core.event.ExecutionEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Lets the Evaluator replay a function call or a whole repeat statement it
+// has already run, instead of running it again.
+//
+// Such a unit can only see Cody's heading, pen and color, and the values of
+// the variables it reads; moves are relative, so the position never matters.
+// A call also sees its arguments, and a repeat its count. With all of those
+// equal, it sends the same events and leaves Cody in the same state, just
+// shifted by where it started. Move offsets are truncated to ints before they
+// are added, so a replay shifted to a new start gives exactly the
+// coordinates a fresh run would.
+//
+// A unit is only memoized if it cannot change anything else:
+//
+//   - no 'define' anywhere in it or in the functions it calls, since that
+//     changes the function table. Any define that does run drops
+//     everything memoized.
+//   - in a repeat, no 'set' either, since that would write the enclosing
+//     frame. A call's sets go to its own frame, which it leaves behind.
+//
+// The second time a key is seen, the run is recorded. From the third time on
+// it is replayed, and the Governor is charged the same instructions, events
+// and call depth as a real run. A replay that would cross a limit part-way
+// runs the unit again instead, so the run stops at the same statement.
+final class MotionMemo {
+    // Bounds on what one run keeps.
+    static final int MAX_ENTRIES = 4096;
+    static final int MAX_CACHED_EVENTS = 200_000;
+    static final int MAX_RECORDED_EVENTS = 20_000;
+
+    // A unit (a FunctionDefinitionStatement or a RepeatStatement, compared
+    // by identity) and everything its effect depends on.
+    static final class Key {
+        private final Statement unit;
+        private final List<Object> inputs;
+        private final double direction;
+        private final boolean penDown;
+        private final String color;
+        private final int hash;
+
+        Key(Statement unit, List<Object> inputs, double direction, boolean penDown, String color) {
+            this.unit = unit;
+            this.inputs = inputs;
+            this.direction = direction;
+            this.penDown = penDown;
+            this.color = color;
+            this.hash = 31 * (31 * (31 * System.identityHashCode(unit) + inputs.hashCode())
+                + Double.hashCode(direction)) + color.hashCode() + (penDown ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && k.unit == unit && k.hash == hash
+                && Double.compare(k.direction, direction) == 0 && k.penDown == penDown
+                && k.color.equals(color) && k.inputs.equals(inputs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // What a unit did: its events, with moves relative to where it started,
+    // and where it left Cody.
+    record Effect(ExecutionEvent[] events, int dx, int dy, double direction, boolean penDown, String color,
+                  long steps, long ticks, int depth) {}
+
+    // A recording in progress.
+    record Recording(Key key, int x, int y, int traceStart, long steps, long ticks, int depth, int outerPeak) {}
+
+    // Per unit, the variables to read for its key; NOT_MEMOIZABLE if it has
+    // none because it cannot be memoized.
+    private static final List<Identifier> NOT_MEMOIZABLE = List.of();
+    private final Map<Statement, List<Identifier>> reads = new IdentityHashMap<>();
+
+    private final Set<Key> seen = new HashSet<>();
+    private final Map<Key, Effect> effects = new HashMap<>();
+    private long cachedEvents = 0;
+
+    // Events sent while at least one recording is in progress.
+    private final List<ExecutionEvent> trace = new ArrayList<>();
+    private int recordings = 0;
+    private boolean overflowed = false;
+
+    // Wraps the run's sink so recordings see every event, replayed ones included.
+    EventSink tap(EventSink sink) {
+        return new EventSink() {
+            @Override
+            public void accept(ExecutionEvent event) {
+                if (recordings > 0 && !overflowed) {
+                    if (trace.size() >= MAX_RECORDED_EVENTS) {
+                        overflowed = true;
+                    } else {
+                        trace.add(event);
+                    }
+                }
+                sink.accept(event);
+            }
+
+            @Override
+            public void flush() {
+                sink.flush();
+            }
+        };
+    }
+
+    // The function table changed: calls may now reach other definitions.
+    void invalidate() {
+        reads.clear();
+        seen.clear();
+        effects.clear();
+        cachedEvents = 0;
+    }
+
+    // The key for running 'unit' now, or null if it cannot be memoized.
+    // 'inputs' are the argument values of a call or the count of a repeat.
+    Key key(Statement unit, List<Object> inputs, Environment env) {
+        List<Identifier> ids = reads.get(unit);
+        if (ids == null) {
+            ids = findReads(unit, env);
+            reads.put(unit, ids);
+        }
+        if (ids == NOT_MEMOIZABLE) {
+            return null;
+        }
+        List<Object> values = new ArrayList<>(inputs.size() + ids.size());
+        values.addAll(inputs);
+        for (Identifier id : ids) {
+            values.add(env.get(id));
+        }
+        return new Key(unit, values, env.getDirection(), env.isPenDown(), env.getPenColor());
+    }
+
+    // The recorded effect for 'key', or null if there is none yet.
+    Effect lookup(Key key) {
+        return effects.get(key);
+    }
+
+    // Starts recording the unit if its key has been seen before; returns
+    // null if not.
+    Recording start(Key key, Environment env, Governor governor) {
+        if (seen.size() >= 4 * MAX_ENTRIES) {
+            seen.clear();
+        }
+        if (seen.add(key)) {
+            return null;
+        }
+        Recording recording = new Recording(key, env.getX(), env.getY(), trace.size(),
+            governor.instructions(), governor.ticks(), governor.callDepth(), governor.peakDepth());
+        governor.setPeakDepth(governor.callDepth());
+        recordings++;
+        return recording;
+    }
+
+    // Ends a recording and keeps its effect, unless the run was stopped or
+    // the unit sent too many events.
+    void finish(Recording recording, Environment env, Governor governor) {
+        int depth = governor.peakDepth() - recording.depth();
+        governor.setPeakDepth(Math.max(recording.outerPeak(), governor.peakDepth()));
+        recordings--;
+        if (overflowed) {
+            reads.put(recording.key().unit, NOT_MEMOIZABLE); // too big to be worth it
+        } else if (!governor.isStopped()) {
+            List<ExecutionEvent> events = trace.subList(recording.traceStart(), trace.size());
+            ExecutionEvent[] relative = new ExecutionEvent[events.size()];
+            for (int i = 0; i < relative.length; i++) {
+                relative[i] = shift(events.get(i), -recording.x(), -recording.y());
+            }
+            store(recording.key(), new Effect(relative, env.getX() - recording.x(), env.getY() - recording.y(),
+                env.getDirection(), env.isPenDown(), env.getPenColor(),
+                governor.instructions() - recording.steps(), governor.ticks() - recording.ticks(), depth));
+        }
+        if (recordings == 0) {
+            trace.clear();
+            overflowed = false;
+        }
+    }
+
+    private void store(Key key, Effect effect) {
+        if (effects.size() >= MAX_ENTRIES || cachedEvents + effect.events().length > MAX_CACHED_EVENTS) {
+            effects.clear();
+            seen.clear();
+            cachedEvents = 0;
+        }
+        effects.put(key, effect);
+        cachedEvents += effect.events().length;
+    }
+
+    // Sends the effect's events from Cody's current position and moves Cody
+    // to where the unit left it. The caller charges the Governor.
+    void replay(Effect effect, Environment env, EventSink sink) {
+        int x = env.getX();
+        int y = env.getY();
+        for (ExecutionEvent event : effect.events()) {
+            sink.accept(shift(event, x, y));
+        }
+        env.setPosition(x + effect.dx(), y + effect.dy());
+        env.setDirection(effect.direction());
+        env.setPenDown(effect.penDown());
+        env.setPenColor(effect.color());
+    }
+
+    private static ExecutionEvent shift(ExecutionEvent event, int dx, int dy) {
+        if (event instanceof ExecutionEvent.MoveEvent m) {
+            return new ExecutionEvent.MoveEvent(m.fromX() + dx, m.fromY() + dy, m.toX() + dx, m.toY() + dy,
+                m.newDirection(), m.isPenDown(), m.color());
+        }
+        return event;
+    }
+
+    // --- Which variables a unit reads ---
+
+    // The identifiers to look up at the start of the unit, as seen from the
+    // frame it starts in: a repeat body's own names as written, and names in
+    // called functions by name (or in the global frame, if they read it
+    // there), since that is where they fall back to.
+    private List<Identifier> findReads(Statement unit, Environment env) {
+        Set<Identifier> ids = new LinkedHashSet<>();
+        Set<FunctionDefinitionStatement> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean memoizable;
+        if (unit instanceof FunctionDefinitionStatement def) {
+            visited.add(def);
+            memoizable = collect(def.body(), false, false, ids, visited, env);
+        } else {
+            memoizable = collect(((RepeatStatement) unit).body(), true, true, ids, visited, env);
+        }
+        return memoizable ? List.copyOf(ids) : NOT_MEMOIZABLE;
+    }
+
+    // Returns false if the block defines a function, or sets a variable
+    // while 'noSets'.
+    private boolean collect(List<Statement> block, boolean direct, boolean noSets, Set<Identifier> ids,
+                            Set<FunctionDefinitionStatement> visited, Environment env) {
+        if (block == null) return true;
+        for (Statement stmt : block) {
+            if (stmt instanceof FunctionDefinitionStatement) {
+                return false;
+            } else if (stmt instanceof SetStatement s) {
+                if (noSets) return false;
+                collect(s.value(), direct, ids);
+            } else if (stmt instanceof MoveStatement s) {
+                collect(s.steps(), direct, ids);
+            } else if (stmt instanceof TurnStatement s) {
+                collect(s.degrees(), direct, ids);
+            } else if (stmt instanceof SetColorStatement s) {
+                collect(s.colorName(), direct, ids);
+            } else if (stmt instanceof SayStatement s) {
+                collect(s.message(), direct, ids);
+            } else if (stmt instanceof ExpressionStatement s) {
+                collect(s.expression(), direct, ids);
+            } else if (stmt instanceof RepeatStatement s) {
+                collect(s.times(), direct, ids);
+                if (!collect(s.body(), direct, noSets, ids, visited, env)) return false;
+            } else if (stmt instanceof IfStatement s) {
+                collect(s.condition(), direct, ids);
+                if (!collect(s.consequence(), direct, noSets, ids, visited, env)) return false;
+                if (!collect(s.alternative(), direct, noSets, ids, visited, env)) return false;
+            } else if (stmt instanceof BlockStatement s) {
+                if (!collect(s.body(), direct, noSets, ids, visited, env)) return false;
+            } else if (stmt instanceof FunctionCallStatement s) {
+                for (Expression argument : s.arguments()) {
+                    collect(argument, direct, ids);
+                }
+                FunctionDefinitionStatement callee = env.getFunction(s.function().value());
+                if (callee != null && visited.add(callee)
+                        && !collect(callee.body(), false, false, ids, visited, env)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void collect(Expression expr, boolean direct, Set<Identifier> ids) {
+        if (expr instanceof Identifier id) {
+            ids.add((direct || id.depth() == Identifier.GLOBAL) ? id : new Identifier(id.value()));
+        } else if (expr instanceof InfixExpression infix) {
+            collect(infix.left(), direct, ids);
+            collect(infix.right(), direct, ids);
+        } else if (expr instanceof IndexExpression index) {
+            collect(index.left(), direct, ids);
+            collect(index.index(), direct, ids);
+        } else if (expr instanceof ListLiteral list) {
+            for (Expression element : list.elements()) {
+                collect(element, direct, ids);
+            }
+        }
+    }
+}
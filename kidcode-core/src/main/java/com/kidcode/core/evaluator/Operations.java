@@ -0,0 +1,155 @@
+package com.kidcode.core.evaluator;
+
+import java.util.List;
+
+// The value semantics of KidCode, shared by the tree-walking Evaluator and the
+// bytecode VM so that both engines produce exactly the same values and messages.
+public final class Operations {
+
+    // Operator codes for infix expressions. The VM stores these in its bytecode.
+    public static final int ADD = 0;
+    public static final int SUB = 1;
+    public static final int MUL = 2;
+    public static final int DIV = 3;
+    public static final int EQ = 4;
+    public static final int NOT_EQ = 5;
+    public static final int GT = 6;
+    public static final int LT = 7;
+    public static final int UNKNOWN = -1;
+
+    private Operations() {}
+
+    public static int operatorCode(String operator) {
+        return switch (operator) {
+            case "+" -> ADD;
+            case "-" -> SUB;
+            case "*" -> MUL;
+            case "/" -> DIV;
+            case "==" -> EQ;
+            case "!=" -> NOT_EQ;
+            case ">" -> GT;
+            case "<" -> LT;
+            default -> UNKNOWN;
+        };
+    }
+
+    // Strings are either Strings or, once built up with '+', Ropes.
+    public static boolean isText(Object obj) {
+        return obj instanceof String || obj instanceof Rope;
+    }
+
+    // The value with a Rope turned into its String.
+    public static Object flatten(Object value) {
+        return (value instanceof Rope rope) ? rope.toString() : value;
+    }
+
+    public static boolean isError(Object obj) {
+        return obj instanceof ErrorValue;
+    }
+
+    public static ErrorValue error(String message, int lineNumber) {
+        return new ErrorValue(message, lineNumber);
+    }
+
+    // Errors produced here are attributed to 'line', the statement being run.
+    public static Object infix(String operator, Object left, Object right, int line) {
+        return infix(operatorCode(operator), operator, left, right, line);
+    }
+
+    public static Object infix(int code, String operator, Object left, Object right, int line) {
+        return infix(code, operator, left, right, line, null);
+    }
+
+    // Only '+' is defined for strings; everything else needs two numbers.
+    // With a governor, the joined string counts against its string budget
+    // (and may come back as a Rope).
+    public static Object infix(int code, String operator, Object left, Object right, int line, Governor governor) {
+        if (isText(left) || isText(right)) {
+            if (code == ADD) {
+                return (governor != null) ? governor.concat(left, right) : String.valueOf(left) + String.valueOf(right);
+            }
+            return error("Error: Cannot perform operation '" + operator + "' on these types.", line);
+        }
+        if (left instanceof Integer l && right instanceof Integer r) {
+            return switch (code) {
+                case ADD -> l + r;
+                case SUB -> l - r;
+                case MUL -> l * r;
+                case DIV -> (r == 0) ? error("Error: Division by zero", line) : l / r;
+                case EQ -> l.equals(r);
+                case NOT_EQ -> !l.equals(r);
+                case GT -> l > r;
+                case LT -> l < r;
+                default -> error("Error: Unknown operator '" + operator + "' for numbers.", line);
+            };
+        }
+        return error("Error: Cannot perform operation '" + operator + "' on these types.", line);
+    }
+
+    public static Object index(Object left, Object index, int line) {
+        if (!(left instanceof List)) {
+            return error("Error: index operator [] cannot be used on non-list type.", line);
+        }
+        if (!(index instanceof Integer idx)) {
+            return error("Error: index must be a number.", line);
+        }
+        return index(left, (int) idx, line);
+    }
+
+    // Same as index(Object, Object, int) for an index already known to be an int.
+    @SuppressWarnings("unchecked")
+    public static Object index(Object left, int idx, int line) {
+        if (!(left instanceof List)) {
+            return error("Error: index operator [] cannot be used on non-list type.", line);
+        }
+        List<Object> list = (List<Object>) left;
+        if (idx < 0 || idx >= list.size()) {
+            return error("Error: index " + idx + " out of bounds for list of size " + list.size() + ".", line);
+        }
+        return list.get(idx);
+    }
+
+    // Appends String.valueOf(value) (lists as ArrayList.toString writes
+    // them) as long as 'out' stays within maxLength chars. Returns false,
+    // without finishing, once it would not.
+    public static boolean appendText(StringBuilder out, Object value, int maxLength) {
+        if (value instanceof List<?> list) {
+            out.append('[');
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) out.append(", ");
+                if (out.length() > maxLength || !appendText(out, list.get(i), maxLength)) return false;
+            }
+            out.append(']');
+            return out.length() <= maxLength;
+        }
+        CharSequence text = (value instanceof Rope rope) ? rope : String.valueOf(value);
+        if ((long) out.length() + text.length() > maxLength) return false;
+        Rope.append(out, text);
+        return true;
+    }
+
+    public static boolean isTruthy(Object cond) {
+        return (cond instanceof Boolean b && b) || (cond instanceof Integer i && i != 0);
+    }
+
+    public static boolean isSupportedColor(String colorName) {
+        return switch (colorName.toLowerCase()) {
+            case "red", "green", "blue", "yellow", "orange", "purple", "black", "white" -> true;
+            default -> false;
+        };
+    }
+
+    // Turtle geometry. The (int) truncation applies to the offset, not the
+    // absolute position, so a move's delta never depends on where Cody is.
+    public static int deltaX(int steps, double direction) {
+        return (int) (steps * Math.sin(Math.toRadians(direction)));
+    }
+
+    public static int deltaY(int steps, double direction) {
+        return -(int) (steps * Math.cos(Math.toRadians(direction)));
+    }
+
+    public static double turn(double direction, int degrees, boolean right) {
+        return right ? (direction + degrees) % 360 : (direction - degrees + 360) % 360;
+    }
+}
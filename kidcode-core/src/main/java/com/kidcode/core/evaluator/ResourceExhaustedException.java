@@ -0,0 +1,18 @@
+package com.kidcode.core.evaluator;
+
+// Thrown by the Governor when a run uses up one of its ResourceLimits. It
+// unwinds the whole run, however deep; the engine catches it and reports the
+// message as the run's last ErrorEvent. Thrown once per run, so it skips the
+// stack trace.
+public class ResourceExhaustedException extends RuntimeException {
+    private final ResourceLimits.Budget budget;
+
+    public ResourceExhaustedException(ResourceLimits.Budget budget, String message) {
+        super(message, null, false, false);
+        this.budget = budget;
+    }
+
+    public ResourceLimits.Budget getBudget() {
+        return budget;
+    }
+}
@@ -0,0 +1,59 @@
+package com.kidcode.core.evaluator;
+
+// How much a single run may use before it is ended with an ErrorEvent (see
+// Governor). Both engines enforce the same limits at the same points, so a
+// program that runs out does so identically in each.
+//
+//   timeMillis    wall-clock time for the run; 0 means no deadline
+//   instructions  statements executed
+//   events        events sent to the sink
+//   listSize      elements in one list
+//   stringLength  chars in one string, including a list shown as text
+//   callDepth     function calls in progress at once
+public record ResourceLimits(long timeMillis, long instructions, long events,
+                             int listSize, int stringLength, int callDepth) {
+
+    // What KidCodeEngine uses unless told otherwise: the old instruction
+    // limit, no deadline, and the rest generous enough for any real drawing.
+    // The call depth needs the stack of the threads the engine starts
+    // (KidCodeEngine.THREAD_STACK_SIZE). On a default thread the Evaluator
+    // can run out of stack first; that still ends the run as CALL_DEPTH, with
+    // its own message.
+    public static final ResourceLimits DEFAULT = new ResourceLimits(
+        0, Evaluator.INSTRUCTION_LIMIT, 2_000_000, 100_000, 1_000_000, 1000);
+
+    public ResourceLimits {
+        if (timeMillis < 0 || instructions < 0 || events < 0 || listSize < 0 || stringLength < 0 || callDepth < 0) {
+            throw new IllegalArgumentException("Resource limits cannot be negative");
+        }
+    }
+
+    public ResourceLimits withTimeMillis(long timeMillis) {
+        return new ResourceLimits(timeMillis, instructions, events, listSize, stringLength, callDepth);
+    }
+
+    public ResourceLimits withInstructions(long instructions) {
+        return new ResourceLimits(timeMillis, instructions, events, listSize, stringLength, callDepth);
+    }
+
+    public ResourceLimits withEvents(long events) {
+        return new ResourceLimits(timeMillis, instructions, events, listSize, stringLength, callDepth);
+    }
+
+    public ResourceLimits withListSize(int listSize) {
+        return new ResourceLimits(timeMillis, instructions, events, listSize, stringLength, callDepth);
+    }
+
+    public ResourceLimits withStringLength(int stringLength) {
+        return new ResourceLimits(timeMillis, instructions, events, listSize, stringLength, callDepth);
+    }
+
+    public ResourceLimits withCallDepth(int callDepth) {
+        return new ResourceLimits(timeMillis, instructions, events, listSize, stringLength, callDepth);
+    }
+
+    // The budgets, as reported when one runs out.
+    public enum Budget {
+        TIME, INSTRUCTIONS, EVENTS, LIST_SIZE, STRING_LENGTH, CALL_DEPTH
+    }
+}
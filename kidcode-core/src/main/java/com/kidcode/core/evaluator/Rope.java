@@ -0,0 +1,86 @@
+package com.kidcode.core.evaluator;
+
+// A long string built with '+', stored so that growing it is cheap.
+//
+// Programs build text in loops ('set text = text + " more"'), and copying
+// the whole string on every '+' makes that quadratic. A Rope is a prefix
+// of a StringBuilder it may share with other Ropes: the first 'length'
+// chars, which never change once written. Adding to the end of the Rope
+// that ends where the buffer does appends in place; anything else (adding
+// to an older Rope, or in front) copies into a new buffer, as String
+// concatenation would have.
+//
+// Governor.concat makes one only once the text is long enough to be worth
+// it, and checks the string budget before every append. The text is
+// flattened into a String where one is needed (say, color, errors) and kept
+// for the next time.
+public final class Rope implements CharSequence {
+    // Shorter results of '+' stay plain Strings.
+    static final int MIN_LENGTH = 64;
+
+    private final StringBuilder buffer;
+    private final int length;
+    private String flat;
+
+    private Rope(StringBuilder buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    // 'left' followed by 'right'; the caller has checked the total length.
+    static Rope concat(CharSequence left, CharSequence right) {
+        if (left instanceof Rope rope && rope.length == rope.buffer.length()) {
+            append(rope.buffer, right);
+            return new Rope(rope.buffer, rope.buffer.length());
+        }
+        StringBuilder buffer = new StringBuilder(Math.max(2 * (left.length() + right.length()), MIN_LENGTH));
+        append(buffer, left);
+        append(buffer, right);
+        return new Rope(buffer, buffer.length());
+    }
+
+    // Appends the text without flattening a Rope first.
+    static void append(StringBuilder out, CharSequence text) {
+        if (text instanceof Rope rope) {
+            out.append(rope.buffer, 0, rope.length);
+        } else {
+            out.append(text);
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+        return buffer.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) {
+            flat = buffer.substring(0, length);
+        }
+        return flat;
+    }
+
+    // Equal to another Rope with the same text, so values can be compared
+    // and used as keys. (Not to a String: compare toString() for that.)
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Rope r && r.length == length && r.toString().equals(toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
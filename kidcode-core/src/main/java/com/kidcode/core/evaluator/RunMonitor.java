@@ -0,0 +1,11 @@
+package com.kidcode.core.evaluator;
+
+import java.util.function.BooleanSupplier;
+
+// A stop signal that also follows the run: at every poll (see Governor) it
+// is told how many statements and events the run has used so far, so
+// another thread can show progress without touching the run's counters.
+public interface RunMonitor extends BooleanSupplier {
+
+    void progress(long instructions, long events);
+}
@@ -0,0 +1,21 @@
+package com.kidcode.core.evaluator;
+
+// Cody's position, heading and pen. One instance is shared by every frame of a run.
+public final class TurtleState {
+    private int x = 250;
+    private int y = 250;
+    private double direction = 0; // 0=North, 90=East, 180=South, 270=West
+    private boolean isPenDown = true;
+    private String penColor = "blue";
+
+    public int getX() { return x; }
+    public int getY() { return y; }
+    public double getDirection() { return direction; }
+    public boolean isPenDown() { return isPenDown; }
+    public String getPenColor() { return penColor; }
+
+    public void setPosition(int x, int y) { this.x = x; this.y = y; }
+    public void setDirection(double direction) { this.direction = direction; }
+    public void setPenDown(boolean isPenDown) { this.isPenDown = isPenDown; }
+    public void setPenColor(String penColor) { this.penColor = penColor; }
+}
@@ -0,0 +1,46 @@
+package com.kidcode.core.event;
+
+// Compact binary encoding of an ExecutionEvent stream, served as
+// "application/x-kidcode-events". BinaryEventWriter produces it,
+// BinaryEventReader and app.js decode it.
+//
+// The stream starts with MAGIC and is followed by records. Each record starts
+// with a tag byte whose low three bits are the record kind. Numbers are LEB128
+// varints; signed numbers are zigzag-encoded first. Strings are a varint byte
+// length followed by UTF-8.
+//
+//   CLEAR                        a ClearEvent
+//   MOVE  [jump dx dy] [step dx dy] [direction]
+//                                a MoveEvent; the flag bits of the tag say which
+//                                parts follow. Positions are deltas: the jump is
+//                                from the previous move's end to this move's start,
+//                                the step from start to end. Absent parts are zero.
+//   COLOR index                  pen color for the following moves, by palette index
+//   DEFINE_COLOR string          appends a color name to the palette
+//   DEFINE_TEXT string           appends a message to the text table
+//   SAY index / ERROR index      a SayEvent / ErrorEvent with text from the table
+//
+// Decoder state starts at position (0, 0), direction 0 and no color.
+public final class BinaryEventFormat {
+    public static final String MEDIA_TYPE = "application/x-kidcode-events";
+    public static final byte[] MAGIC = { 'K', 'C', 'E', '1' };
+
+    // Record kinds (low three bits of the tag)
+    public static final int CLEAR = 0;
+    public static final int MOVE = 1;
+    public static final int COLOR = 2;
+    public static final int DEFINE_COLOR = 3;
+    public static final int DEFINE_TEXT = 4;
+    public static final int SAY = 5;
+    public static final int ERROR = 6;
+    public static final int KIND_MASK = 0x07;
+
+    // MOVE flags
+    public static final int PEN_DOWN = 0x08;
+    public static final int JUMP = 0x10;       // zigzag dx, dy from the previous end to this start
+    public static final int STEP = 0x20;       // zigzag dx, dy from this start to this end
+    public static final int TURN_INT = 0x40;   // new direction as a zigzag varint
+    public static final int TURN_RAW = 0x80;   // new direction as a big-endian IEEE double
+
+    private BinaryEventFormat() {}
+}
@@ -0,0 +1,123 @@
+package com.kidcode.core.event;
+
+import static com.kidcode.core.event.BinaryEventFormat.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Decodes a BinaryEventFormat stream back into ExecutionEvents, one at a time.
+public class BinaryEventReader {
+    private final InputStream in;
+    private final List<String> palette = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+    private int lastX = 0;
+    private int lastY = 0;
+    private double lastDirection = 0;
+    private String color = null;
+
+    public BinaryEventReader(InputStream in) throws IOException {
+        this.in = in;
+        byte[] magic = in.readNBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a KidCode event stream");
+        }
+    }
+
+    // Returns the next event, or null at the end of the stream.
+    public ExecutionEvent read() throws IOException {
+        while (true) {
+            int tag = in.read();
+            if (tag < 0) return null;
+            switch (tag & KIND_MASK) {
+                case CLEAR -> {
+                    return new ExecutionEvent.ClearEvent();
+                }
+                case MOVE -> {
+                    return readMove(tag);
+                }
+                case COLOR -> color = palette.get(readVarint());
+                case DEFINE_COLOR -> palette.add(readString());
+                case DEFINE_TEXT -> texts.add(readString());
+                case SAY -> {
+                    return new ExecutionEvent.SayEvent(texts.get(readVarint()));
+                }
+                case ERROR -> {
+                    return new ExecutionEvent.ErrorEvent(texts.get(readVarint()));
+                }
+                default -> throw new IOException("Unknown record kind " + (tag & KIND_MASK));
+            }
+        }
+    }
+
+    public List<ExecutionEvent> readAll() throws IOException {
+        List<ExecutionEvent> events = new ArrayList<>();
+        for (ExecutionEvent event = read(); event != null; event = read()) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    private ExecutionEvent readMove(int tag) throws IOException {
+        int fromX = lastX;
+        int fromY = lastY;
+        if ((tag & JUMP) != 0) {
+            fromX += readSigned();
+            fromY += readSigned();
+        }
+        int toX = fromX;
+        int toY = fromY;
+        if ((tag & STEP) != 0) {
+            toX += readSigned();
+            toY += readSigned();
+        }
+        if ((tag & TURN_INT) != 0) {
+            lastDirection = readSigned();
+        } else if ((tag & TURN_RAW) != 0) {
+            lastDirection = Double.longBitsToDouble(readLong());
+        }
+        lastX = toX;
+        lastY = toY;
+        return new ExecutionEvent.MoveEvent(fromX, fromY, toX, toY, lastDirection, (tag & PEN_DOWN) != 0, color);
+    }
+
+    private int readSigned() throws IOException {
+        int value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private long readLong() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    private String readString() throws IOException {
+        int length = readVarint();
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) throw new EOFException();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException();
+        return b;
+    }
+}
@@ -0,0 +1,205 @@
+package com.kidcode.core.event;
+
+import static com.kidcode.core.event.BinaryEventFormat.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Encodes events in the BinaryEventFormat as they arrive. A typical line
+// segment costs three to five bytes instead of ~120 bytes of JSON.
+public class BinaryEventWriter implements EventSink {
+    // Messages are deduplicated through the text table only up to this many
+    // distinct entries, so a program saying a million different things does
+    // not grow the writer's map without bound.
+    private static final int MAX_CACHED_TEXTS = 1024;
+
+    private final OutputStream out;
+    private final int flushEvery;
+    private byte[] buffer = new byte[8192];
+    private int size = 0;
+    private int unflushed = 0;
+
+    private final Map<String, Integer> palette = new HashMap<>();
+    private final Map<String, Integer> texts = new HashMap<>();
+    private int textCount = 0;
+
+    // What the decoder knows after the previous record.
+    private int lastX = 0;
+    private int lastY = 0;
+    private double lastDirection = 0;
+    private int lastColor = -1;
+
+    public BinaryEventWriter(OutputStream out) {
+        this(out, 0);
+    }
+
+    // flushEvery > 0 pushes bytes to 'out' after that many events, for
+    // streaming to a client; otherwise only when the buffer fills up.
+    public BinaryEventWriter(OutputStream out, int flushEvery) {
+        this.out = out;
+        this.flushEvery = flushEvery;
+        writeBytes(MAGIC);
+    }
+
+    @Override
+    public void accept(ExecutionEvent event) {
+        if (event instanceof ExecutionEvent.MoveEvent e) {
+            writeMove(e);
+        } else if (event instanceof ExecutionEvent.SayEvent e) {
+            writeText(SAY, e.message());
+        } else if (event instanceof ExecutionEvent.ErrorEvent e) {
+            writeText(ERROR, e.errorMessage());
+        } else if (event instanceof ExecutionEvent.ClearEvent) {
+            writeByte(CLEAR);
+        }
+        if (flushEvery > 0 && ++unflushed >= flushEvery) {
+            flush();
+        }
+    }
+
+    private void writeMove(ExecutionEvent.MoveEvent e) {
+        int color = colorIndex(e.color());
+        if (color != lastColor) {
+            writeByte(COLOR);
+            writeVarint(color);
+            lastColor = color;
+        }
+        int tag = MOVE;
+        if (e.isPenDown()) tag |= PEN_DOWN;
+        boolean jump = e.fromX() != lastX || e.fromY() != lastY;
+        boolean step = e.toX() != e.fromX() || e.toY() != e.fromY();
+        if (jump) tag |= JUMP;
+        if (step) tag |= STEP;
+        double direction = e.newDirection();
+        boolean turned = Double.compare(direction, lastDirection) != 0;
+        boolean integral = direction == Math.rint(direction) && Math.abs(direction) < (1 << 30)
+                && Double.compare(direction, -0.0) != 0;
+        if (turned) tag |= integral ? TURN_INT : TURN_RAW;
+
+        writeByte(tag);
+        if (jump) {
+            writeSigned(e.fromX() - lastX);
+            writeSigned(e.fromY() - lastY);
+        }
+        if (step) {
+            writeSigned(e.toX() - e.fromX());
+            writeSigned(e.toY() - e.fromY());
+        }
+        if (turned) {
+            if (integral) {
+                writeSigned((int) direction);
+            } else {
+                writeLong(Double.doubleToLongBits(direction));
+            }
+        }
+        lastX = e.toX();
+        lastY = e.toY();
+        lastDirection = direction;
+    }
+
+    private int colorIndex(String color) {
+        Integer index = palette.get(color);
+        if (index == null) {
+            index = palette.size();
+            palette.put(color, index);
+            writeByte(DEFINE_COLOR);
+            writeString(color);
+        }
+        return index;
+    }
+
+    private void writeText(int kind, String text) {
+        Integer index = texts.get(text);
+        if (index == null) {
+            index = textCount++;
+            if (texts.size() < MAX_CACHED_TEXTS) {
+                texts.put(text, index);
+            }
+            writeByte(DEFINE_TEXT);
+            writeString(text);
+        }
+        writeByte(kind);
+        writeVarint(index);
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.write(buffer, 0, size);
+            out.flush();
+            size = 0;
+            unflushed = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // --- Encoding primitives ---
+
+    private void writeSigned(int value) {
+        writeVarint((value << 1) ^ (value >> 31));
+    }
+
+    private void writeVarint(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        writeBytes(bytes);
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buffer[size++] = (byte) b;
+    }
+
+    // Makes room for n more bytes, writing the buffer out if it is full.
+    private void ensure(int n) {
+        if (size + n <= buffer.length) return;
+        if (size > 0) {
+            try {
+                out.write(buffer, 0, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            size = 0;
+        }
+        if (n > buffer.length) {
+            buffer = new byte[n];
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.kidcode.core.event;
+
+import com.kidcode.core.event.ExecutionEvent.MoveEvent;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Shrinks an event stream before it is rendered or sent.
+//
+// compact() is lossless: the final drawing, Cody's final position, heading
+// and color, and every message stay exactly the same.
+//   - Moves that draw nothing (turns, pen and color changes, pen-up moves)
+//     only matter for where Cody ends up, so only the last move is kept.
+//   - A segment drawn again later (e.g. a circle traced twice) is dropped;
+//     the last occurrence is kept, since it paints over everything before it.
+//   - Consecutive collinear segments of the same color are merged.
+//
+// simplify() is lossy and opt-in: it runs compact() and then, if the stream
+// is still longer than a target, simplifies connected paths Douglas-Peucker
+// style with a growing tolerance until it fits.
+public final class EventCompactor {
+    // Tolerance bounds for simplify(), in canvas pixels.
+    private static final double MIN_TOLERANCE = 0.5;
+    private static final double MAX_TOLERANCE = 4096;
+
+    private EventCompactor() {}
+
+    public static List<ExecutionEvent> compact(List<ExecutionEvent> events) {
+        return mergeCollinear(dropDuplicateSegments(dropStateOnlyMoves(events)));
+    }
+
+    public static List<ExecutionEvent> simplify(List<ExecutionEvent> events, int maxEvents) {
+        List<ExecutionEvent> compacted = compact(events);
+        for (double tolerance = MIN_TOLERANCE; compacted.size() > maxEvents && tolerance <= MAX_TOLERANCE; tolerance *= 2) {
+            compacted = compact(simplifyPaths(compacted, tolerance));
+        }
+        return compacted;
+    }
+
+    // Collects a run's events and forwards the compacted (or, with
+    // maxEvents > 0, simplified) stream when the run ends. Compaction needs
+    // the whole run, so this trades streaming for a smaller result.
+    public static EventSink compacting(EventSink downstream, int maxEvents) {
+        List<ExecutionEvent> events = new ArrayList<>();
+        return new EventSink() {
+            @Override
+            public void accept(ExecutionEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void close() {
+                try (downstream) {
+                    List<ExecutionEvent> result = (maxEvents > 0) ? simplify(events, maxEvents) : compact(events);
+                    result.forEach(downstream::accept);
+                }
+            }
+        };
+    }
+
+    static boolean draws(MoveEvent move) {
+        return move.isPenDown() && (move.fromX() != move.toX() || move.fromY() != move.toY());
+    }
+
+    private static List<ExecutionEvent> dropStateOnlyMoves(List<ExecutionEvent> events) {
+        int lastMove = -1;
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i) instanceof MoveEvent) lastMove = i;
+        }
+        List<ExecutionEvent> result = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            ExecutionEvent event = events.get(i);
+            if (event instanceof MoveEvent move && !draws(move) && i != lastMove) continue;
+            result.add(event);
+        }
+        return result;
+    }
+
+    // The same pixels, whichever end the segment was drawn from.
+    private record SegmentKey(int x1, int y1, int x2, int y2, String color) {
+        static SegmentKey of(MoveEvent move) {
+            boolean forward = move.fromX() < move.toX() || (move.fromX() == move.toX() && move.fromY() <= move.toY());
+            return forward
+                ? new SegmentKey(move.fromX(), move.fromY(), move.toX(), move.toY(), move.color())
+                : new SegmentKey(move.toX(), move.toY(), move.fromX(), move.fromY(), move.color());
+        }
+    }
+
+    private static List<ExecutionEvent> dropDuplicateSegments(List<ExecutionEvent> events) {
+        Set<SegmentKey> seen = new HashSet<>();
+        boolean[] keep = new boolean[events.size()];
+        for (int i = events.size() - 1; i >= 0; i--) {
+            keep[i] = !(events.get(i) instanceof MoveEvent move && draws(move)) || seen.add(SegmentKey.of(move));
+        }
+        List<ExecutionEvent> result = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            if (keep[i]) result.add(events.get(i));
+        }
+        return result;
+    }
+
+    private static List<ExecutionEvent> mergeCollinear(List<ExecutionEvent> events) {
+        List<ExecutionEvent> result = new ArrayList<>(events.size());
+        MoveEvent pending = null;
+        for (ExecutionEvent event : events) {
+            if (event instanceof MoveEvent move && draws(move)) {
+                if (pending != null && continuesStraight(pending, move)) {
+                    pending = new MoveEvent(pending.fromX(), pending.fromY(), move.toX(), move.toY(),
+                        move.newDirection(), true, move.color());
+                    continue;
+                }
+                if (pending != null) result.add(pending);
+                pending = move;
+            } else {
+                if (pending != null) result.add(pending);
+                pending = null;
+                result.add(event);
+            }
+        }
+        if (pending != null) result.add(pending);
+        return result;
+    }
+
+    // Same color, starts where the previous one ended, and points the same way.
+    private static boolean continuesStraight(MoveEvent a, MoveEvent b) {
+        if (!a.color().equals(b.color()) || a.toX() != b.fromX() || a.toY() != b.fromY()) return false;
+        long ax = a.toX() - a.fromX(), ay = a.toY() - a.fromY();
+        long bx = b.toX() - b.fromX(), by = b.toY() - b.fromY();
+        return ax * by - ay * bx == 0 && ax * bx + ay * by > 0;
+    }
+
+    // --- Lossy path simplification ---
+
+    // Replaces each path (a run of connected same-color segments) with the
+    // Douglas-Peucker simplification of its points.
+    private static List<ExecutionEvent> simplifyPaths(List<ExecutionEvent> events, double tolerance) {
+        List<ExecutionEvent> result = new ArrayList<>(events.size());
+        List<MoveEvent> path = new ArrayList<>();
+        for (ExecutionEvent event : events) {
+            if (event instanceof MoveEvent move && draws(move)) {
+                MoveEvent last = path.isEmpty() ? null : path.get(path.size() - 1);
+                if (last != null && (last.toX() != move.fromX() || last.toY() != move.fromY() || !last.color().equals(move.color()))) {
+                    emitSimplified(path, tolerance, result);
+                }
+                path.add(move);
+            } else {
+                emitSimplified(path, tolerance, result);
+                result.add(event);
+            }
+        }
+        emitSimplified(path, tolerance, result);
+        return result;
+    }
+
+    // Point i of the path is the start of segment i; the last point is the
+    // end of the last segment. Each kept point keeps the heading Cody had there.
+    private static void emitSimplified(List<MoveEvent> path, double tolerance, List<ExecutionEvent> out) {
+        if (path.isEmpty()) return;
+        int n = path.size();
+        int[] xs = new int[n + 1];
+        int[] ys = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            xs[i] = path.get(i).fromX();
+            ys[i] = path.get(i).fromY();
+        }
+        xs[n] = path.get(n - 1).toX();
+        ys[n] = path.get(n - 1).toY();
+
+        boolean[] keep = douglasPeucker(xs, ys, tolerance);
+        int from = 0;
+        for (int i = 1; i <= n; i++) {
+            if (!keep[i]) continue;
+            MoveEvent end = path.get(i - 1);
+            out.add(new MoveEvent(xs[from], ys[from], xs[i], ys[i], end.newDirection(), true, end.color()));
+            from = i;
+        }
+        path.clear();
+    }
+
+    // Iterative, so very long paths cannot overflow the stack.
+    private static boolean[] douglasPeucker(int[] xs, int[] ys, double tolerance) {
+        int last = xs.length - 1;
+        boolean[] keep = new boolean[xs.length];
+        keep[0] = true;
+        keep[last] = true;
+        List<int[]> ranges = new ArrayList<>();
+        ranges.add(new int[] { 0, last });
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.remove(ranges.size() - 1);
+            int start = range[0], end = range[1];
+            double farthest = -1;
+            int index = -1;
+            for (int i = start + 1; i < end; i++) {
+                double d = distance(xs[i], ys[i], xs[start], ys[start], xs[end], ys[end]);
+                if (d > farthest) {
+                    farthest = d;
+                    index = i;
+                }
+            }
+            if (index >= 0 && farthest > tolerance) {
+                keep[index] = true;
+                ranges.add(new int[] { start, index });
+                ranges.add(new int[] { index, end });
+            }
+        }
+        return keep;
+    }
+
+    // Distance from (px, py) to the segment (ax, ay)-(bx, by).
+    private static double distance(int px, int py, int ax, int ay, int bx, int by) {
+        double dx = bx - ax, dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = (lengthSquared == 0) ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(px - (ax + t * dx), py - (ay + t * dy));
+    }
+}
@@ -0,0 +1,44 @@
+package com.kidcode.core.event;
+
+// Receives ExecutionEvents one at a time, in order, while a program runs, so
+// consumers can draw or serialize them without the whole run being held in
+// memory.
+//
+// accept() may buffer; flush() pushes anything buffered downstream. The engine
+// calls close() exactly once when the run ends (finished, stopped or failed),
+// and close() flushes by default.
+@FunctionalInterface
+public interface EventSink extends AutoCloseable {
+    void accept(ExecutionEvent event);
+
+    default void flush() {}
+
+    @Override
+    default void close() {
+        flush();
+    }
+
+    // Sends every event to both sinks, in order; flush and close reach both.
+    static EventSink tee(EventSink first, EventSink second) {
+        return new EventSink() {
+            @Override
+            public void accept(ExecutionEvent event) {
+                first.accept(event);
+                second.accept(event);
+            }
+
+            @Override
+            public void flush() {
+                first.flush();
+                second.flush();
+            }
+
+            @Override
+            public void close() {
+                try (second) {
+                    first.close();
+                }
+            }
+        };
+    }
+}
@@ -1,43 +1,43 @@
 package com.kidcode.core.lexer;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class Lexer {
-    private final String input;
+    private final CharSequence input;
     private int position = 0; // current position in input (points to current char)
     private int readPosition = 0; // current reading position (after current char)
     private char ch; // current char under examination
     private int lineNumber = 1;
+    private int lineStart = 0; // position of the first char on the current line
+    private int tokenStart = 0; // position of the first char of the last token
+    private int tokenLine = 1;
+    private int tokenColumn = 1;
 
-    private static final Map<String, TokenType> keywords = new HashMap<>();
-
-    static {
-        keywords.put("move", TokenType.MOVE);
-        keywords.put("forward", TokenType.FORWARD);
-        keywords.put("turn", TokenType.TURN);
-        keywords.put("left", TokenType.LEFT);
-        keywords.put("right", TokenType.RIGHT);
-        keywords.put("say", TokenType.SAY);
-        keywords.put("repeat", TokenType.REPEAT);
-        keywords.put("end", TokenType.END);
-        keywords.put("set", TokenType.SET);
-        keywords.put("if", TokenType.IF);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("pen", TokenType.PEN);
-        keywords.put("up", TokenType.UP);
-        keywords.put("down", TokenType.DOWN);
-        keywords.put("color", TokenType.COLOR);
-        keywords.put("define", TokenType.DEFINE);
-    }
-
-    public Lexer(String input) {
+    public Lexer(CharSequence input) {
+        this(input, 0, 1, 0);
+    }
+
+    // Starts lexing at 'offset', which must not be inside a token or comment,
+    // on line 'lineNumber' beginning at 'lineStart'. Used to re-lex part of a
+    // document after an edit.
+    public Lexer(CharSequence input, int offset, int lineNumber, int lineStart) {
         this.input = input;
+        this.readPosition = offset;
+        this.lineNumber = lineNumber;
+        this.lineStart = lineStart;
         readChar(); // Initialize the first character
     }
 
+    // Where the token last returned by nextToken() starts and ends in the input.
+    public int tokenStart() {
+        return tokenStart;
+    }
+
+    public int tokenEnd() {
+        return Math.min(position, input.length());
+    }
+
     public List<Token> allTokens() {
         List<Token> tokens = new ArrayList<>();
         Token t;
@@ -48,6 +48,24 @@ public class Lexer {
         return tokens;
     }
 
+    // All remaining tokens, up to and including EOF, in packed form. Nothing
+    // is allocated per token; literals are made later, if they are needed.
+    public TokenBuffer tokenize() {
+        // About one token per 8 chars in typical scripts (comments included).
+        TokenBuffer tokens = new TokenBuffer(input, input.length() / 8 + 16);
+        TokenType type;
+        do {
+            type = scan();
+            tokens.add(type, tokenStart, tokenEnd() - tokenStart, tokenLine, tokenColumn);
+        } while (type != TokenType.EOF);
+        return tokens;
+    }
+
+    public Token nextToken() {
+        TokenType type = scan();
+        return new Token(type, literal(input, type, tokenStart, tokenEnd() - tokenStart), tokenLine, tokenColumn);
+    }
+
     private void readChar() {
         if (readPosition >= input.length()) {
             ch = 0; // Use 0 (NUL character) to signify end of input
@@ -65,7 +83,9 @@ public class Lexer {
         return input.charAt(readPosition);
     }
 
-    public Token nextToken() {
+    // Finds the next token and leaves its position in tokenStart, tokenEnd(),
+    // tokenLine and tokenColumn.
+    private TokenType scan() {
         // This loop is the key. It will run as many times as needed to
         // skip over any combination of whitespace and full-line comments.
         while (true) {
@@ -73,6 +93,7 @@ public class Lexer {
             while (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n') {
                 if (ch == '\n') {
                     lineNumber++;
+                    lineStart = position + 1;
                 }
                 readChar();
             }
@@ -93,85 +114,152 @@ public class Lexer {
             break;
         }
 
-        Token token;
+        TokenType type;
+        tokenStart = Math.min(position, input.length());
+        tokenLine = lineNumber;
+        tokenColumn = position - lineStart + 1;
 
-        // The rest of the switch statement is the same. It is now guaranteed
-        // to only see real tokens.
+        // It is now guaranteed to only see real tokens.
         switch (ch) {
             case '=':
                 if (peekChar() == '=') {
                     readChar();
-                    token = new Token(TokenType.EQ, "==", lineNumber);
+                    type = TokenType.EQ;
                 } else {
-                    token = new Token(TokenType.ASSIGN, String.valueOf(ch), lineNumber);
+                    type = TokenType.ASSIGN;
                 }
                 break;
-            case '+': token = new Token(TokenType.PLUS, String.valueOf(ch), lineNumber); break;
-            case '-': token = new Token(TokenType.MINUS, String.valueOf(ch), lineNumber); break;
-            case '*': token = new Token(TokenType.STAR, String.valueOf(ch), lineNumber); break;
-            case '/': token = new Token(TokenType.SLASH, String.valueOf(ch), lineNumber); break;
-            case '(': token = new Token(TokenType.LPAREN, String.valueOf(ch), lineNumber); break;
-            case ')': token = new Token(TokenType.RPAREN, String.valueOf(ch), lineNumber); break;
-            case '[': token = new Token(TokenType.LBRACKET, String.valueOf(ch), lineNumber); break;
-            case ']': token = new Token(TokenType.RBRACKET, String.valueOf(ch), lineNumber); break;
-            case ',': token = new Token(TokenType.COMMA, String.valueOf(ch), lineNumber); break;
+            case '+': type = TokenType.PLUS; break;
+            case '-': type = TokenType.MINUS; break;
+            case '*': type = TokenType.STAR; break;
+            case '/': type = TokenType.SLASH; break;
+            case '(': type = TokenType.LPAREN; break;
+            case ')': type = TokenType.RPAREN; break;
+            case '[': type = TokenType.LBRACKET; break;
+            case ']': type = TokenType.RBRACKET; break;
+            case ',': type = TokenType.COMMA; break;
             case '!':
                 if (peekChar() == '=') {
                     readChar();
-                    token = new Token(TokenType.NOT_EQ, "!=", lineNumber);
+                    type = TokenType.NOT_EQ;
                 } else {
-                    token = new Token(TokenType.ILLEGAL, String.valueOf(ch), lineNumber);
+                    type = TokenType.ILLEGAL;
                 }
                 break;
             case '"':
-                return new Token(TokenType.STRING, readString(), lineNumber);
+                skipString();
+                return TokenType.STRING;
             case 0:
-                token = new Token(TokenType.EOF, "", lineNumber);
+                type = TokenType.EOF;
                 break;
             default:
                 if (isLetter(ch)) {
-                    String literal = readIdentifier();
-                    TokenType type = keywords.getOrDefault(literal.toLowerCase(), TokenType.IDENTIFIER);
-                    return new Token(type, literal, lineNumber);
+                    while (isLetter(ch)) {
+                        readChar();
+                    }
+                    // `readChar` leaves `ch` on the first non-letter character,
+                    // so we don't need to advance again.
+                    return keyword(input, tokenStart, position - tokenStart);
                 } else if (isDigit(ch)) {
-                    return new Token(TokenType.NUMBER, readNumber(), lineNumber);
+                    while (isDigit(ch)) {
+                        readChar();
+                    }
+                    return TokenType.NUMBER;
                 } else {
-                    token = new Token(TokenType.ILLEGAL, String.valueOf(ch), lineNumber);
+                    type = TokenType.ILLEGAL;
                 }
         }
 
         readChar();
-        return token;
+        return type;
     }
 
-    private String readIdentifier() {
-        int startPosition = position;
-        while (isLetter(ch)) {
+    private void skipString() {
+        do {
             readChar();
+            if (ch == '\n') {
+                lineNumber++;
+                lineStart = position + 1;
+            }
+        } while (ch != '"' && ch != 0);
+        readChar(); // Skip the closing '"'
+    }
+
+    // The literal text of a token: a string without its quotes, "" for EOF,
+    // and shared constants for the operators.
+    static String literal(CharSequence input, TokenType type, int start, int length) {
+        switch (type) {
+            case EOF: return "";
+            case ASSIGN: return "=";
+            case EQ: return "==";
+            case NOT_EQ: return "!=";
+            case PLUS: return "+";
+            case MINUS: return "-";
+            case STAR: return "*";
+            case SLASH: return "/";
+            case LPAREN: return "(";
+            case RPAREN: return ")";
+            case LBRACKET: return "[";
+            case RBRACKET: return "]";
+            case COMMA: return ",";
+            case STRING:
+                // Drop the opening quote, and the closing one if the string
+                // was closed (an unclosed string runs to the end of input).
+                int end = start + length;
+                if (length >= 2 && (input.charAt(end - 1) == '"' || input.charAt(end - 1) == 0)) {
+                    end--;
+                }
+                return input.subSequence(Math.min(start + 1, end), end).toString();
+            default:
+                return input.subSequence(start, start + length).toString();
         }
-        // `readChar` leaves `ch` on the first non-letter character,
-        // so we don't need to advance again.
-        return input.substring(startPosition, position);
     }
 
-    private String readNumber() {
-        int startPosition = position;
-        while (isDigit(ch)) {
-            readChar();
+    // Keywords are matched case-insensitively, by length and then by
+    // comparing chars in place, so classifying a word allocates nothing.
+    static TokenType keyword(CharSequence input, int start, int length) {
+        switch (length) {
+            case 2:
+                if (matches(input, start, "if")) return TokenType.IF;
+                if (matches(input, start, "up")) return TokenType.UP;
+                break;
+            case 3:
+                if (matches(input, start, "say")) return TokenType.SAY;
+                if (matches(input, start, "end")) return TokenType.END;
+                if (matches(input, start, "set")) return TokenType.SET;
+                if (matches(input, start, "pen")) return TokenType.PEN;
+                break;
+            case 4:
+                if (matches(input, start, "move")) return TokenType.MOVE;
+                if (matches(input, start, "turn")) return TokenType.TURN;
+                if (matches(input, start, "left")) return TokenType.LEFT;
+                if (matches(input, start, "else")) return TokenType.ELSE;
+                if (matches(input, start, "down")) return TokenType.DOWN;
+                break;
+            case 5:
+                if (matches(input, start, "right")) return TokenType.RIGHT;
+                if (matches(input, start, "color")) return TokenType.COLOR;
+                break;
+            case 6:
+                if (matches(input, start, "repeat")) return TokenType.REPEAT;
+                if (matches(input, start, "define")) return TokenType.DEFINE;
+                break;
+            case 7:
+                if (matches(input, start, "forward")) return TokenType.FORWARD;
+                break;
+            default:
+                break;
         }
-        // `readChar` leaves `ch` on the first non-digit character.
-        return input.substring(startPosition, position);
+        return TokenType.IDENTIFIER;
     }
 
-    private String readString() {
-        int startPosition = position + 1; // Skip the opening '"'
-        do {
-            readChar();
-        } while (ch != '"' && ch != 0);
-        
-        String literal = input.substring(startPosition, position);
-        readChar(); // Skip the closing '"'
-        return literal;
+    private static boolean matches(CharSequence input, int start, String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = input.charAt(start + i);
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != keyword.charAt(i)) return false;
+        }
+        return true;
     }
 
     private boolean isLetter(char c) {
@@ -181,4 +269,4 @@ public class Lexer {
     private boolean isDigit(char c) {
         return '0' <= c && c <= '9';
     }
-} 
\ No newline at end of file
+}
@@ -1,4 +1,9 @@
 package com.kidcode.core.lexer;
 
-// Using a record for a simple, immutable data carrier
-public record Token(TokenType type, String literal, int lineNumber) {} 
\ No newline at end of file
+// Using a record for a simple, immutable data carrier.
+// 'column' is 1-based, like 'lineNumber'; 0 when unknown.
+public record Token(TokenType type, String literal, int lineNumber, int column) {
+    public Token(TokenType type, String literal, int lineNumber) {
+        this(type, literal, lineNumber, 0);
+    }
+}
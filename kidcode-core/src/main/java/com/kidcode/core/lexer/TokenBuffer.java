@@ -0,0 +1,93 @@
+package com.kidcode.core.lexer;
+
+import java.util.Arrays;
+
+// A source's tokens packed into parallel primitive arrays instead of one
+// Token record (and literal String) each. A token is its type, where it
+// starts in the source, its length, and its 1-based line and column; its
+// literal text is only cut out of the source when someone asks for it.
+public final class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final CharSequence source;
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] columns;
+    private int size = 0;
+    private String[] literals; // made on first literal() call
+
+    public TokenBuffer(CharSequence source, int capacity) {
+        this.source = source;
+        int n = Math.max(capacity, 8);
+        types = new byte[n];
+        starts = new int[n];
+        lengths = new int[n];
+        lines = new int[n];
+        columns = new int[n];
+    }
+
+    public void add(TokenType type, int start, int length, int line, int column) {
+        ensureCapacity(size + 1);
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        columns[size] = column;
+        size++;
+    }
+
+    // Appends tokens [from, to) of 'other', moved by 'startDelta' chars and
+    // 'lineDelta' lines (columns stay), e.g. the tokens after an edit.
+    public void addAll(TokenBuffer other, int from, int to, int startDelta, int lineDelta) {
+        int n = to - from;
+        ensureCapacity(size + n);
+        System.arraycopy(other.types, from, types, size, n);
+        System.arraycopy(other.lengths, from, lengths, size, n);
+        System.arraycopy(other.columns, from, columns, size, n);
+        for (int i = 0; i < n; i++) {
+            starts[size + i] = other.starts[from + i] + startDelta;
+            lines[size + i] = other.lines[from + i] + lineDelta;
+        }
+        size += n;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= types.length) return;
+        int n = Math.max(needed, types.length * 2);
+        types = Arrays.copyOf(types, n);
+        starts = Arrays.copyOf(starts, n);
+        lengths = Arrays.copyOf(lengths, n);
+        lines = Arrays.copyOf(lines, n);
+        columns = Arrays.copyOf(columns, n);
+    }
+
+    public CharSequence source() { return source; }
+    public int size() { return size; }
+
+    public TokenType type(int i) { return TYPES[types[i]]; }
+    public int start(int i) { return starts[i]; }
+    public int length(int i) { return lengths[i]; }
+    public int line(int i) { return lines[i]; }
+    public int column(int i) { return columns[i]; }
+
+    // The same text Token.literal() has: a string without its quotes, "" for EOF.
+    public String literal(int i) {
+        if (literals == null) {
+            literals = new String[types.length];
+        } else if (literals.length < types.length) {
+            literals = Arrays.copyOf(literals, types.length);
+        }
+        String literal = literals[i];
+        if (literal == null) {
+            literal = Lexer.literal(source, type(i), starts[i], lengths[i]);
+            literals[i] = literal;
+        }
+        return literal;
+    }
+
+    public Token token(int i) {
+        return new Token(type(i), literal(i), lines[i], columns[i]);
+    }
+}
@@ -0,0 +1,190 @@
+package com.kidcode.core.lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// UTF-8 source text read in place from a byte buffer (usually a memory-mapped
+// file), seen as the same chars Files.readString would decode, without
+// decoding or copying the file.
+//
+// KidCode is nearly all ASCII, where char index == byte offset. The other
+// chars are found once up front and kept in a small table (where each one
+// starts, in chars and in bytes), so charAt() can translate an index with a
+// binary search; sequential scans, as the lexer does, hit a cached entry.
+// subSequence() decodes only the requested range.
+public final class Utf8Source implements CharSequence {
+    private final ByteBuffer bytes;
+    private final int length; // in chars
+
+    // The non-ASCII chars, in order: their char index, byte offset and
+    // UTF-8 length in bytes (4 means a surrogate pair, two chars).
+    private int[] wideChars = new int[0];
+    private int[] wideBytes = new int[0];
+    private byte[] wideSizes = new byte[0];
+    private int wideCount = 0;
+    private int cursor = 0; // last table entry charAt() used
+
+    public Utf8Source(ByteBuffer bytes) throws MalformedInputException {
+        this.bytes = bytes;
+        this.length = index();
+    }
+
+    // Maps the file read-only; the mapping lives as long as this object.
+    public static Utf8Source map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large (" + size + " bytes)");
+            }
+            return new Utf8Source(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    // Checks the encoding and fills the table; returns the length in chars.
+    private int index() throws MalformedInputException {
+        int limit = bytes.limit();
+        int chars = 0;
+        for (int at = 0; at < limit; ) {
+            int b = bytes.get(at) & 0xFF;
+            if (b < 0x80) {
+                at++;
+                chars++;
+                continue;
+            }
+            int size = (b >= 0xF8) ? 0 : (b >= 0xF0) ? 4 : (b >= 0xE0) ? 3 : (b >= 0xC0) ? 2 : 0;
+            if (size == 0 || at + size > limit || decode(at, size) < 0) {
+                throw new MalformedInputException(Math.max(1, Math.min(size, limit - at)));
+            }
+            if (wideCount == wideChars.length) {
+                int n = Math.max(16, wideCount * 2);
+                wideChars = Arrays.copyOf(wideChars, n);
+                wideBytes = Arrays.copyOf(wideBytes, n);
+                wideSizes = Arrays.copyOf(wideSizes, n);
+            }
+            wideChars[wideCount] = chars;
+            wideBytes[wideCount] = at;
+            wideSizes[wideCount] = (byte) size;
+            wideCount++;
+            at += size;
+            chars += (size == 4) ? 2 : 1;
+        }
+        return chars;
+    }
+
+    // The code point of the 'size'-byte sequence at 'at', or -1 if it is not
+    // well-formed UTF-8 (bad continuation, overlong, surrogate, too large).
+    private int decode(int at, int size) {
+        int b = bytes.get(at) & 0xFF;
+        int codePoint = b & (0x7F >> size);
+        for (int i = 1; i < size; i++) {
+            int c = bytes.get(at + i) & 0xFF;
+            if ((c & 0xC0) != 0x80) return -1;
+            codePoint = (codePoint << 6) | (c & 0x3F);
+        }
+        int min = (size == 2) ? 0x80 : (size == 3) ? 0x800 : 0x10000;
+        if (codePoint < min || codePoint > 0x10FFFF || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) return -1;
+        return codePoint;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        if (wideCount == 0) {
+            return (char) bytes.get(index);
+        }
+        int k = entryAtOrBefore(index);
+        if (k < 0) {
+            return (char) bytes.get(index);
+        }
+        int inside = index - wideChars[k];
+        if (inside < charsOf(k)) {
+            int codePoint = decode(wideBytes[k], wideSizes[k]);
+            return (wideSizes[k] == 4) ? Character.toChars(codePoint)[inside] : (char) codePoint;
+        }
+        return (char) bytes.get(byteOffset(k, index));
+    }
+
+    // The last wide char starting at or before 'index', or -1. Tries the
+    // cached entry and the next one first.
+    private int entryAtOrBefore(int index) {
+        int k = cursor;
+        if (wideChars[k] <= index && (k + 1 == wideCount || wideChars[k + 1] > index)) {
+            return k;
+        }
+        if (k + 1 < wideCount && wideChars[k + 1] <= index && (k + 2 == wideCount || wideChars[k + 2] > index)) {
+            cursor = k + 1;
+            return k + 1;
+        }
+        int low = 0, high = wideCount - 1, found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (wideChars[mid] <= index) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found >= 0) cursor = found;
+        return found;
+    }
+
+    private int charsOf(int k) {
+        return (wideSizes[k] == 4) ? 2 : 1;
+    }
+
+    // Byte offset of char 'index', an ASCII char after wide char 'k'.
+    private int byteOffset(int k, int index) {
+        return wideBytes[k] + wideSizes[k] + (index - wideChars[k] - charsOf(k));
+    }
+
+    // Byte offset where char 'index' starts (or 'length' ends).
+    private int byteOffset(int index) {
+        if (index == length) return bytes.limit();
+        int k = (wideCount == 0) ? -1 : entryAtOrBefore(index);
+        if (k < 0) return index;
+        return (index == wideChars[k]) ? wideBytes[k] : byteOffset(k, index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("range " + start + ".." + end + ", length " + length);
+        }
+        if (splitsPair(start) || splitsPair(end)) {
+            StringBuilder chars = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) chars.append(charAt(i));
+            return chars.toString();
+        }
+        int from = byteOffset(start);
+        int to = byteOffset(end);
+        byte[] range = new byte[to - from];
+        bytes.get(from, range);
+        return new String(range, StandardCharsets.UTF_8);
+    }
+
+    // Whether 'index' is the second half of a surrogate pair.
+    private boolean splitsPair(int index) {
+        if (wideCount == 0 || index == length) return false;
+        int k = entryAtOrBefore(index);
+        return k >= 0 && wideSizes[k] == 4 && index == wideChars[k] + 1;
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
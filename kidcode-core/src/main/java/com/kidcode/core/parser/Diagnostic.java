@@ -0,0 +1,4 @@
+package com.kidcode.core.parser;
+
+// A parse error at the token where it was found; line and column are 1-based.
+public record Diagnostic(String message, int lineNumber, int column) {}
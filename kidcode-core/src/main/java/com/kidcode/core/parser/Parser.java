@@ -5,9 +5,12 @@ import com.kidcode.core.lexer.*;
 import java.util.*;
 
 public class Parser {
-    private final List<Token> tokens;
+    private final TokenBuffer tokens;
     private int position = 0;
     private final List<String> errors = new ArrayList<>();
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    // The token index each diagnostic points at, for ValidationSession.
+    final List<Integer> diagnosticTokens = new ArrayList<>();
 
     // Precedence enum and map remain the same
     private enum Precedence {
@@ -27,19 +30,68 @@ public class Parser {
     }
 
     public Parser(Lexer lexer) {
-        this.tokens = lexer.allTokens();
+        this(lexer.tokenize());
+    }
+
+    public Parser(TokenBuffer tokens) {
+        this(tokens, 0);
+    }
+
+    // Parses an existing token buffer (ending in EOF) from 'position'.
+    Parser(TokenBuffer tokens, int position) {
+        this.tokens = tokens;
+        this.position = position;
     }
 
     public List<String> getErrors() {
         return errors;
     }
 
-    private Token currentToken() {
-        return (position < tokens.size()) ? tokens.get(position) : new Token(TokenType.EOF, "", -1);
+    // The same errors as getErrors(), with the line and column of the token.
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    private void error(String message) {
+        int index = Math.min(position, tokens.size() - 1);
+        errors.add("Error line " + currentLine() + ": " + message);
+        diagnostics.add(new Diagnostic(message, tokens.line(index), tokens.column(index)));
+        diagnosticTokens.add(index);
+    }
+
+    int position() {
+        return position;
+    }
+
+    boolean atEnd() {
+        return currentType() == TokenType.EOF;
+    }
+
+    // Parses one top-level statement (or skips one bad token), as parseProgram does.
+    Statement parseNext() {
+        return parseStatement();
+    }
+
+    // The current and next token, read straight from the buffer; past the
+    // end they look like an EOF on line -1.
+    private TokenType currentType() {
+        return (position < tokens.size()) ? tokens.type(position) : TokenType.EOF;
+    }
+
+    private String currentLiteral() {
+        return (position < tokens.size()) ? tokens.literal(position) : "";
+    }
+
+    private int currentLine() {
+        return (position < tokens.size()) ? tokens.line(position) : -1;
+    }
+
+    private int currentColumn() {
+        return (position < tokens.size()) ? tokens.column(position) : -1;
     }
 
-    private Token peekToken() {
-        return (position + 1 < tokens.size()) ? tokens.get(position + 1) : new Token(TokenType.EOF, "", -1);
+    private TokenType peekType() {
+        return (position + 1 < tokens.size()) ? tokens.type(position + 1) : TokenType.EOF;
     }
 
     private void nextToken() {
@@ -49,7 +101,7 @@ public class Parser {
     // MODIFIED: The main program loop NO LONGER calls nextToken().
     public List<Statement> parseProgram() {
         List<Statement> statements = new ArrayList<>();
-        while (currentToken().type() != TokenType.EOF) {
+        while (currentType() != TokenType.EOF) {
             Statement stmt = parseStatement();
             if (stmt != null) {
                 statements.add(stmt);
@@ -68,7 +120,7 @@ public class Parser {
     }
 
     private Statement parseStatement() {
-        switch (currentToken().type()) {
+        switch (currentType()) {
             case MOVE: return parseMoveStatement();
             case TURN: return parseTurnStatement();
             case SAY: return parseSayStatement();
@@ -82,81 +134,93 @@ public class Parser {
             default:
                 // If we don't recognize the token as the start of a statement,
                 // we must advance past it to avoid an infinite loop.
-                errors.add("Error line " + currentToken().lineNumber() + ": Invalid start of a statement: '" + currentToken().literal() + "'");
+                error("Invalid start of a statement: '" + currentLiteral() + "'");
                 advanceToNextStatement();
                 return null;
         }
     }
 
     private MoveStatement parseMoveStatement() {
-        // ... (parsing logic is the same)
+        int line = currentLine();
+        int column = currentColumn();
         nextToken(); // Consume 'forward'
         nextToken(); // Move to the expression
         Expression steps = parseExpression(Precedence.LOWEST);
         advanceToNextStatement(); // MODIFIED: Advance token stream
-        return new MoveStatement(steps);
+        return new MoveStatement(steps, line, column);
     }
 
     private TurnStatement parseTurnStatement() {
-        // ... (parsing logic is the same)
+        int line = currentLine();
+        int column = currentColumn();
         nextToken(); // Consume 'left' or 'right'
-        String direction = currentToken().literal();
+        String direction = currentLiteral();
         nextToken(); // Move to the expression
         Expression degrees = parseExpression(Precedence.LOWEST);
         advanceToNextStatement(); // MODIFIED: Advance token stream
-        return new TurnStatement(direction, degrees);
+        return new TurnStatement(direction, degrees, line, column);
     }
 
     private SayStatement parseSayStatement() {
+        int line = currentLine();
+        int column = currentColumn();
         nextToken(); // Consume 'say', move to string
         Expression message = parseExpression(Precedence.LOWEST);
         advanceToNextStatement(); // MODIFIED: Advance token stream
-        return new SayStatement(message);
+        return new SayStatement(message, line, column);
     }
 
     private SetStatement parseSetStatement() {
+        int line = currentLine();
+        int column = currentColumn();
         nextToken(); // Consume 'set', move to identifier
-        Identifier name = new Identifier(currentToken().literal());
+        Identifier name = new Identifier(currentLiteral());
         nextToken(); // Consume identifier, move to '='
-        if (currentToken().type() != TokenType.ASSIGN) {
-            errors.add("Error line " + currentToken().lineNumber() + ": Expected '=' after variable name");
+        if (currentType() != TokenType.ASSIGN) {
+            error("Expected '=' after variable name");
             return null;
         }
         nextToken(); // Consume '=', move to expression
         Expression value = parseExpression(Precedence.LOWEST);
         advanceToNextStatement(); // MODIFIED: Advance token stream
-        return new SetStatement(name, value);
+        return new SetStatement(name, value, line, column);
     }
 
     private PenStatement parsePenStatement() {
+        int line = currentLine();
+        int column = currentColumn();
         nextToken(); // Consume 'pen'
-        if (currentToken().type() != TokenType.UP && currentToken().type() != TokenType.DOWN) {
-            errors.add("Error line " + currentToken().lineNumber() + ": Expected 'up' or 'down' after 'pen'");
+        if (currentType() != TokenType.UP && currentType() != TokenType.DOWN) {
+            error("Expected 'up' or 'down' after 'pen'");
             return null;
         }
-        String state = currentToken().literal();
+        String state = currentLiteral();
         advanceToNextStatement(); // MODIFIED: Advance token stream
-        return new PenStatement(state);
+        return new PenStatement(state, line, column);
     }
 
     private SetColorStatement parseSetColorStatement() {
+        int line = currentLine();
+        int column = currentColumn();
         nextToken(); // Consume 'color'
         Expression colorName = parseExpression(Precedence.LOWEST);
         advanceToNextStatement(); // MODIFIED: Advance token stream
-        return new SetColorStatement(colorName);
+        return new SetColorStatement(colorName, line, column);
     }
     
     // Function and control flow statements manage their own token advancement because they are complex.
 
     private FunctionCallStatement parseFunctionCallStatement() {
-        Identifier function = new Identifier(currentToken().literal());
+        int line = currentLine();
+        int column = currentColumn();
+        Identifier function = new Identifier(currentLiteral());
         List<Expression> arguments = new ArrayList<>();
-        while (peekToken().type() != TokenType.EOF && peekToken().type() != TokenType.END && peekToken().type() != TokenType.ELSE && isArgument(peekToken().type())) {
+        while (peekType() != TokenType.EOF && peekType() != TokenType.END && peekType() != TokenType.ELSE && isArgument(peekType())) {
             nextToken();
             arguments.add(parseExpression(Precedence.LOWEST));
         }
         advanceToNextStatement(); // MODIFIED: Advance token stream
-        return new FunctionCallStatement(function, arguments);
+        return new FunctionCallStatement(function, arguments, line, column);
     }
 
     // NEW: Helper to check if a token can be the start of an argument.
@@ -166,55 +230,61 @@ public class Parser {
     }
 
     private FunctionDefinitionStatement parseFunctionDefinitionStatement() {
+        int line = currentLine();
+        int column = currentColumn();
         nextToken(); // Consume 'define'
-        Identifier name = new Identifier(currentToken().literal());
+        Identifier name = new Identifier(currentLiteral());
         
         List<Identifier> parameters = new ArrayList<>();
-        while (peekToken().type() == TokenType.IDENTIFIER) {
+        while (peekType() == TokenType.IDENTIFIER) {
             nextToken();
-            parameters.add(new Identifier(currentToken().literal()));
+            parameters.add(new Identifier(currentLiteral()));
         }
         
         List<Statement> body = parseBlock();
-        if (currentToken().type() != TokenType.END) { /* error */ return null; }
+        if (currentType() != TokenType.END) { /* error */ return null; }
         
-        if (peekToken().type() == TokenType.DEFINE) {
+        if (peekType() == TokenType.DEFINE) {
             nextToken(); // consume 'define' from 'end define'
         }
         advanceToNextStatement(); // MODIFIED: Advance token stream
-        return new FunctionDefinitionStatement(name, parameters, body);
+        return new FunctionDefinitionStatement(name, parameters, body, line, column);
     }
 
     private RepeatStatement parseRepeatStatement() {
+        int line = currentLine();
+        int column = currentColumn();
         nextToken(); // Consume 'repeat'
         Expression times = parseExpression(Precedence.LOWEST);
         List<Statement> body = parseBlock();
-        if (currentToken().type() != TokenType.END) { /* error */ return null; }
+        if (currentType() != TokenType.END) { /* error */ return null; }
         
-        if (peekToken().type() == TokenType.REPEAT) {
+        if (peekType() == TokenType.REPEAT) {
             nextToken(); // consume 'repeat' from 'end repeat'
         }
         advanceToNextStatement(); // MODIFIED: Advance token stream
-        return new RepeatStatement(times, body);
+        return new RepeatStatement(times, body, line, column);
     }
 
     private IfStatement parseIfStatement() {
+        int line = currentLine();
+        int column = currentColumn();
         nextToken(); // Consume 'if'
         Expression condition = parseExpression(Precedence.LOWEST);
         List<Statement> consequence = parseBlock();
         List<Statement> alternative = null;
 
-        if (currentToken().type() == TokenType.ELSE) {
+        if (currentType() == TokenType.ELSE) {
             alternative = parseBlock();
         }
 
-        if (currentToken().type() != TokenType.END) { /* error */ return null; }
+        if (currentType() != TokenType.END) { /* error */ return null; }
 
-        if (peekToken().type() == TokenType.IF) {
+        if (peekType() == TokenType.IF) {
             nextToken(); // consume 'if' from 'end if'
         }
         advanceToNextStatement(); // MODIFIED: Advance token stream
-        return new IfStatement(condition, consequence, alternative);
+        return new IfStatement(condition, consequence, alternative, line, column);
     }
 
     // MODIFIED: The block parsing loop NO LONGER calls nextToken().
@@ -222,7 +292,7 @@ public class Parser {
         List<Statement> block = new ArrayList<>();
         nextToken(); // Consume the keyword that started the block (or 'else')
         
-        while (currentToken().type() != TokenType.END && currentToken().type() != TokenType.ELSE && currentToken().type() != TokenType.EOF) {
+        while (currentType() != TokenType.END && currentType() != TokenType.ELSE && currentType() != TokenType.EOF) {
             Statement stmt = parseStatement();
             if (stmt != null) {
                 block.add(stmt);
@@ -233,24 +303,31 @@ public class Parser {
 
     // Expression parsing logic (this part was correct in the previous fix)
     private Precedence getPeekPrecedence() {
-        return precedences.getOrDefault(peekToken().type(), Precedence.LOWEST);
+        return precedences.getOrDefault(peekType(), Precedence.LOWEST);
     }
 
     private Expression parseExpression(Precedence precedence) {
         Expression left;
-        switch (currentToken().type()) {
-            case IDENTIFIER: left = new Identifier(currentToken().literal()); break;
-            case NUMBER: left = new IntegerLiteral(Integer.parseInt(currentToken().literal())); break;
-            case STRING: left = new StringLiteral(currentToken().literal()); break;
+        switch (currentType()) {
+            case IDENTIFIER: left = new Identifier(currentLiteral()); break;
+            case NUMBER:
+                try {
+                    left = new IntegerLiteral(Integer.parseInt(currentLiteral()));
+                } catch (NumberFormatException e) {
+                    error("Number " + currentLiteral() + " is too big");
+                    return null;
+                }
+                break;
+            case STRING: left = new StringLiteral(currentLiteral()); break;
             case LPAREN: left = parseGroupedExpression(); break;
             case LBRACKET: left = parseListLiteral(); break;
             default:
-                errors.add("Error line " + currentToken().lineNumber() + ": Unexpected token " + currentToken().literal() + " in expression");
+                error("Unexpected token " + currentLiteral() + " in expression");
                 return null;
         }
 
         while (precedence.ordinal() < getPeekPrecedence().ordinal()) {
-            switch (peekToken().type()) {
+            switch (peekType()) {
                 case PLUS, MINUS, STAR, SLASH, EQ, NOT_EQ, LT, GT:
                     nextToken();
                     left = parseInfixExpression(left);
@@ -267,8 +344,8 @@ public class Parser {
     }
     
     private Expression parseInfixExpression(Expression left) {
-        String operator = currentToken().literal();
-        Precedence p = precedences.get(currentToken().type());
+        String operator = currentLiteral();
+        Precedence p = precedences.get(currentType());
         nextToken();
         Expression right = parseExpression(p);
         return new InfixExpression(left, operator, right);
@@ -278,25 +355,25 @@ public class Parser {
         // currentToken is '['
         nextToken(); // move to index
         Expression index = parseExpression(Precedence.LOWEST);
-        if (peekToken().type() != TokenType.RBRACKET) { /* error */ return null; }
+        if (peekType() != TokenType.RBRACKET) { /* error */ return null; }
         nextToken(); // consume ']'
         return new IndexExpression(left, index);
     }
     
     private Expression parseListLiteral() {
         List<Expression> elements = new ArrayList<>();
-        if (peekToken().type() == TokenType.RBRACKET) {
+        if (peekType() == TokenType.RBRACKET) {
             nextToken();
             return new ListLiteral(elements);
         }
         nextToken();
         elements.add(parseExpression(Precedence.LOWEST));
-        while (peekToken().type() == TokenType.COMMA) {
+        while (peekType() == TokenType.COMMA) {
             nextToken();
             nextToken();
             elements.add(parseExpression(Precedence.LOWEST));
         }
-        if (peekToken().type() != TokenType.RBRACKET) { /* error */ return null; }
+        if (peekType() != TokenType.RBRACKET) { /* error */ return null; }
         nextToken();
         return new ListLiteral(elements);
     }
@@ -304,7 +381,7 @@ public class Parser {
     private Expression parseGroupedExpression() {
         nextToken();
         Expression exp = parseExpression(Precedence.LOWEST);
-        if (peekToken().type() != TokenType.RPAREN) { /* error */ return null; }
+        if (peekType() != TokenType.RPAREN) { /* error */ return null; }
         nextToken();
         return exp;
     }
@@ -0,0 +1,215 @@
+package com.kidcode.core.parser;
+
+import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.lexer.Token;
+import com.kidcode.core.lexer.TokenBuffer;
+import com.kidcode.core.lexer.TokenType;
+import java.util.ArrayList;
+import java.util.List;
+
+// Keeps a document's tokens and top-level statements between edits, so the
+// editor can be validated as the user types without re-parsing everything.
+//
+// An edit re-lexes from the last token that starts before it, until the new
+// tokens line up with the old ones again on a later line; the tokens after
+// that are kept (only their offsets and line numbers move). Then the
+// top-level statements that could have read a changed token are re-parsed,
+// until a statement boundary lines up with an old one past the change. Each
+// statement remembers its errors relative to its first token, so the ones
+// after the change are reused as they are.
+//
+// The diagnostics are always the same as a full parse of text() gives.
+public class ValidationSession {
+    private final StringBuilder text;
+
+    // Tokens, ending with EOF.
+    private TokenBuffer tokens;
+
+    // Top-level statements: the token each one starts at, and its errors.
+    private int[] statementStarts = new int[0];
+    private int statementCount = 0;
+    private final List<List<Problem>> problems = new ArrayList<>();
+
+    // Work done by the last update, for tests.
+    int lastRelexedTokens;
+    int lastReparsedStatements;
+
+    // An error 'token' tokens after the start of its statement.
+    private record Problem(int token, String message) {}
+
+    public ValidationSession(String source) {
+        this.text = new StringBuilder(source);
+        this.tokens = new TokenBuffer(text, 0);
+        relex(0, 0, 1, 0, Integer.MAX_VALUE, 0, 0);
+        reparse(0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    public String text() {
+        return text.toString();
+    }
+
+    // Replaces 'length' chars at 'offset' (0-based, as in a Monaco content
+    // change's rangeOffset and rangeLength) with 'replacement'.
+    public void edit(int offset, int length, String replacement) {
+        if (offset < 0 || length < 0 || offset + length > text.length()) {
+            throw new IllegalArgumentException("Edit " + offset + "+" + length + " is outside the document (" + text.length() + " chars)");
+        }
+        int delta = replacement.length() - length;
+        int lineDelta = newlines(replacement, 0, replacement.length()) - newlines(text, offset, offset + length);
+        text.replace(offset, offset + length, replacement);
+
+        // Restart at the last token that starts before the edit (a token
+        // start is never inside a string or comment), or at the beginning.
+        int restart = lastTokenBefore(offset);
+        int editEnd = offset + replacement.length();
+        int oldResync = (restart < 0)
+            ? relex(0, 0, 1, 0, editEnd, delta, lineDelta)
+            : relex(restart, tokens.start(restart), tokens.line(restart),
+                    tokens.start(restart) - tokens.column(restart) + 1, editEnd, delta, lineDelta);
+        int first = Math.max(restart, 0);
+        reparse(first, oldResync, first + lastRelexedTokens);
+    }
+
+    public List<Diagnostic> diagnostics() {
+        List<Diagnostic> result = new ArrayList<>();
+        for (int s = 0; s < statementCount; s++) {
+            for (Problem problem : problems.get(s)) {
+                int token = Math.min(statementStarts[s] + problem.token(), tokens.size() - 1);
+                result.add(new Diagnostic(problem.message(), tokens.line(token), tokens.column(token)));
+            }
+        }
+        return result;
+    }
+
+    // --- Lexing ---
+
+    private int lastTokenBefore(int offset) {
+        int low = 0, high = tokens.size() - 1, found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (tokens.start(mid) < offset) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // Lexes from 'offset' and replaces the tokens from index 'first' on,
+    // until a new token is an old one moved by 'delta' chars and 'lineDelta'
+    // lines, and starts on a line after 'editEnd'. From there the old tokens
+    // (and their columns) are still right. Returns the old index of the
+    // first kept token.
+    private int relex(int first, int offset, int lineNumber, int lineStart,
+                      int editEnd, int delta, int lineDelta) {
+        Lexer lexer = new Lexer(text, offset, lineNumber, lineStart);
+        TokenBuffer next = new TokenBuffer(text, tokens.size() + 16);
+        next.addAll(tokens, 0, first, 0, 0);
+        int old = first;
+        int resync = tokens.size(); // old index where the kept tokens begin
+        while (true) {
+            Token token = lexer.nextToken();
+            int start = lexer.tokenStart();
+            if (token.type() != TokenType.EOF && start - token.column() + 1 > editEnd) {
+                while (old < tokens.size() && tokens.start(old) + delta < start) old++;
+                if (old < tokens.size() && tokens.start(old) + delta == start && tokens.type(old) != TokenType.EOF) {
+                    resync = old;
+                    break;
+                }
+            }
+            next.add(token.type(), start, lexer.tokenEnd() - start, token.lineNumber(), token.column());
+            if (token.type() == TokenType.EOF) break;
+        }
+        lastRelexedTokens = next.size() - first;
+        next.addAll(tokens, resync, tokens.size(), delta, lineDelta);
+        tokens = next;
+        return resync;
+    }
+
+    // --- Parsing ---
+
+    // The old tokens before 'changedFrom' are unchanged, and old token
+    // 'oldResync' is now token 'newResync'; everything in between is new.
+    private void reparse(int changedFrom, int oldResync, int newResync) {
+        // A statement reads one token past its end (the parser peeks), so
+        // re-parse from the one that contains the token before the change.
+        int first = statementAt(Math.max(0, changedFrom - 1));
+        int position = (statementCount > 0) ? statementStarts[first] : 0;
+
+        Parser parser = new Parser(tokens, position);
+        List<Integer> freshStarts = new ArrayList<>();
+        List<List<Problem>> freshProblems = new ArrayList<>();
+        int resync = statementCount; // old statement where the kept ones begin
+        while (!parser.atEnd()) {
+            int start = parser.position();
+            if (start >= newResync) {
+                int old = findStatement(start - newResync + oldResync, first);
+                if (old >= 0) {
+                    resync = old;
+                    break;
+                }
+            }
+            int before = parser.diagnosticTokens.size();
+            parser.parseNext();
+            List<Problem> found = new ArrayList<>();
+            for (int i = before; i < parser.diagnosticTokens.size(); i++) {
+                found.add(new Problem(parser.diagnosticTokens.get(i) - start, parser.getDiagnostics().get(i).message()));
+            }
+            freshStarts.add(start);
+            freshProblems.add(found);
+        }
+        lastReparsedStatements = freshStarts.size();
+
+        int keep = statementCount - resync;
+        int shift = newResync - oldResync;
+        int[] newStarts = new int[first + freshStarts.size() + keep];
+        System.arraycopy(statementStarts, 0, newStarts, 0, first);
+        for (int i = 0; i < freshStarts.size(); i++) {
+            newStarts[first + i] = freshStarts.get(i);
+        }
+        for (int i = 0; i < keep; i++) {
+            newStarts[first + freshStarts.size() + i] = statementStarts[resync + i] + shift;
+        }
+        problems.subList(first, resync).clear();
+        problems.addAll(first, freshProblems);
+        statementStarts = newStarts;
+        statementCount = newStarts.length;
+    }
+
+    // The statement containing token 'token' (the last one starting at or before it).
+    private int statementAt(int token) {
+        int low = 0, high = statementCount - 1, found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (statementStarts[mid] <= token) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // The old statement starting exactly at 'token', or -1.
+    private int findStatement(int token, int from) {
+        int low = from, high = statementCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (statementStarts[mid] == token) return mid;
+            if (statementStarts[mid] < token) low = mid + 1;
+            else high = mid - 1;
+        }
+        return -1;
+    }
+
+    private static int newlines(CharSequence s, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == '\n') n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,102 @@
+package com.kidcode.core.render;
+
+import com.kidcode.core.event.ExecutionEvent;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+// The segments a run draws, in paint order, packed into parallel int arrays
+// (coordinates plus a palette index) instead of one MoveEvent per segment.
+public final class SegmentList {
+    private int[] coords = new int[64]; // x1, y1, x2, y2 per segment
+    private int[] colors = new int[16];
+    private int size = 0;
+    private final List<String> palette = new ArrayList<>();
+    private final Map<String, Integer> paletteIndex = new HashMap<>();
+
+    public static SegmentList of(List<ExecutionEvent> events) {
+        SegmentList segments = new SegmentList();
+        events.forEach(segments::add);
+        return segments;
+    }
+
+    // Records the event if it draws a line; a ClearEvent starts over.
+    public void add(ExecutionEvent event) {
+        if (event instanceof ExecutionEvent.ClearEvent) {
+            size = 0;
+        } else if (event instanceof ExecutionEvent.MoveEvent m && m.isPenDown()
+                && (m.fromX() != m.toX() || m.fromY() != m.toY())) {
+            add(m.fromX(), m.fromY(), m.toX(), m.toY(), m.color());
+        }
+    }
+
+    public void add(int x1, int y1, int x2, int y2, String color) {
+        if (size == colors.length) {
+            colors = Arrays.copyOf(colors, size * 2);
+            coords = Arrays.copyOf(coords, size * 8);
+        }
+        int at = size * 4;
+        coords[at] = x1;
+        coords[at + 1] = y1;
+        coords[at + 2] = x2;
+        coords[at + 3] = y2;
+        colors[size++] = paletteIndex.computeIfAbsent(color, c -> {
+            palette.add(c);
+            return palette.size() - 1;
+        });
+    }
+
+    public int size() { return size; }
+
+    public int x1(int i) { return coords[i * 4]; }
+    public int y1(int i) { return coords[i * 4 + 1]; }
+    public int x2(int i) { return coords[i * 4 + 2]; }
+    public int y2(int i) { return coords[i * 4 + 3]; }
+    public int colorIndex(int i) { return colors[i]; }
+
+    public List<String> palette() { return palette; }
+
+    // A hash of the picture as a set of colored lines, for telling whether
+    // two runs drew the same thing without comparing their events: each
+    // segment counts once whichever end it was drawn from, and neither the
+    // order of the segments nor drawing one twice changes the hash. (Where
+    // differently colored segments overlap, which one is on top is not
+    // part of it.) 32 hex digits of SHA-256.
+    public String canonicalHash() {
+        int[][] rows = new int[size][];
+        for (int i = 0; i < size; i++) {
+            int x1 = x1(i), y1 = y1(i), x2 = x2(i), y2 = y2(i);
+            boolean swap = (x1 > x2) || (x1 == x2 && y1 > y2);
+            rows[i] = swap ? new int[] {colorIndex(i), x2, y2, x1, y1} : new int[] {colorIndex(i), x1, y1, x2, y2};
+        }
+        // Colors are ordered by name, not by when they were first used.
+        Comparator<int[]> byColor = Comparator.comparing(row -> palette.get(row[0]));
+        Arrays.sort(rows, byColor.thenComparing(Arrays::compare));
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer coordinates = ByteBuffer.allocate(16);
+        int[] previous = null;
+        for (int[] row : rows) {
+            if (previous != null && Arrays.equals(previous, row)) continue;
+            digest.update(palette.get(row[0]).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            coordinates.clear();
+            coordinates.putInt(row[1]).putInt(row[2]).putInt(row[3]).putInt(row[4]);
+            digest.update(coordinates.array());
+            previous = row;
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+}
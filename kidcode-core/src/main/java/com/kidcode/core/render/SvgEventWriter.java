@@ -0,0 +1,90 @@
+package com.kidcode.core.render;
+
+import com.kidcode.core.event.EventSink;
+import com.kidcode.core.event.ExecutionEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+// Writes the drawing as SVG while the program runs. Connected segments of the
+// same color are joined into one <polyline>, so only the path being drawn is
+// held in memory (and a very long path is split every MAX_PATH_CHARS).
+public class SvgEventWriter implements EventSink {
+    private static final int MAX_PATH_CHARS = 1 << 16;
+
+    private final Writer out;
+    private final StringBuilder points = new StringBuilder();
+    private String pathColor = null;
+    private int pathEndX;
+    private int pathEndY;
+
+    public SvgEventWriter(Writer out, int scale) {
+        this.out = out;
+        int size = TileRasterizer.CANVAS_SIZE;
+        write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + size * scale + "\" height=\"" + size * scale
+            + "\" viewBox=\"0 0 " + size + " " + size + "\">\n"
+            + "<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n"
+            + "<g fill=\"none\" stroke-width=\"2\" stroke-linejoin=\"round\">\n");
+    }
+
+    @Override
+    public void accept(ExecutionEvent event) {
+        if (!(event instanceof ExecutionEvent.MoveEvent m) || !m.isPenDown()
+                || (m.fromX() == m.toX() && m.fromY() == m.toY())) {
+            return;
+        }
+        boolean continues = pathColor != null && pathColor.equals(m.color())
+            && pathEndX == m.fromX() && pathEndY == m.fromY();
+        if (!continues) {
+            endPath();
+            pathColor = m.color();
+            points.append(m.fromX()).append(',').append(m.fromY());
+        }
+        points.append(' ').append(m.toX()).append(',').append(m.toY());
+        pathEndX = m.toX();
+        pathEndY = m.toY();
+        if (points.length() > MAX_PATH_CHARS) {
+            endPath();
+        }
+    }
+
+    private void endPath() {
+        if (pathColor == null) return;
+        write("<polyline stroke=\"" + escape(pathColor) + "\" points=\"" + points + "\"/>\n");
+        points.setLength(0);
+        pathColor = null;
+    }
+
+    @Override
+    public void flush() {
+        endPath();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        endPath();
+        write("</g>\n</svg>\n");
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String s) {
+        try {
+            out.write(s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;");
+    }
+}
@@ -0,0 +1,142 @@
+package com.kidcode.core.render;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.imageio.ImageIO;
+
+// Draws a run's segments into a BufferedImage without a display (headless AWT).
+//
+// The canvas (CANVAS_SIZE x CANVAS_SIZE, times 'scale') is cut into square
+// tiles. Segments are binned once by the tiles their bounding box touches,
+// then every tile is drawn into its own small image on a ForkJoin pool and
+// copied into place. Each tile draws its segments in the original order, so
+// overlapping colors come out as in the browser.
+//
+// Java2D's stroker leaves gaps in wide lines that run far outside the clip,
+// which every tile's clip does. So segments are filled as stroked outlines
+// instead of drawn, and tiles get a margin that is cut off again; the result
+// is pixel-identical to drawing everything in one pass.
+public class TileRasterizer {
+    public static final int CANVAS_SIZE = 500;
+    public static final int TILE_SIZE = 128;
+    private static final float LINE_WIDTH = 2f;
+    private static final int MARGIN = 8;
+
+    private final ForkJoinPool pool;
+
+    public TileRasterizer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public TileRasterizer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public BufferedImage render(SegmentList segments, int scale) {
+        int size = CANVAS_SIZE * scale;
+        int tilesPerRow = (size + TILE_SIZE - 1) / TILE_SIZE;
+        List<List<Integer>> bins = binSegments(segments, scale, tilesPerRow);
+        Color[] palette = segments.palette().stream().map(TileRasterizer::toAwtColor).toArray(Color[]::new);
+
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        List<RecursiveAction> tiles = new ArrayList<>();
+        for (int row = 0; row < tilesPerRow; row++) {
+            for (int col = 0; col < tilesPerRow; col++) {
+                int x0 = col * TILE_SIZE;
+                int y0 = row * TILE_SIZE;
+                List<Integer> bin = bins.get(row * tilesPerRow + col);
+                tiles.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        drawTile(image, x0, y0, scale, segments, bin, palette);
+                    }
+                });
+            }
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tiles);
+            }
+        });
+        return image;
+    }
+
+    public void writePng(SegmentList segments, int scale, OutputStream out) throws IOException {
+        ImageIO.write(render(segments, scale), "png", out);
+    }
+
+    // Indices of the segments each tile has to draw, padded by the line width.
+    private static List<List<Integer>> binSegments(SegmentList segments, int scale, int tilesPerRow) {
+        List<List<Integer>> bins = new ArrayList<>(tilesPerRow * tilesPerRow);
+        for (int i = 0; i < tilesPerRow * tilesPerRow; i++) {
+            bins.add(new ArrayList<>());
+        }
+        int pad = (int) Math.ceil(LINE_WIDTH * scale) + MARGIN;
+        int last = tilesPerRow - 1;
+        for (int i = 0; i < segments.size(); i++) {
+            int minX = Math.min(segments.x1(i), segments.x2(i)) * scale - pad;
+            int maxX = Math.max(segments.x1(i), segments.x2(i)) * scale + pad;
+            int minY = Math.min(segments.y1(i), segments.y2(i)) * scale - pad;
+            int maxY = Math.max(segments.y1(i), segments.y2(i)) * scale + pad;
+            if (maxX < 0 || maxY < 0 || minX >= tilesPerRow * TILE_SIZE || minY >= tilesPerRow * TILE_SIZE) continue;
+            int fromCol = Math.max(0, minX / TILE_SIZE), toCol = Math.min(last, maxX / TILE_SIZE);
+            int fromRow = Math.max(0, minY / TILE_SIZE), toRow = Math.min(last, maxY / TILE_SIZE);
+            for (int row = fromRow; row <= toRow; row++) {
+                for (int col = fromCol; col <= toCol; col++) {
+                    bins.get(row * tilesPerRow + col).add(i);
+                }
+            }
+        }
+        return bins;
+    }
+
+    private static void drawTile(BufferedImage image, int x0, int y0, int scale,
+                                 SegmentList segments, List<Integer> bin, Color[] palette) {
+        int width = Math.min(TILE_SIZE, image.getWidth() - x0);
+        int height = Math.min(TILE_SIZE, image.getHeight() - y0);
+        BufferedImage tile = new BufferedImage(width + 2 * MARGIN, height + 2 * MARGIN, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, tile.getWidth(), tile.getHeight());
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.translate(MARGIN - x0, MARGIN - y0);
+            g.scale(scale, scale);
+            BasicStroke stroke = new BasicStroke(LINE_WIDTH);
+            for (int i : bin) {
+                g.setColor(palette[segments.colorIndex(i)]);
+                g.fill(stroke.createStrokedShape(new Line2D.Float(segments.x1(i), segments.y1(i), segments.x2(i), segments.y2(i))));
+            }
+        } finally {
+            g.dispose();
+        }
+        // Tiles never overlap, so each task writes its own part of the raster.
+        image.getRaster().setDataElements(x0, y0, tile.getRaster().createChild(MARGIN, MARGIN, width, height, 0, 0, null));
+    }
+
+    // The CSS colors the web canvas uses for KidCode's color names.
+    static Color toAwtColor(String colorName) {
+        if (colorName == null) return Color.BLACK;
+        return switch (colorName.toLowerCase()) {
+            case "red" -> new Color(0xFF0000);
+            case "green" -> new Color(0x008000);
+            case "blue" -> new Color(0x0000FF);
+            case "yellow" -> new Color(0xFFFF00);
+            case "orange" -> new Color(0xFFA500);
+            case "purple" -> new Color(0x800080);
+            case "white" -> new Color(0xFFFFFF);
+            default -> Color.BLACK;
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package com.kidcode.core;
+
+import com.kidcode.core.evaluator.ResourceLimits;
+
+// KidCodeEngine's test-only variants, for tests outside this package.
+public final class Engines {
+
+    private Engines() {}
+
+    // Runs programs exactly as the engine does, but without the Optimizer.
+    public static KidCodeEngine unoptimized(ExecutionMode mode, ResourceLimits limits) {
+        return new KidCodeEngine(mode, limits).unoptimized();
+    }
+
+    // Same, but without the Evaluator's MotionMemo.
+    public static KidCodeEngine unmemoized(ExecutionMode mode, ResourceLimits limits) {
+        return new KidCodeEngine(mode, limits).unmemoized();
+    }
+}
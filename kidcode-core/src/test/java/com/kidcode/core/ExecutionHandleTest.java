@@ -0,0 +1,95 @@
+package com.kidcode.core;
+
+import com.kidcode.core.evaluator.ResourceLimits;
+import com.kidcode.core.event.EventSink;
+import com.kidcode.core.event.ExecutionEvent;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class ExecutionHandleTest {
+
+    // Runs until it is stopped.
+    private static final String ENDLESS = """
+            set i = 0
+            repeat 2000000000
+                set i = i + 1
+            end repeat
+            """;
+
+    private static final ResourceLimits UNLIMITED = ResourceLimits.DEFAULT.withInstructions(Long.MAX_VALUE);
+
+    @Test
+    public void cancelStopsARunningProgram() throws Exception {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            AtomicBoolean closed = new AtomicBoolean();
+            ExecutionHandle handle = new KidCodeEngine(mode, UNLIMITED).start(ENDLESS, new EventSink() {
+                @Override
+                public void accept(ExecutionEvent event) {}
+
+                @Override
+                public void close() {
+                    closed.set(true);
+                }
+            });
+            while (handle.instructions() == 0) {
+                Thread.sleep(1);
+            }
+            assertFalse(handle.isDone());
+            handle.cancel();
+            ExecutionResult result = handle.await(Duration.ofSeconds(10));
+            assertEquals(ExecutionListener.Outcome.STOPPED, result.outcome(), mode.name());
+            assertTrue(result.instructions() > 0);
+            assertEquals(result.instructions(), handle.instructions());
+            assertTrue(closed.get());
+        }
+    }
+
+    @Test
+    public void aHandleCancelledBeforeTheRunNeverRuns() {
+        List<ExecutionEvent> events = new ArrayList<>();
+        ExecutionHandle handle = new ExecutionHandle();
+        handle.cancel();
+        ExecutionResult result = new KidCodeEngine().execute("say \"hi\"", events::add, handle);
+        assertEquals(new ExecutionResult(ExecutionListener.Outcome.STOPPED, null, 0, 0), result);
+        assertTrue(events.isEmpty());
+        assertTrue(handle.isDone());
+    }
+
+    @Test
+    public void awaitWithATimeoutCancelsTheRun() throws Exception {
+        ExecutionHandle handle = new KidCodeEngine(ExecutionMode.INTERPRETER, UNLIMITED).start(ENDLESS);
+        ExecutionResult result = handle.await(Duration.ofMillis(50));
+        assertTrue(handle.isCancelled());
+        assertEquals(ExecutionListener.Outcome.STOPPED, result.outcome());
+    }
+
+    @Test
+    public void oneEngineRunsProgramsAtTheSameTime() {
+        KidCodeEngine engine = new KidCodeEngine(ExecutionMode.BYTECODE, UNLIMITED);
+        ExecutionHandle endless = engine.start(ENDLESS);
+        List<CompletableFuture<ExecutionResult>> results = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            results.add(engine.start("repeat " + i + "\n    move forward 10\nend repeat\n").result());
+        }
+        for (int i = 1; i <= 8; i++) {
+            ExecutionResult result = results.get(i - 1).join();
+            assertEquals(ExecutionListener.Outcome.COMPLETED, result.outcome());
+            assertEquals(i + 2, result.events()); // clear, Cody's start, and the moves
+        }
+        assertFalse(endless.isDone());
+        endless.cancel();
+        assertEquals(ExecutionListener.Outcome.STOPPED, endless.result().join().outcome());
+    }
+
+    @Test
+    public void cancellingTheFutureStopsTheRun() {
+        ExecutionHandle handle = new KidCodeEngine(ExecutionMode.INTERPRETER, UNLIMITED).start(ENDLESS);
+        handle.result().cancel(false);
+        assertTrue(handle.isCancelled());
+    }
+}
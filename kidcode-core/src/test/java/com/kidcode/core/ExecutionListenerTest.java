@@ -0,0 +1,64 @@
+package com.kidcode.core;
+
+import com.kidcode.core.evaluator.ResourceLimits;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class ExecutionListenerTest {
+
+    private static final class Recorder implements ExecutionListener {
+        final List<Phase> phases = new ArrayList<>();
+        final List<String> finished = new ArrayList<>();
+
+        @Override
+        public void phase(Phase phase, long nanos) {
+            assertTrue(nanos >= 0);
+            phases.add(phase);
+        }
+
+        @Override
+        public void finished(Outcome outcome, ResourceLimits.Budget exhausted, long instructions, long events) {
+            finished.add(outcome + " " + exhausted + " " + instructions + " " + events);
+        }
+    }
+
+    private static Recorder run(ExecutionMode mode, ResourceLimits limits, String source) {
+        Recorder recorder = new Recorder();
+        new KidCodeEngine(mode, limits, recorder).execute(source);
+        return recorder;
+    }
+
+    @Test
+    public void reportsEveryPhaseAndWhatTheRunUsed() {
+        String source = """
+                repeat 3
+                    move forward 10
+                end repeat
+                """;
+        Recorder interpreter = run(ExecutionMode.INTERPRETER, ResourceLimits.DEFAULT, source);
+        assertEquals(List.of(ExecutionListener.Phase.LEX, ExecutionListener.Phase.PARSE,
+            ExecutionListener.Phase.ANALYZE, ExecutionListener.Phase.EVALUATE), interpreter.phases);
+        assertEquals(List.of("COMPLETED null 4 5"), interpreter.finished);
+
+        Recorder vm = run(ExecutionMode.BYTECODE, ResourceLimits.DEFAULT, source);
+        assertEquals(List.of(ExecutionListener.Phase.LEX, ExecutionListener.Phase.PARSE,
+            ExecutionListener.Phase.ANALYZE, ExecutionListener.Phase.COMPILE, ExecutionListener.Phase.EVALUATE), vm.phases);
+        assertEquals(interpreter.finished, vm.finished);
+    }
+
+    @Test
+    public void reportsParseFailuresAndExhaustedBudgets() {
+        Recorder parseFailed = run(ExecutionMode.INTERPRETER, ResourceLimits.DEFAULT, "move sideways");
+        assertEquals(List.of(ExecutionListener.Phase.LEX, ExecutionListener.Phase.PARSE), parseFailed.phases);
+        assertTrue(parseFailed.finished.get(0).startsWith("PARSE_FAILED null 0 "));
+
+        Recorder exhausted = run(ExecutionMode.INTERPRETER, ResourceLimits.DEFAULT.withInstructions(5), """
+                repeat 10
+                    turn left 1
+                end repeat
+                """);
+        assertEquals(List.of("EXHAUSTED INSTRUCTIONS 6 6"), exhausted.finished);
+    }
+}
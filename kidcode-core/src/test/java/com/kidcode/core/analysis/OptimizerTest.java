@@ -0,0 +1,135 @@
+package com.kidcode.core.analysis;
+
+import com.kidcode.core.Engines;
+import com.kidcode.core.ExecutionMode;
+import com.kidcode.core.ExecutionResult;
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.ast.*;
+import com.kidcode.core.evaluator.ResourceLimits;
+import com.kidcode.core.event.ExecutionEvent;
+import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.parser.Parser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+public class OptimizerTest {
+
+    private static List<Statement> optimize(String source, ResourceLimits limits) {
+        return new Optimizer(limits).optimize(new Parser(new Lexer(source)).parseProgram());
+    }
+
+    private record Run(List<ExecutionEvent> events, ExecutionResult result) {}
+
+    // Runs the program with or without the Optimizer.
+    private static Run run(String source, ExecutionMode mode, ResourceLimits limits, boolean optimized) {
+        KidCodeEngine engine = optimized ? new KidCodeEngine(mode, limits) : Engines.unoptimized(mode, limits);
+        List<ExecutionEvent> events = new ArrayList<>();
+        ExecutionResult result = engine.execute(source, events::add);
+        return new Run(events, result);
+    }
+
+    private static void assertSameRun(String source, ResourceLimits limits) {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            assertEquals(run(source, mode, limits, false), run(source, mode, limits, true), mode.name());
+        }
+    }
+
+    @Test
+    public void foldsConstantExpressionsButNotErrors() {
+        List<Statement> program = optimize("""
+                set x = 10 * 36 + 4
+                say "n" + 2 * 3
+                say [1, 2, 3][1] == 2
+                say 10 / 0
+                say x * 2
+                """, ResourceLimits.DEFAULT);
+        assertEquals(new IntegerLiteral(364), ((SetStatement) program.get(0)).value());
+        assertEquals(new StringLiteral("n6"), ((SayStatement) program.get(1)).message());
+        assertEquals(new ConstantExpression(true), ((SayStatement) program.get(2)).message());
+        assertInstanceOf(InfixExpression.class, ((SayStatement) program.get(3)).message());
+        InfixExpression partial = (InfixExpression) ((SayStatement) program.get(4)).message();
+        assertEquals(new IntegerLiteral(2), partial.right());
+    }
+
+    @Test
+    public void replacesConstantIfsWithTheBranchThatRuns() {
+        List<Statement> program = optimize("""
+                if 2 > 1
+                    say "yes"
+                else
+                    say "no"
+                end if
+                if "text"
+                    say "never"
+                end if
+                if x
+                    say "maybe"
+                end if
+                """, ResourceLimits.DEFAULT);
+        BlockStatement taken = (BlockStatement) program.get(0);
+        assertEquals(1, taken.lineNumber());
+        assertEquals(5, taken.body().get(0).column());
+        assertEquals(new StringLiteral("yes"), ((SayStatement) taken.body().get(0)).message());
+        assertEquals(List.of(), ((BlockStatement) program.get(1)).body());
+        assertInstanceOf(IfStatement.class, program.get(2));
+    }
+
+    @Test
+    public void hoistsConstantListsWithinTheListBudget() {
+        List<Statement> program = optimize("""
+                set grid = [1, [2, "three"]]
+                set row = [1, x]
+                set big = [1, 2, 3]
+                """, ResourceLimits.DEFAULT.withListSize(2));
+        ConstantExpression grid = (ConstantExpression) ((SetStatement) program.get(0)).value();
+        assertEquals(List.of(1, List.of(2, "three")), grid.value());
+        assertThrows(UnsupportedOperationException.class, () -> ((List<?>) grid.value()).clear());
+        assertInstanceOf(ListLiteral.class, ((SetStatement) program.get(1)).value());
+        assertInstanceOf(ListLiteral.class, ((SetStatement) program.get(2)).value());
+    }
+
+    @Test
+    public void runsExactlyAsBeforeUpToTheLimits() {
+        String source = """
+                set n = 0
+                repeat 6
+                    if 1 == 1
+                        set n = n + 10 / 2
+                    end if
+                    say "total: " + [n, [1, 2]]
+                    say 10 / 0
+                    say [1, 2][5]
+                end repeat
+                set big = [1, 2, 3, 4]
+                say "abc" + "defgh"
+                """;
+        assertSameRun(source, ResourceLimits.DEFAULT);
+        for (int instructions = 1; instructions < 40; instructions += 3) {
+            assertSameRun(source, ResourceLimits.DEFAULT.withInstructions(instructions));
+        }
+        assertSameRun(source, ResourceLimits.DEFAULT.withListSize(3));
+        assertSameRun(source, ResourceLimits.DEFAULT.withStringLength(7));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> testScriptsRunAsBefore() throws IOException {
+        Path dir = Paths.get("..", "test_scripts");
+        if (!Files.isDirectory(dir)) {
+            dir = Paths.get("test_scripts");
+        }
+        try (Stream<Path> scripts = Files.list(dir)) {
+            List<Path> files = scripts.filter(p -> p.toString().endsWith(".kc")).sorted().toList();
+            return files.stream().map(file -> DynamicTest.dynamicTest(file.getFileName().toString(),
+                    () -> assertSameRun(Files.readString(file), ResourceLimits.DEFAULT)));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.kidcode.core.analysis;
+
+import com.kidcode.core.ast.*;
+import com.kidcode.core.evaluator.Environment;
+import com.kidcode.core.evaluator.Evaluator;
+import com.kidcode.core.event.ExecutionEvent;
+import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.parser.Parser;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class ResolverTest {
+
+    private static final String PROGRAM = """
+            set size = 10
+            set label = "main"
+            define show
+                say label
+                say size
+            end define
+            define grow size
+                set label = "grow"
+                show
+                set size = size + 1
+                say size
+            end define
+            grow 3
+            say "back in main"
+            show
+            """;
+
+    private List<Statement> parse(String source) {
+        Parser parser = new Parser(new Lexer(source));
+        List<Statement> program = parser.parseProgram();
+        assertTrue(parser.getErrors().isEmpty(), parser.getErrors().toString());
+        return program;
+    }
+
+    @Test
+    public void bindsLocalsGlobalsAndDynamicNames() {
+        Resolver resolver = new Resolver();
+        List<Statement> program = resolver.resolve(parse(PROGRAM));
+        assertEquals(0, resolver.getGlobalScope().slotOf("size"));
+        assertEquals(1, resolver.getGlobalScope().slotOf("label"));
+
+        // 'label' and 'size' are locals of 'grow', so 'show' must look them up through its callers.
+        FunctionDefinitionStatement show = (FunctionDefinitionStatement) program.get(2);
+        Identifier label = (Identifier) ((SayStatement) show.body().get(0)).message();
+        assertFalse(label.isResolved());
+
+        FunctionDefinitionStatement grow = (FunctionDefinitionStatement) program.get(3);
+        assertEquals(List.of(new Identifier("size", 0, 0)), grow.parameters());
+        SetStatement setLabel = (SetStatement) grow.body().get(0);
+        assertEquals(new Identifier("label", 0, 1), setLabel.name());
+    }
+
+    @Test
+    public void bindsFreeNamesToTheGlobalFrameWhenNoFunctionShadowsThem() {
+        Resolver resolver = new Resolver();
+        List<Statement> program = resolver.resolve(parse("""
+                set step = 5
+                define walk
+                    move forward step
+                end define
+                walk
+                """));
+        FunctionDefinitionStatement walk = (FunctionDefinitionStatement) program.get(1);
+        Identifier step = (Identifier) ((MoveStatement) walk.body().get(0)).steps();
+        assertEquals(new Identifier("step", Identifier.GLOBAL, 0), step);
+    }
+
+    @Test
+    public void resolvedProgramBehavesLikeNameLookup() {
+        List<ExecutionEvent> byName = new Evaluator(() -> false).evaluate(parse(PROGRAM), new Environment());
+
+        Resolver resolver = new Resolver();
+        List<Statement> resolved = resolver.resolve(parse(PROGRAM));
+        List<ExecutionEvent> bySlot = new Evaluator(() -> false).evaluate(resolved, new Environment(resolver.getGlobalScope()));
+
+        assertEquals(byName, bySlot);
+        assertEquals(new ExecutionEvent.SayEvent("grow"), bySlot.get(2));
+        assertEquals(new ExecutionEvent.SayEvent("3"), bySlot.get(3));
+        assertEquals(new ExecutionEvent.SayEvent("4"), bySlot.get(4));
+        assertEquals(new ExecutionEvent.SayEvent("main"), bySlot.get(6));
+        assertEquals(new ExecutionEvent.SayEvent("10"), bySlot.get(7));
+    }
+
+    private static final String CALLS = """
+            greet
+            define greet
+                say "hi"
+            end define
+            greet
+            define greet
+                say "bye"
+            end define
+            greet
+            set seen = "main"
+            define peek first
+                if first == 1
+                    set seen = "local"
+                end if
+                say seen
+                if first == 1
+                    peek 0
+                end if
+            end define
+            peek 1
+            set seen = "main"
+            peek 0
+            """;
+
+    @Test
+    public void bindsFunctionNamesToATableSlot() {
+        Resolver resolver = new Resolver();
+        List<Statement> program = resolver.resolve(parse(CALLS));
+        assertEquals(0, resolver.getFunctionScope().slotOf("greet"));
+        assertEquals(1, resolver.getFunctionScope().slotOf("peek"));
+        assertEquals(new Identifier("greet", Identifier.GLOBAL, 0), ((FunctionCallStatement) program.get(0)).function());
+        assertEquals(new Identifier("greet", Identifier.GLOBAL, 0), ((FunctionDefinitionStatement) program.get(3)).name());
+    }
+
+    @Test
+    public void callsFollowRedefinitionsAndStartFromEmptyFrames() {
+        List<ExecutionEvent> byName = new Evaluator(() -> false).evaluate(parse(CALLS), new Environment());
+
+        Resolver resolver = new Resolver();
+        List<Statement> resolved = resolver.resolve(parse(CALLS));
+        List<ExecutionEvent> bySlot = new Evaluator(() -> false).evaluate(resolved, new Environment(resolver.getGlobalScope()));
+
+        assertEquals(byName, bySlot);
+        assertEquals(List.of(
+            new ExecutionEvent.SayEvent("Error: function 'greet' not defined."),
+            new ExecutionEvent.SayEvent("hi"),
+            new ExecutionEvent.SayEvent("bye"),
+            // The recursive call sees its caller's 'seen'; later calls reuse its frame but not its locals.
+            new ExecutionEvent.SayEvent("local"),
+            new ExecutionEvent.SayEvent("local"),
+            new ExecutionEvent.SayEvent("main")), bySlot.subList(2, bySlot.size()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.kidcode.core.analysis;
+
+import com.kidcode.core.ast.*;
+import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.parser.Parser;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class TypeInferenceTest {
+
+    private List<Statement> program;
+    private Resolver resolver;
+
+    private TypeInference infer(String source) {
+        Parser parser = new Parser(new Lexer(source));
+        resolver = new Resolver();
+        List<Statement> resolved = resolver.resolve(parser.parseProgram());
+        TypeInference inference = new TypeInference(resolver.getGlobalScope());
+        program = inference.infer(resolved);
+        return inference;
+    }
+
+    private StaticType globalType(TypeInference inference, String name) {
+        return inference.typeOf(resolver.getGlobalScope(), resolver.getGlobalScope().slotOf(name));
+    }
+
+    @Test
+    public void countersAreInts() {
+        TypeInference inference = infer("""
+                set i = 0
+                set step = 3
+                repeat 10
+                    set i = i + step * 2
+                end repeat
+                """);
+        assertEquals(StaticType.INT, globalType(inference, "i"));
+        assertEquals(StaticType.INT, globalType(inference, "step"));
+        SetStatement update = (SetStatement) ((RepeatStatement) program.get(2)).body().get(0);
+        assertEquals(StaticType.INT, update.name().type());
+        assertEquals(StaticType.INT, ((InfixExpression) update.value()).type());
+    }
+
+    @Test
+    public void anyNonIntWriteMakesAVariableUnknown() {
+        TypeInference inference = infer("""
+                set n = 1
+                set s = "a"
+                set n = n + s
+                set list = [1, 2]
+                set first = list[0]
+                """);
+        assertEquals(StaticType.UNKNOWN, globalType(inference, "n"));
+        assertEquals(StaticType.UNKNOWN, globalType(inference, "s"));
+        assertEquals(StaticType.UNKNOWN, globalType(inference, "first"));
+    }
+
+    @Test
+    public void parametersTakeTheTypeOfEveryCallSite() {
+        infer("""
+                define spiral size
+                    if size != 51
+                        move forward size
+                        spiral size + 5
+                    end if
+                end define
+                define label text
+                    say text
+                end define
+                spiral 1
+                say "calls are separated by a statement keyword"
+                label "a"
+                say "so arguments are not read across lines"
+                label 2
+                """);
+        FunctionDefinitionStatement spiral = (FunctionDefinitionStatement) program.get(0);
+        FunctionDefinitionStatement label = (FunctionDefinitionStatement) program.get(1);
+        assertEquals(StaticType.INT, spiral.parameters().get(0).type());
+        assertEquals(StaticType.BOOLEAN, ((InfixExpression) ((IfStatement) spiral.body().get(0)).condition()).type());
+        assertEquals(StaticType.UNKNOWN, label.parameters().get(0).type());
+    }
+}
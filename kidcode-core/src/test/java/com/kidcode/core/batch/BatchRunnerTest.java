@@ -0,0 +1,124 @@
+package com.kidcode.core.batch;
+
+import com.kidcode.core.ExecutionListener;
+import com.kidcode.core.ExecutionMode;
+import com.kidcode.core.evaluator.ResourceLimits;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class BatchRunnerTest {
+
+    // The same square, drawn the other way round from another corner.
+    private static final String SQUARE = """
+            repeat 4
+                move forward 50
+                turn right 90
+            end repeat
+            """;
+    private static final String SQUARE_BACKWARDS = """
+            turn right 90
+            move forward 50
+            turn left 90
+            move forward 50
+            turn left 90
+            move forward 50
+            turn left 90
+            move forward 50
+            move forward 0 - 50
+            """;
+
+    @Test
+    public void summarizesEachProgramInOrder() {
+        List<RunSummary> summaries = new BatchRunner().run(List.of(
+            new BatchRunner.Program("square", SQUARE),
+            new BatchRunner.Program("backwards", SQUARE_BACKWARDS),
+            new BatchRunner.Program("red", "color \"red\"\n" + SQUARE),
+            new BatchRunner.Program("broken", "move forward"),
+            new BatchRunner.Program("endless", "repeat 1000000\nturn right 1\nend repeat",
+                ResourceLimits.DEFAULT.withInstructions(500))));
+
+        assertEquals(List.of("square", "backwards", "red", "broken", "endless"),
+            summaries.stream().map(RunSummary::id).toList());
+
+        RunSummary square = summaries.get(0);
+        assertEquals(ExecutionListener.Outcome.COMPLETED, square.outcome());
+        assertEquals(4, square.segments());
+        assertEquals(10, square.events());
+        assertEquals(new RunSummary.Bounds(250, 200, 300, 250), square.bounds());
+        assertEquals(square.drawingHash(), summaries.get(1).drawingHash());
+        assertNotEquals(square.drawingHash(), summaries.get(2).drawingHash());
+
+        RunSummary broken = summaries.get(3);
+        assertEquals(ExecutionListener.Outcome.PARSE_FAILED, broken.outcome());
+        assertNull(broken.bounds());
+        assertFalse(broken.errors().isEmpty());
+
+        RunSummary endless = summaries.get(4);
+        assertEquals(ExecutionListener.Outcome.EXHAUSTED, endless.outcome());
+        assertEquals(ResourceLimits.Budget.INSTRUCTIONS, endless.exhausted());
+        assertEquals(1, endless.errors().size());
+    }
+
+    @Test
+    public void parallelRunsMatchRunningOneByOne() throws IOException {
+        Path dir = Paths.get("..", "test_scripts");
+        if (!Files.isDirectory(dir)) {
+            dir = Paths.get("test_scripts");
+        }
+        List<BatchRunner.Program> programs = BatchRunner.programs(dir);
+        assertFalse(programs.isEmpty());
+
+        ExecutorService pool = BatchRunner.newPool(4);
+        try {
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                BatchRunner runner = new BatchRunner(mode, ResourceLimits.DEFAULT, pool);
+                List<RunSummary> parallel = runner.run(programs);
+                for (int i = 0; i < programs.size(); i++) {
+                    assertEquals(withoutTime(runner.run(programs.get(i))), withoutTime(parallel.get(i)), programs.get(i).id());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Recursion as deep as the default call depth allows, through nested
+    // blocks: more than a default thread's stack holds in the Evaluator.
+    private static final String DIVE = """
+            define dive n
+                if n == 0
+                    say "bottom"
+                else
+                    repeat 1
+                        set next = n - 1
+                        dive next
+                    end repeat
+                end if
+            end define
+            dive 999
+            """;
+
+    @Test
+    public void batchesRecurseAsDeepAsSingleRuns() {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            List<RunSummary> summaries = new BatchRunner(mode, ResourceLimits.DEFAULT)
+                .run(List.of(new BatchRunner.Program("dive", DIVE), new BatchRunner.Program("dive again", DIVE)));
+            for (RunSummary summary : summaries) {
+                assertEquals(ExecutionListener.Outcome.COMPLETED, summary.outcome(), mode.name());
+                assertNull(summary.exhausted());
+                assertTrue(summary.errors().isEmpty(), summary.errors().toString());
+            }
+        }
+    }
+
+    private static RunSummary withoutTime(RunSummary s) {
+        return new RunSummary(s.id(), s.outcome(), s.exhausted(), s.instructions(), s.events(), s.segments(),
+            s.bounds(), s.drawingHash(), s.errors(), 0);
+    }
+}
@@ -0,0 +1,182 @@
+package com.kidcode.core.bytecode;
+
+import com.kidcode.core.ExecutionMode;
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.event.ExecutionEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+// Runs every program through both engines and checks the event streams match.
+public class EngineConformanceTest {
+
+    private static final Map<String, String> PROGRAMS = Map.of(
+        "arithmetic and errors", """
+            set x = 10 * 3 - 4 / 2
+            say x
+            say x / 0
+            say "a" - "b"
+            say missing
+            set y = missing
+            move forward "far"
+            turn left [1, 2]
+            color 5
+            color "teal"
+            color missing
+            color 1 / 0
+            set fake = "Error: just a string"
+            say fake
+            say fake + "!"
+            """,
+        "lists and indexing", """
+            set items = [1, "two", [3, 4]]
+            say items
+            say items[2][1]
+            say items[5]
+            say 5[0]
+            say "list: " + items
+            """,
+        "control flow", """
+            set n = 0
+            repeat 12
+                set n = n + 1
+                if n == 3
+                    pen up
+                else
+                    pen down
+                end if
+                if n != 7
+                    color "red"
+                end if
+                move forward n * 3
+                turn right 37
+            end repeat
+            repeat "many"
+                say "never"
+            end repeat
+            if missing
+                say "never"
+            end if
+            """,
+        "functions and dynamic scope", """
+            define inner
+                say depth
+            end define
+            define outer depth
+                say "enter"
+                inner
+                if depth == 3
+                    say "bottom"
+                else
+                    outer depth + 1
+                end if
+            end define
+            say "start"
+            outer 0
+            say "no arguments"
+            outer
+            say "undefined"
+            undefined_function 1 2
+            say "bad argument"
+            outer missing
+            say "done"
+            """,
+        "recursive drawing", """
+            define branch size
+                if size == 0
+                    turn right 0
+                else
+                    move forward size * 4
+                    turn left 30
+                    branch size - 1
+                    turn right 60
+                    branch size - 1
+                    turn left 30
+                    move forward 0 - size * 4
+                end if
+            end define
+            branch 6
+            """,
+        "int fast paths", """
+            set total = 0
+            set mixed = 1
+            set zero = 0
+            define shadow
+                say total
+                set total = 5
+                move forward total * 2
+            end define
+            repeat 30
+                set total = total + 7
+                set mixed = mixed + 1
+                if total > 100
+                    set mixed = "big"
+                end if
+                turn right total / 3
+            end repeat
+            say total
+            say mixed
+            say total / zero
+            move forward total / zero
+            set total = "text"
+            shadow
+            say [10, 20, 30][zero + 1]
+            """,
+        "instruction limit", """
+            set x = 0
+            repeat 1000010
+                set x = x + 1
+            end repeat
+            say x
+            """
+    );
+
+    @TestFactory
+    Stream<DynamicTest> testScriptsMatchAcrossEngines() throws IOException {
+        Path dir = Paths.get("..", "test_scripts");
+        if (!Files.isDirectory(dir)) {
+            dir = Paths.get("test_scripts");
+        }
+        assertTrue(Files.isDirectory(dir), "test_scripts directory not found");
+        try (Stream<Path> scripts = Files.list(dir)) {
+            List<Path> files = scripts.filter(p -> p.toString().endsWith(".kc")).sorted().toList();
+            assertFalse(files.isEmpty());
+            return files.stream().map(file -> DynamicTest.dynamicTest(file.getFileName().toString(),
+                    () -> assertSameEvents(Files.readString(file))));
+        }
+    }
+
+    @TestFactory
+    Stream<DynamicTest> programsMatchAcrossEngines() {
+        return PROGRAMS.entrySet().stream().map(entry -> DynamicTest.dynamicTest(entry.getKey(),
+                () -> assertSameEvents(entry.getValue())));
+    }
+
+    // A failed color expression reports its own error, as 'say' does.
+    @Test
+    public void colorReportsTheErrorOfItsExpression() {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            List<ExecutionEvent> events = new KidCodeEngine(mode).execute("color missing");
+            ExecutionEvent last = events.get(events.size() - 1);
+            assertInstanceOf(ExecutionEvent.ErrorEvent.class, last, mode.name());
+            assertTrue(((ExecutionEvent.ErrorEvent) last).errorMessage().contains("missing"), last.toString());
+        }
+    }
+
+    private void assertSameEvents(String source) {
+        List<ExecutionEvent> expected = new KidCodeEngine(ExecutionMode.INTERPRETER).execute(source);
+        List<ExecutionEvent> actual = new KidCodeEngine(ExecutionMode.BYTECODE).execute(source);
+        assertEquals(expected.size(), actual.size(), "event count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i), "event " + i);
+        }
+    }
+}
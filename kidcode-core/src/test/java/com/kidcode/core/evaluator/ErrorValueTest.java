@@ -0,0 +1,31 @@
+package com.kidcode.core.evaluator;
+
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.ast.Statement;
+import com.kidcode.core.event.ExecutionEvent;
+import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.parser.Parser;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class ErrorValueTest {
+
+    @Test
+    public void errorsCarryTheLineOfTheirStatement() {
+        List<Statement> program = new Parser(new Lexer("say 1\n\nsay missing\n")).parseProgram();
+        assertEquals(3, program.get(1).lineNumber());
+
+        Object result = Operations.infix("/", 1, 0, program.get(1).lineNumber());
+        ErrorValue error = assertInstanceOf(ErrorValue.class, result);
+        assertEquals("Error: Division by zero", error.message());
+        assertEquals(3, error.lineNumber());
+    }
+
+    @Test
+    public void userStringsStartingWithErrorAreSaid() {
+        List<ExecutionEvent> events = new KidCodeEngine().execute("say \"Error: just kidding\"\nsay 1 / 0\n");
+        assertEquals(new ExecutionEvent.SayEvent("Error: just kidding"), events.get(2));
+        assertEquals(new ExecutionEvent.ErrorEvent("Error: Division by zero"), events.get(3));
+    }
+}
@@ -32,8 +32,8 @@ public class EvaluatorStringOpTest {
         Environment env = makeEnv();
         Expression expr = new InfixExpression(new StringLiteral("A"), "-", new StringLiteral("B"));
         Object res = ev.evaluateExpression(expr, env);
-        assertTrue(res instanceof String);
-        assertTrue(((String) res).startsWith("Error:"));
+        assertTrue(res instanceof ErrorValue);
+        assertTrue(((ErrorValue) res).message().startsWith("Error:"));
     }
 
     @Test
@@ -42,7 +42,16 @@ public class EvaluatorStringOpTest {
         Environment env = makeEnv();
         Expression expr = new InfixExpression(new StringLiteral("Hello"), "*", new IntegerLiteral(2));
         Object res = ev.evaluateExpression(expr, env);
-        assertTrue(res instanceof String);
-        assertTrue(((String) res).startsWith("Error:"));
+        assertTrue(res instanceof ErrorValue);
+        assertTrue(((ErrorValue) res).message().startsWith("Error:"));
+    }
+
+    @Test
+    public void stringStartingWithErrorIsAValue() {
+        Evaluator ev = makeEvaluator();
+        Environment env = makeEnv();
+        Expression expr = new InfixExpression(new StringLiteral("Error: "), "+", new StringLiteral("not really"));
+        Object res = ev.evaluateExpression(expr, env);
+        assertEquals("Error: not really", res);
     }
 }
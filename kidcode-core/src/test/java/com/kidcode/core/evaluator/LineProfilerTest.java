@@ -0,0 +1,76 @@
+package com.kidcode.core.evaluator;
+
+import com.kidcode.core.ExecutionHandle;
+import com.kidcode.core.ExecutionMode;
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.event.ExecutionEvent;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class LineProfilerTest {
+
+    private static final String PROGRAM = """
+            define square size
+              repeat 4
+                move forward size
+                turn right 90
+              end repeat
+            end define
+            set n = 0
+            repeat 3
+                square 10
+                set n = n + 1
+            end repeat
+            say n
+            """;
+
+    // "line count events" for every line that ran; times vary, so they are left out.
+    private static List<String> counts(LineProfile profile) {
+        List<String> lines = new ArrayList<>();
+        for (LineProfile.Line line : profile.lines()) {
+            assertTrue(line.selfNanos() >= 0);
+            lines.add(line.lineNumber() + ":" + line.column() + " " + line.count() + " " + line.events());
+        }
+        return lines;
+    }
+
+    @Test
+    public void countsStatementsAndEventsPerLineInBothEngines() {
+        List<String> expected = List.of(
+            "1:1 1 0", "2:3 3 0", "3:5 12 12", "4:5 12 12", "7:1 1 0",
+            "8:1 1 0", "9:5 3 0", "10:5 3 0", "12:1 1 1");
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            List<ExecutionEvent> events = new ArrayList<>();
+            LineProfile profile = new KidCodeEngine(mode).profile(PROGRAM, events::add);
+            assertEquals(expected, counts(profile), mode.name());
+            assertEquals(new KidCodeEngine(mode).execute(PROGRAM), events, mode.name());
+            assertTrue(profile.totalNanos() > 0);
+        }
+    }
+
+    @Test
+    public void profilesRunsThatRunOutOfABudget() {
+        String source = """
+                repeat 100
+                    turn left 1
+                end repeat
+                """;
+        KidCodeEngine engine = new KidCodeEngine(ExecutionMode.INTERPRETER, ResourceLimits.DEFAULT.withInstructions(10));
+        ExecutionHandle handle = new ExecutionHandle();
+        LineProfile profile = engine.profile(source, event -> {}, handle);
+        assertEquals(ResourceLimits.Budget.INSTRUCTIONS, handle.result().join().exhausted());
+        assertEquals(List.of("1:1 1 0", "2:5 10 9"), counts(profile));
+        assertNotNull(profile.hottest());
+    }
+
+    @Test
+    public void hasNoLinesWhenTheProgramDoesNotParse() {
+        List<ExecutionEvent> events = new ArrayList<>();
+        LineProfile profile = new KidCodeEngine().profile("move sideways", events::add);
+        assertEquals(LineProfile.EMPTY, profile);
+        assertNull(profile.hottest());
+        assertInstanceOf(ExecutionEvent.ErrorEvent.class, events.get(0));
+    }
+}
@@ -0,0 +1,54 @@
+package com.kidcode.core.evaluator;
+
+import com.kidcode.core.event.ExecutionEvent;
+import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.parser.Parser;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class ListValueTest {
+
+    @Test
+    public void storesIntListsUnboxed() {
+        assertInstanceOf(ListValue.Ints.class, ListValue.of(new Object[] {1, 2, 3}));
+        assertInstanceOf(ListValue.Objects.class, ListValue.of(new Object[] {1, "two", 3}));
+        assertEquals(List.of(1, 2, 3), ListValue.of(new Object[] {1, 2, 3}));
+        assertEquals(List.of(1, 2, 3).hashCode(), ListValue.of(new Object[] {1, 2, 3}).hashCode());
+        assertEquals(7, ((ListValue.Ints) ListValue.of(new Object[] {5, 7})).getInt(1));
+    }
+
+    @Test
+    public void printsLikeAnArrayList() {
+        List<Object> nested = new ArrayList<>(List.of(1, "a", true));
+        nested.add(new ArrayList<>(List.of(2, 3)));
+        ListValue value = ListValue.of(new Object[] {1, "a", true, ListValue.of(new Object[] {2, 3})});
+        assertEquals(nested.toString(), value.toString());
+        assertEquals("[]", ListValue.EMPTY.toString());
+
+        List<ExecutionEvent> events = new Evaluator(() -> false).evaluate(
+            new Parser(new Lexer("set row = [1, 2, 3]\nsay [row, \"x\", row[1]]\nsay \"row: \" + row")).parseProgram(),
+            new Environment());
+        assertEquals(new ExecutionEvent.SayEvent("[[1, 2, 3], x, 2]"), events.get(2));
+        assertEquals(new ExecutionEvent.SayEvent("row: [1, 2, 3]"), events.get(3));
+    }
+
+    @Test
+    public void appendingSharesStructureAndKeepsEveryVersion() {
+        List<ListValue> versions = new ArrayList<>();
+        List<Object> expected = new ArrayList<>();
+        ListValue list = ListValue.of(new Object[] {-1, -2});
+        expected.addAll(List.of(-1, -2));
+        for (int i = 0; i < 40_000; i++) {
+            list = list.appended((i % 3 == 0) ? "s" + i : i);
+            expected.add((i % 3 == 0) ? "s" + i : i);
+            if (Integer.bitCount(i) == 1 || i % 1057 == 0) versions.add(list);
+        }
+        assertEquals(expected, list);
+        for (ListValue version : versions) {
+            assertEquals(expected.subList(0, version.size()), version);
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> versions.get(0).get(versions.get(0).size()));
+    }
+}
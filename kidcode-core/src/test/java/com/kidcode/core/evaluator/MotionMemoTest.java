@@ -0,0 +1,148 @@
+package com.kidcode.core.evaluator;
+
+import com.kidcode.core.Engines;
+import com.kidcode.core.ExecutionMode;
+import com.kidcode.core.ExecutionResult;
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.event.ExecutionEvent;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class MotionMemoTest {
+
+    private record Run(List<ExecutionEvent> events, ExecutionResult result) {}
+
+    // Runs the program in the interpreter, with or without memoization.
+    private static Run run(String source, ResourceLimits limits, boolean memoizing) {
+        KidCodeEngine engine = memoizing ? new KidCodeEngine(ExecutionMode.INTERPRETER, limits)
+            : Engines.unmemoized(ExecutionMode.INTERPRETER, limits);
+        List<ExecutionEvent> events = new ArrayList<>();
+        ExecutionResult result = engine.execute(source, events::add);
+        return new Run(events, result);
+    }
+
+    private static void assertSameRun(String source, ResourceLimits limits) {
+        assertEquals(run(source, limits, false), run(source, limits, true));
+    }
+
+    private static final String KOCH = """
+            define koch n len
+              if n == 0
+                move forward len
+              else
+                set m = n - 1
+                set third = len / 3
+                koch m third
+                turn left 60
+                koch m third
+                turn right 120
+                koch m third
+                turn left 60
+                koch m third
+              end if
+            end define
+            repeat 3
+              koch 4 250
+              turn right 120
+            end repeat
+            """;
+
+    @Test
+    public void replaysRepeatedCallsExactly() {
+        assertSameRun(KOCH, ResourceLimits.DEFAULT);
+        assertSameRun("""
+                define square size
+                  repeat 4
+                    move forward size
+                    turn right 90
+                  end repeat
+                end define
+                repeat 30
+                  square 7
+                  pen up
+                  move forward 3
+                  pen down
+                  repeat 3
+                    turn left 33
+                    move forward 5
+                  end repeat
+                end repeat
+                """, ResourceLimits.DEFAULT);
+    }
+
+    @Test
+    public void keysOnFreeVariablesHeadingPenAndColor() {
+        assertSameRun("""
+                define step
+                  move forward size
+                  say "at " + size + " " + missing
+                end define
+                define wrapper size
+                  step
+                  step
+                  step
+                end define
+                set size = 5
+                repeat 4
+                  step
+                  step
+                  wrapper 9
+                  wrapper 9
+                  turn right 45
+                end repeat
+                set size = 8
+                repeat 3
+                  step
+                  color "red"
+                  step
+                  pen up
+                  step
+                end repeat
+                """, ResourceLimits.DEFAULT);
+    }
+
+    @Test
+    public void forgetsEverythingWhenAFunctionIsDefined() {
+        assertSameRun("""
+                define leaf
+                  move forward 4
+                end define
+                define tree
+                  leaf
+                  turn right 10
+                  leaf
+                end define
+                repeat 3
+                  tree
+                end repeat
+                define leaf
+                  move forward 9
+                  say "new leaf"
+                end define
+                repeat 3
+                  tree
+                end repeat
+                repeat 2
+                  define inner
+                    turn left 5
+                  end define
+                  inner
+                end repeat
+                """, ResourceLimits.DEFAULT);
+    }
+
+    @Test
+    public void runsOutOfEveryBudgetAtTheSameStatement() {
+        for (int limit = 20; limit < 400; limit += 37) {
+            assertSameRun(KOCH, ResourceLimits.DEFAULT.withInstructions(limit));
+            assertSameRun(KOCH, ResourceLimits.DEFAULT.withEvents(limit));
+        }
+        for (int depth = 1; depth < 7; depth++) {
+            assertSameRun(KOCH, ResourceLimits.DEFAULT.withCallDepth(depth));
+        }
+        Run exhausted = run(KOCH, ResourceLimits.DEFAULT.withInstructions(150), true);
+        assertEquals(ResourceLimits.Budget.INSTRUCTIONS, exhausted.result().exhausted());
+    }
+}
@@ -0,0 +1,143 @@
+package com.kidcode.core.evaluator;
+
+import com.kidcode.core.ExecutionMode;
+import com.kidcode.core.ExecutionResult;
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.event.ExecutionEvent;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class ResourceLimitsTest {
+
+    // Runs the program in both engines, on the engine's own threads, checks
+    // they agree, and returns the interpreter's events.
+    private static List<ExecutionEvent> run(String source, ResourceLimits limits, ResourceLimits.Budget expected) {
+        KidCodeEngine interpreter = new KidCodeEngine(ExecutionMode.INTERPRETER, limits);
+        KidCodeEngine vm = new KidCodeEngine(ExecutionMode.BYTECODE, limits);
+        List<ExecutionEvent> events = new ArrayList<>();
+        List<ExecutionEvent> vmEvents = new ArrayList<>();
+        assertEquals(expected, interpreter.start(source, events::add).result().join().exhausted());
+        assertEquals(expected, vm.start(source, vmEvents::add).result().join().exhausted());
+        assertEquals(events, vmEvents);
+        return events;
+    }
+
+    private static String lastError(List<ExecutionEvent> events) {
+        return ((ExecutionEvent.ErrorEvent) events.get(events.size() - 1)).errorMessage();
+    }
+
+    @Test
+    public void instructionBudgetEndsTheRunOnce() {
+        List<ExecutionEvent> events = run("""
+                repeat 100
+                    move forward 1
+                end repeat
+                say "never"
+                """, ResourceLimits.DEFAULT.withInstructions(10), ResourceLimits.Budget.INSTRUCTIONS);
+        assertEquals(2 + 9, events.size() - 1); // clear, start, 9 moves, then the error
+        assertEquals("Execution timed out! Possible infinite loop.", lastError(events));
+    }
+
+    @Test
+    public void eventBudget() {
+        List<ExecutionEvent> events = run("""
+                repeat 100
+                    turn left 1
+                end repeat
+                """, ResourceLimits.DEFAULT.withEvents(50), ResourceLimits.Budget.EVENTS);
+        assertEquals(51, events.size());
+        assertTrue(lastError(events).startsWith("Event limit exceeded"));
+    }
+
+    @Test
+    public void deepRecursionIsAnErrorNotAStackOverflow() {
+        String source = """
+                define dive n
+                    set deeper = n + 1
+                    dive deeper
+                end define
+                dive 0
+                """;
+        List<ExecutionEvent> events = run(source, ResourceLimits.DEFAULT.withInstructions(Long.MAX_VALUE),
+            ResourceLimits.Budget.CALL_DEPTH);
+        assertEquals("Recursion limit exceeded: more than 1000 function calls in progress.", lastError(events));
+    }
+
+    // Counts down to 0 through a couple of nested blocks per call.
+    private static final String DIVE = """
+            define dive n
+                if n == 0
+                    say "bottom"
+                else
+                    repeat 1
+                        set next = n - 1
+                        dive next
+                    end repeat
+                end if
+            end define
+            dive %d
+            """;
+
+    @Test
+    public void recursionUpToTheDefaultDepthRunsOnEngineThreads() {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            List<ExecutionEvent> events = new ArrayList<>();
+            ExecutionResult result = new KidCodeEngine(mode).start(String.format(DIVE, 999), events::add).result().join();
+            assertNull(result.exhausted(), mode.name());
+            assertEquals(new ExecutionEvent.SayEvent("bottom"), events.get(events.size() - 1));
+        }
+    }
+
+    @Test
+    public void aStackOverflowEndsTheRunAsTooDeep() throws InterruptedException {
+        ExecutionResult[] result = new ExecutionResult[1];
+        List<ExecutionEvent> events = new ArrayList<>();
+        Thread small = new Thread(null, () -> result[0] = new KidCodeEngine().execute(String.format(DIVE, 999), events::add),
+            "small-stack", 128 * 1024);
+        small.start();
+        small.join();
+        assertEquals(ResourceLimits.Budget.CALL_DEPTH, result[0].exhausted());
+        assertEquals("Recursion too deep for this thread's stack.", lastError(events));
+    }
+
+    @Test
+    public void nestedListsCannotBlowUpWhenShown() {
+        String source = """
+                set a = [1, 2, 3, 4]
+                repeat 40
+                    set a = [a, a, a, a]
+                end repeat
+                say a
+                """;
+        List<ExecutionEvent> events = run(source, ResourceLimits.DEFAULT, ResourceLimits.Budget.STRING_LENGTH);
+        assertTrue(lastError(events).startsWith("Text limit exceeded"));
+    }
+
+    @Test
+    public void stringAndListBudgets() {
+        ResourceLimits small = ResourceLimits.DEFAULT.withStringLength(20).withListSize(3);
+        run("""
+                set s = "ab"
+                repeat 10
+                    set s = s + s
+                end repeat
+                """, small, ResourceLimits.Budget.STRING_LENGTH);
+        // The error in the first element must not hide the limit in the second.
+        run("say missing + (\"x\" + [1, 2, 3, 4])", small, ResourceLimits.Budget.LIST_SIZE);
+        List<ExecutionEvent> events = run("say [1, 2] + \"!\"", small, null);
+        assertEquals(new ExecutionEvent.SayEvent("[1, 2]!"), events.get(events.size() - 1));
+    }
+
+    @Test
+    public void timeBudget() {
+        String source = """
+                repeat 1000000000
+                end repeat
+                """;
+        List<ExecutionEvent> events = new KidCodeEngine(ExecutionMode.INTERPRETER,
+            ResourceLimits.DEFAULT.withTimeMillis(50)).execute(source);
+        assertEquals("Time limit exceeded: the program was stopped after 50 ms.", lastError(events));
+    }
+}
@@ -0,0 +1,71 @@
+package com.kidcode.core.evaluator;
+
+import com.kidcode.core.ExecutionMode;
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.event.ExecutionEvent;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class RopeTest {
+
+    private static final String PROGRAM = """
+            set text = "Cody"
+            repeat 100
+                set text = text + " draws"
+            end repeat
+            set fork = text + "!"
+            set other = text + "?"
+            set both = [fork, 7] + other
+            say fork
+            say other
+            say both
+            set name = "r" + "ed                                                               "
+            color name
+            """;
+
+    @Test
+    public void longConcatenationsKeepEveryVersion() {
+        String text = "Cody" + " draws".repeat(100);
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            List<ExecutionEvent> events = new KidCodeEngine(mode).execute(PROGRAM);
+            assertEquals(new ExecutionEvent.SayEvent(text + "!"), events.get(2), mode.name());
+            assertEquals(new ExecutionEvent.SayEvent(text + "?"), events.get(3), mode.name());
+            assertEquals(new ExecutionEvent.SayEvent("[" + text + "!, 7]" + text + "?"), events.get(4), mode.name());
+            assertEquals(new ExecutionEvent.SayEvent("Error: Unknown color 'red" + " ".repeat(63) + "'."), events.get(5), mode.name());
+        }
+    }
+
+    @Test
+    public void growsInPlaceOnlyAtTheEndOfItsBuffer() {
+        Governor governor = new Governor(ResourceLimits.DEFAULT, () -> false);
+        Object base = governor.concat("x".repeat(Rope.MIN_LENGTH), "y");
+        Object longer = governor.concat(base, "z");
+        Object fork = governor.concat(base, "w");
+        Object front = governor.concat("<", longer);
+        assertInstanceOf(Rope.class, base);
+        assertEquals("x".repeat(Rope.MIN_LENGTH) + "y", base.toString());
+        assertEquals("x".repeat(Rope.MIN_LENGTH) + "yz", longer.toString());
+        assertEquals("x".repeat(Rope.MIN_LENGTH) + "yw", fork.toString());
+        assertEquals("<" + longer, front.toString());
+        assertEquals(governor.concat(base, "z"), longer);
+        assertEquals("short", governor.concat("sho", "rt"));
+    }
+
+    @Test
+    public void stopsAtTheStringBudget() {
+        String source = """
+                set text = ""
+                repeat 1000
+                    set text = text + "abcdefghij"
+                end repeat
+                say text
+                """;
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            List<ExecutionEvent> events = new KidCodeEngine(mode, ResourceLimits.DEFAULT.withStringLength(5000)).execute(source);
+            assertEquals(new ExecutionEvent.ErrorEvent(
+                "Text limit exceeded: a string cannot be longer than 5000 characters."), events.get(events.size() - 1));
+            assertEquals(3, events.size());
+        }
+    }
+}
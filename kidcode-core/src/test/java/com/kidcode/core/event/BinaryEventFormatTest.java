@@ -0,0 +1,75 @@
+package com.kidcode.core.event;
+
+import com.kidcode.core.KidCodeEngine;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class BinaryEventFormatTest {
+
+    private static byte[] encode(List<ExecutionEvent> events) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BinaryEventWriter writer = new BinaryEventWriter(out)) {
+            events.forEach(writer::accept);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<ExecutionEvent> decode(byte[] bytes) throws IOException {
+        return new BinaryEventReader(new ByteArrayInputStream(bytes)).readAll();
+    }
+
+    @Test
+    public void roundTripsAProgram() throws IOException {
+        List<ExecutionEvent> events = new KidCodeEngine().execute("""
+                set colors = ["red", "green", "blue"]
+                set i = 0
+                repeat 30
+                    color colors[i - i / 3 * 3]
+                    move forward i * 7
+                    turn left 47
+                    if i == 10
+                        pen up
+                        say "half way"
+                    else
+                        pen down
+                    end if
+                    say "step " + i
+                    set i = i + 1
+                end repeat
+                say missing
+                """);
+        assertEquals(events, decode(encode(events)));
+    }
+
+    @Test
+    public void roundTripsUnusualValues() throws IOException {
+        List<ExecutionEvent> events = List.of(
+                new ExecutionEvent.ClearEvent(),
+                new ExecutionEvent.MoveEvent(-5, 100000, 7, -300000, 12.5, false, "purple"),
+                new ExecutionEvent.MoveEvent(1, 2, 1, 2, -0.0, true, "purple"),
+                new ExecutionEvent.MoveEvent(1, 2, 3, 4, 359, true, "black"),
+                new ExecutionEvent.SayEvent("héllo ☀"),
+                new ExecutionEvent.SayEvent("héllo ☀"),
+                new ExecutionEvent.ErrorEvent(""));
+        assertEquals(events, decode(encode(events)));
+    }
+
+    @Test
+    public void denseDrawingsAreAboutTenTimesSmallerThanJson() {
+        List<ExecutionEvent> events = new KidCodeEngine().execute("""
+                set n = 1
+                repeat 2000
+                    move forward n
+                    turn right 89
+                    set n = n + 1
+                end repeat
+                """);
+        // Jackson writes ~120 bytes per MoveEvent.
+        assertTrue(encode(events).length * 10 < events.size() * 120,
+                "binary size " + encode(events).length + " for " + events.size() + " events");
+    }
+}
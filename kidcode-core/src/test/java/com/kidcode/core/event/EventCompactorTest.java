@@ -0,0 +1,108 @@
+package com.kidcode.core.event;
+
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.event.ExecutionEvent.MoveEvent;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class EventCompactorTest {
+
+    private static List<ExecutionEvent> run(String program) {
+        return new KidCodeEngine().execute(program);
+    }
+
+    // Every canvas pixel an axis-aligned drawing covers, with its final color.
+    private static Set<String> pixels(List<ExecutionEvent> events) {
+        java.util.Map<String, String> painted = new java.util.HashMap<>();
+        for (ExecutionEvent event : events) {
+            if (event instanceof MoveEvent m && m.isPenDown()) {
+                int steps = Math.max(Math.abs(m.toX() - m.fromX()), Math.abs(m.toY() - m.fromY()));
+                for (int i = 0; i <= steps; i++) {
+                    int x = m.fromX() + Integer.signum(m.toX() - m.fromX()) * i;
+                    int y = m.fromY() + Integer.signum(m.toY() - m.fromY()) * i;
+                    painted.put(x + "," + y, m.color());
+                }
+            }
+        }
+        Set<String> result = new HashSet<>();
+        painted.forEach((p, c) -> result.add(p + "=" + c));
+        return result;
+    }
+
+    private static MoveEvent lastMove(List<ExecutionEvent> events) {
+        for (int i = events.size() - 1; i >= 0; i--) {
+            if (events.get(i) instanceof MoveEvent m) return m;
+        }
+        return null;
+    }
+
+    @Test
+    public void squaresDrawnRepeatedlyCollapseToFourSegments() {
+        List<ExecutionEvent> events = run("""
+                define square
+                    repeat 4
+                        repeat 5
+                            move forward 10
+                        end repeat
+                        turn right 90
+                    end repeat
+                end define
+                repeat 3
+                    square
+                end repeat
+                """);
+        List<ExecutionEvent> compacted = EventCompactor.compact(events);
+
+        long segments = compacted.stream().filter(e -> e instanceof MoveEvent m && EventCompactor.draws(m)).count();
+        assertEquals(4, segments);
+        assertEquals(pixels(events), pixels(compacted));
+        assertEquals(lastMove(events), lastMove(compacted));
+    }
+
+    @Test
+    public void keepsMessagesAndLaterPaintOrder() {
+        List<ExecutionEvent> events = run("""
+                move forward 20
+                say "one"
+                color "red"
+                turn right 90
+                move forward 20
+                turn right 180
+                move forward 20
+                color "blue"
+                move forward 20
+                pen up
+                move forward 50
+                say "two"
+                """);
+        List<ExecutionEvent> compacted = EventCompactor.compact(events);
+
+        assertEquals(pixels(events), pixels(compacted));
+        assertEquals(lastMove(events), lastMove(compacted));
+        assertEquals(List.of("one", "two"), compacted.stream()
+            .filter(e -> e instanceof ExecutionEvent.SayEvent)
+            .map(e -> ((ExecutionEvent.SayEvent) e).message()).toList());
+        assertTrue(compacted.size() < events.size());
+    }
+
+    @Test
+    public void simplifyStaysUnderTheTarget() {
+        List<ExecutionEvent> events = run("""
+                repeat 4
+                    repeat 120
+                        move forward 9
+                        turn right 3
+                    end repeat
+                    turn right 7
+                end repeat
+                """);
+        List<ExecutionEvent> simplified = EventCompactor.simplify(events, 100);
+
+        assertTrue(simplified.size() <= 100, "got " + simplified.size());
+        assertEquals(lastMove(events), lastMove(simplified));
+        assertTrue(EventCompactor.compact(events).size() > 200);
+    }
+}
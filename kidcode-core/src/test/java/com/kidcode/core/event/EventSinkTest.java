@@ -0,0 +1,61 @@
+package com.kidcode.core.event;
+
+import com.kidcode.core.KidCodeEngine;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class EventSinkTest {
+
+    private static final String PROGRAM = """
+            say "start"
+            repeat 4
+                move forward 20
+                turn right 90
+            end repeat
+            say missing
+            """;
+
+    private static class RecordingSink implements EventSink {
+        final List<ExecutionEvent> events = new ArrayList<>();
+        int closed = 0;
+
+        @Override
+        public void accept(ExecutionEvent event) {
+            assertEquals(0, closed, "event after close");
+            events.add(event);
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    @Test
+    public void sinkReceivesTheSameEventsAsTheList() {
+        RecordingSink sink = new RecordingSink();
+        new KidCodeEngine().execute(PROGRAM, sink);
+        assertEquals(new KidCodeEngine().execute(PROGRAM), sink.events);
+        assertEquals(1, sink.closed);
+    }
+
+    @Test
+    public void sinkIsClosedAfterParseErrors() {
+        RecordingSink sink = new RecordingSink();
+        new KidCodeEngine().execute("set = 5", sink);
+        assertInstanceOf(ExecutionEvent.ErrorEvent.class, sink.events.get(0));
+        assertEquals(1, sink.closed);
+    }
+
+    @Test
+    public void teeFeedsAndClosesBothSinks() {
+        RecordingSink first = new RecordingSink();
+        RecordingSink second = new RecordingSink();
+        new KidCodeEngine().execute(PROGRAM, EventSink.tee(first, second));
+        assertEquals(first.events, second.events);
+        assertEquals(1, first.closed);
+        assertEquals(1, second.closed);
+    }
+}
@@ -0,0 +1,84 @@
+package com.kidcode.core.lexer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.Test;
+
+public class LexerTest {
+
+    private static String corpus() throws IOException {
+        Path dir = Paths.get("..", "test_scripts");
+        if (!Files.isDirectory(dir)) {
+            dir = Paths.get("test_scripts");
+        }
+        StringBuilder source = new StringBuilder();
+        try (Stream<Path> scripts = Files.list(dir)) {
+            for (Path file : scripts.filter(p -> p.toString().endsWith(".kc")).sorted().toList()) {
+                source.append(Files.readString(file)).append('\n');
+            }
+        }
+        source.append("""
+                MOVE Forward 10
+                say "unclosed
+                set if_ = x != 3 ! 4
+                """);
+        return source.toString();
+    }
+
+    @Test
+    public void packedTokensMatchTokenRecords() throws IOException {
+        String source = corpus();
+        List<Token> expected = new Lexer(source).allTokens();
+        TokenBuffer packed = new Lexer(source).tokenize();
+
+        assertEquals(expected.size(), packed.size());
+        for (int i = 0; i < packed.size(); i++) {
+            assertEquals(expected.get(i), packed.token(i), "token " + i);
+        }
+    }
+
+    @Test
+    public void keywordsIgnoreCaseAndLookalikesAreIdentifiers() {
+        TokenBuffer tokens = new Lexer("Repeat REPEATS colour END define_ up").tokenize();
+        assertEquals(TokenType.REPEAT, tokens.type(0));
+        assertEquals(TokenType.IDENTIFIER, tokens.type(1));
+        assertEquals(TokenType.IDENTIFIER, tokens.type(2));
+        assertEquals(TokenType.END, tokens.type(3));
+        assertEquals(TokenType.IDENTIFIER, tokens.type(4));
+        assertEquals(TokenType.UP, tokens.type(5));
+        assertEquals("REPEATS", tokens.literal(1));
+    }
+
+    // Bytes this thread allocates while lexing the source 'runs' times.
+    private static long allocated(Runnable lex, int runs) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < runs; i++) {
+            lex.run();
+        }
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    @Test
+    public void tokenizeAllocatesLessThanHalfPerKilobyte() throws IOException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        String source = corpus().repeat(20);
+        Runnable records = () -> new Lexer(source).allTokens();
+        Runnable packed = () -> new Lexer(source).tokenize();
+        allocated(records, 20); // warm up
+        allocated(packed, 20);
+
+        double kilobytes = source.length() / 1024.0 * 10;
+        double recordsPerKb = allocated(records, 10) / kilobytes;
+        double packedPerKb = allocated(packed, 10) / kilobytes;
+        assertTrue(packedPerKb * 2 < recordsPerKb, String.format(
+            "Allocation per KB of source: Token records %.0f bytes, packed %.0f bytes", recordsPerKb, packedPerKb));
+    }
+}
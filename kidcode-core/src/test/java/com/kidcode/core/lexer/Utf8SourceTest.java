@@ -0,0 +1,59 @@
+package com.kidcode.core.lexer;
+
+import com.kidcode.core.KidCodeEngine;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class Utf8SourceTest {
+
+    private static final String PROGRAM = """
+            # Grüße 😀 from a comment
+            say "héllo, 世界 😀!"
+            set name = "Ünïcode"
+            repeat 3
+                move forward 10
+                say name
+            end repeat
+            say "done 🎉"
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void readsTheSameCharsAsAString() throws IOException {
+        Utf8Source source = new Utf8Source(ByteBuffer.wrap(PROGRAM.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(PROGRAM.length(), source.length());
+        for (int i = 0; i < PROGRAM.length(); i++) {
+            assertEquals(PROGRAM.charAt(i), source.charAt(i), "char " + i);
+        }
+        assertEquals(PROGRAM, source.toString());
+        int emoji = PROGRAM.indexOf("😀!");
+        assertEquals("😀!", source.subSequence(emoji, emoji + 3).toString());
+        assertEquals(PROGRAM.substring(emoji + 1, emoji + 3), source.subSequence(emoji + 1, emoji + 3).toString());
+        assertEquals(new Lexer(PROGRAM).allTokens(), new Lexer(source).allTokens());
+    }
+
+    @Test
+    public void engineRunsAMappedFile() throws IOException {
+        Path file = dir.resolve("program.kc");
+        Files.writeString(file, PROGRAM);
+        assertEquals(new KidCodeEngine().execute(PROGRAM), new KidCodeEngine().execute(file));
+    }
+
+    @Test
+    public void rejectsMalformedUtf8() {
+        byte[] truncated = { 's', 'a', 'y', ' ', '"', (byte) 0xE4, (byte) 0xB8 };
+        byte[] overlong = { (byte) 0xC0, (byte) 0xAF };
+        assertThrows(MalformedInputException.class, () -> new Utf8Source(ByteBuffer.wrap(truncated)));
+        assertThrows(MalformedInputException.class, () -> new Utf8Source(ByteBuffer.wrap(overlong)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.kidcode.core.parser;
+
+import com.kidcode.core.lexer.Lexer;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class ValidationSessionTest {
+
+    private static final String PROGRAM = """
+            # draw some shapes
+            define square size
+                repeat 4
+                    move forward size
+                    turn right 90
+                end repeat
+            end define
+            set x = 10
+            say "hello
+            world"
+            if x == 10
+                square x
+            else
+                pen sideways
+            end if
+            set = 3
+            """;
+
+    private static List<Diagnostic> fullParse(String source) {
+        Parser parser = new Parser(new Lexer(source));
+        parser.parseProgram();
+        return parser.getDiagnostics();
+    }
+
+    @Test
+    public void diagnosticsCarryLineAndColumn() {
+        ValidationSession session = new ValidationSession(PROGRAM);
+        assertEquals(List.of(
+            new Diagnostic("Expected 'up' or 'down' after 'pen'", 14, 9),
+            new Diagnostic("Expected '=' after variable name", 16, 7),
+            new Diagnostic("Invalid start of a statement: '3'", 16, 7)), session.diagnostics());
+        assertEquals(fullParse(PROGRAM), session.diagnostics());
+    }
+
+    @Test
+    public void randomEditsMatchAFullParse() {
+        String[] snippets = { "", "\n", " ", "move forward 5\n", "\"", "#", "end", "repeat 3\n", "=", "x", "12", "[1, 2]", "say \"a\"\n" };
+        Random random = new Random(42);
+        ValidationSession session = new ValidationSession(PROGRAM);
+        for (int i = 0; i < 2000; i++) {
+            String text = session.text();
+            int offset = random.nextInt(text.length() + 1);
+            int length = random.nextInt(Math.min(6, text.length() - offset) + 1);
+            String replacement = snippets[random.nextInt(snippets.length)];
+            session.edit(offset, length, replacement);
+
+            String expected = text.substring(0, offset) + replacement + text.substring(offset + length);
+            assertEquals(expected, session.text());
+            assertEquals(fullParse(expected), session.diagnostics(), "after edit " + i);
+        }
+    }
+
+    @Test
+    public void anEditInALongScriptOnlyTouchesItsNeighbourhood() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            source.append("move forward ").append(i).append("\nturn right 90\n");
+        }
+        ValidationSession session = new ValidationSession(source.toString());
+        int offset = source.indexOf("move forward 2500");
+
+        session.edit(offset, 4, "mvoe");
+        assertTrue(session.lastRelexedTokens < 10, "relexed " + session.lastRelexedTokens);
+        assertTrue(session.lastReparsedStatements < 10, "reparsed " + session.lastReparsedStatements);
+        assertEquals(fullParse(session.text()), session.diagnostics());
+        assertEquals(5001, session.diagnostics().get(0).lineNumber());
+
+        session.edit(offset, 4, "move");
+        assertEquals(List.of(), session.diagnostics());
+    }
+}
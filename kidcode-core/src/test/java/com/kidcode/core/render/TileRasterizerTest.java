@@ -0,0 +1,97 @@
+package com.kidcode.core.render;
+
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.event.ExecutionEvent;
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class TileRasterizerTest {
+
+    private static final String PROGRAM = """
+            set colors = ["red", "green", "blue", "purple"]
+            set i = 0
+            repeat 200
+                color colors[i - i / 4 * 4]
+                move forward i * 2
+                turn right 91
+                set i = i + 1
+            end repeat
+            """;
+
+    // The same drawing done in one pass on one thread.
+    private static BufferedImage renderDirectly(SegmentList segments, int scale) {
+        int size = TileRasterizer.CANVAS_SIZE * scale;
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(java.awt.Color.WHITE);
+        g.fillRect(0, 0, size, size);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.scale(scale, scale);
+        BasicStroke stroke = new BasicStroke(2f);
+        for (int i = 0; i < segments.size(); i++) {
+            g.setColor(TileRasterizer.toAwtColor(segments.palette().get(segments.colorIndex(i))));
+            g.fill(stroke.createStrokedShape(new Line2D.Float(segments.x1(i), segments.y1(i), segments.x2(i), segments.y2(i))));
+        }
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    public void tilesMatchASinglePassRender() {
+        SegmentList segments = SegmentList.of(new KidCodeEngine().execute(PROGRAM));
+        for (int scale : new int[] { 1, 2 }) {
+            BufferedImage tiled = new TileRasterizer(new ForkJoinPool(4)).render(segments, scale);
+            BufferedImage direct = renderDirectly(segments, scale);
+            assertEquals(direct.getWidth(), tiled.getWidth());
+            for (int y = 0; y < direct.getHeight(); y++) {
+                for (int x = 0; x < direct.getWidth(); x++) {
+                    assertEquals(direct.getRGB(x, y), tiled.getRGB(x, y), "pixel " + x + "," + y + " at scale " + scale);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void writesAReadablePng() throws IOException {
+        SegmentList segments = SegmentList.of(new KidCodeEngine().execute("move forward 100"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TileRasterizer().writePng(segments, 1, out);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(500, image.getWidth());
+        assertEquals(0x0000FF, image.getRGB(250, 200) & 0xFFFFFF);
+        assertEquals(0xFFFFFF, image.getRGB(100, 100) & 0xFFFFFF);
+    }
+
+    @Test
+    public void svgJoinsConnectedSegmentsIntoPolylines() {
+        List<ExecutionEvent> events = new KidCodeEngine().execute("""
+                repeat 4
+                    move forward 50
+                    turn right 90
+                end repeat
+                color "red"
+                move forward 10
+                """);
+        StringWriter out = new StringWriter();
+        try (SvgEventWriter svg = new SvgEventWriter(out, 1)) {
+            events.forEach(svg::accept);
+        }
+        String text = out.toString();
+        assertTrue(text.contains("<polyline stroke=\"blue\" points=\"250,250 250,200 300,200 300,250 250,250\"/>"), text);
+        assertTrue(text.contains("<polyline stroke=\"red\" points=\"250,250 250,240\"/>"), text);
+        assertTrue(text.endsWith("</svg>\n"));
+    }
+}
@@ -1,51 +1,88 @@
 package com.kidcode.cli;
 
 import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.batch.BatchRunner;
+import com.kidcode.core.batch.RunSummary;
+import com.kidcode.core.event.EventSink;
 import com.kidcode.core.event.ExecutionEvent;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
+// Runs one script, printing what Cody does, or, given a directory, every
+// *.kc file in it at once, printing one summary line per script (see
+// BatchRunner): how it ended, its event and segment counts, the bounding
+// box and the drawing hash, so two directories of submissions can be
+// compared with diff.
 public class CommandLineRunner {
     public static void main(String[] args) {
-        String sourceCode;
-        
+        if (args.length > 0 && Files.isDirectory(Paths.get(args[0]))) {
+            runDirectory(Paths.get(args[0]));
+            return;
+        }
+        KidCodeEngine engine = new KidCodeEngine();
+
+        // Print each event as soon as it happens instead of after the run.
+        EventSink printer = event -> {
+            if (event instanceof ExecutionEvent.SayEvent e) {
+                System.out.println("Cody says: " + e.message());
+            } else if (event instanceof ExecutionEvent.MoveEvent e) {
+                System.out.println("Cody moved to (" + e.toX() + ", " + e.toY() + ")");
+            } else if (event instanceof ExecutionEvent.ErrorEvent e) {
+                System.err.println("ERROR: " + e.errorMessage());
+            }
+        };
+
         if (args.length > 0) {
-            // Read from file
+            // Run the file straight from a memory mapping, so even very large
+            // generated scripts are never copied into a String.
+            System.out.println("--- Executing KidCode Script ---");
             try {
-                sourceCode = Files.readString(Paths.get(args[0]));
+                engine.execute(Paths.get(args[0]), printer);
             } catch (IOException e) {
                 System.err.println("Error reading file: " + e.getMessage());
                 return;
             }
         } else {
             // Default script
-            sourceCode = """
+            String sourceCode = """
                     say \"Running from the command line!\"
                     move forward 100
                     turn right 90
                     move forward 50
                     say \"Done.\"
                     """;
+            System.out.println("--- Executing KidCode Script ---");
+            engine.execute(sourceCode, printer);
         }
 
-        KidCodeEngine engine = new KidCodeEngine();
-        
-        System.out.println("--- Executing KidCode Script ---");
-        
-        List<ExecutionEvent> events = engine.execute(sourceCode);
-        
-        for (ExecutionEvent event : events) {
-            if (event instanceof ExecutionEvent.SayEvent e) {
-                System.out.println("Cody says: " + e.message());
-            } else if (event instanceof ExecutionEvent.MoveEvent e) {
-                System.out.println("Cody moved to (" + e.toX() + ", " + e.toY() + ")");
-            } else if (event instanceof ExecutionEvent.ErrorEvent e) {
-                System.err.println("ERROR: " + e.errorMessage());
+        System.out.println("--- Script Finished ---");
+    }
+
+    private static void runDirectory(Path dir) {
+        List<RunSummary> summaries;
+        try {
+            summaries = new BatchRunner().run(BatchRunner.programs(dir));
+        } catch (IOException e) {
+            System.err.println("Error reading directory: " + e.getMessage());
+            return;
+        }
+        for (RunSummary summary : summaries) {
+            RunSummary.Bounds b = summary.bounds();
+            String outcome = summary.outcome().name().toLowerCase(Locale.ROOT)
+                + ((summary.exhausted() != null) ? "(" + summary.exhausted().name().toLowerCase(Locale.ROOT) + ")" : "");
+            System.out.printf("%-32s %-22s %8d events %6d segments  %-24s %s  %d ms%n",
+                summary.id(), outcome, summary.events(), summary.segments(),
+                (b != null) ? "(" + b.minX() + "," + b.minY() + ")-(" + b.maxX() + "," + b.maxY() + ")" : "-",
+                summary.drawingHash(), TimeUnit.NANOSECONDS.toMillis(summary.nanos()));
+            for (String error : summary.errors()) {
+                System.out.println("    ERROR: " + error);
             }
         }
-        
-        System.out.println("--- Script Finished ---");
+        System.out.println("--- " + summaries.size() + " scripts ---");
     }
-} 
\ No newline at end of file
+}
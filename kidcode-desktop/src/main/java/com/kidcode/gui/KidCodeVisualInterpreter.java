@@ -1,7 +1,8 @@
 package com.kidcode.gui;
 
+import com.kidcode.core.ExecutionHandle;
 import com.kidcode.core.KidCodeEngine;
-import com.kidcode.core.evaluator.Evaluator;
+import com.kidcode.core.event.EventSink;
 import com.kidcode.core.event.ExecutionEvent;
 
 import javax.swing.*;
@@ -19,6 +20,7 @@ public class KidCodeVisualInterpreter extends JFrame {
     private final RSyntaxTextArea codeArea;
     private final JTextArea outputArea;
     private final KidCodeEngine engine;
+    private volatile ExecutionHandle currentRun; // the run the Stop button stops
 
     public KidCodeVisualInterpreter() {
         this.engine = new KidCodeEngine();
@@ -68,10 +70,13 @@ public class KidCodeVisualInterpreter extends JFrame {
 
         JPanel buttonPanel = new JPanel(new FlowLayout());
         JButton runButton = new JButton("Run Code");
-        runButton.addActionListener(e -> new Thread(this::runCode).start());
+        runButton.addActionListener(e -> runCode());
         buttonPanel.add(runButton);
         JButton stopButton = new JButton("Stop");
-        stopButton.addActionListener(e -> engine.stopExecution());
+        stopButton.addActionListener(e -> {
+            ExecutionHandle run = currentRun;
+            if (run != null) run.cancel();
+        });
         buttonPanel.add(stopButton);
         controlPanel.add(buttonPanel, BorderLayout.SOUTH);
 
@@ -127,26 +132,51 @@ public class KidCodeVisualInterpreter extends JFrame {
 
     private void runCode() {
         String code = codeArea.getText();
-        List<ExecutionEvent> events = engine.execute(code);
-        SwingUtilities.invokeLater(() -> {
-            for (ExecutionEvent event : events) {
-                if (event instanceof ExecutionEvent.ClearEvent) {
+        currentRun = engine.start(code, new SwingEventSink());
+    }
+
+    private void render(ExecutionEvent event) {
+        if (event instanceof ExecutionEvent.ClearEvent) {
             drawingPanel.clear();
             outputArea.setText("");
-                } else if (event instanceof ExecutionEvent.MoveEvent e) {
-                    if (e.isPenDown() && (e.fromX() != e.toX() || e.fromY() != e.toY())) {
-                        drawingPanel.drawLine(e.fromX(), e.fromY(), e.toX(), e.toY(), parseAwtColor(e.color()));
-                    }
-                    drawingPanel.updateCodyState(e.toX(), e.toY(), e.newDirection());
-                } else if (event instanceof ExecutionEvent.SayEvent e) {
-                    outputArea.setForeground(Color.BLACK);
-                    outputArea.append("Cody says: " + e.message() + "\n");
-                } else if (event instanceof ExecutionEvent.ErrorEvent e) {
-                    outputArea.setForeground(Color.RED);
-                    outputArea.append("ERROR: " + e.errorMessage() + "\n");
-                }
+        } else if (event instanceof ExecutionEvent.MoveEvent e) {
+            if (e.isPenDown() && (e.fromX() != e.toX() || e.fromY() != e.toY())) {
+                drawingPanel.drawLine(e.fromX(), e.fromY(), e.toX(), e.toY(), parseAwtColor(e.color()));
             }
-        });
+            drawingPanel.updateCodyState(e.toX(), e.toY(), e.newDirection());
+        } else if (event instanceof ExecutionEvent.SayEvent e) {
+            outputArea.setForeground(Color.BLACK);
+            outputArea.append("Cody says: " + e.message() + "\n");
+        } else if (event instanceof ExecutionEvent.ErrorEvent e) {
+            outputArea.setForeground(Color.RED);
+            outputArea.append("ERROR: " + e.errorMessage() + "\n");
+        }
+    }
+
+    /**
+     * Hands events to the Swing thread in batches while the program is still
+     * running, so drawing starts right away and the run's events are never
+     * all held in memory at once.
+     */
+    private class SwingEventSink implements EventSink {
+        private static final int BATCH_SIZE = 512;
+        private List<ExecutionEvent> batch = new ArrayList<>(BATCH_SIZE);
+
+        @Override
+        public void accept(ExecutionEvent event) {
+            batch.add(event);
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (batch.isEmpty()) return;
+            List<ExecutionEvent> ready = batch;
+            batch = new ArrayList<>(BATCH_SIZE);
+            SwingUtilities.invokeLater(() -> ready.forEach(KidCodeVisualInterpreter.this::render));
+        }
     }
     
     private void openFile() {
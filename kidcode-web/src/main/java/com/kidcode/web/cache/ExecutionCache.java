@@ -0,0 +1,291 @@
+package com.kidcode.web.cache;
+
+import com.kidcode.core.event.BinaryEventReader;
+import com.kidcode.core.event.BinaryEventWriter;
+import com.kidcode.core.event.EventSink;
+import com.kidcode.core.event.ExecutionEvent;
+import com.kidcode.core.evaluator.ResourceLimits;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Remembers the events of finished runs, keyed by a hash of the program and
+// its options. KidCode programs are deterministic, so the same source always
+// produces the same events and a repeated run (the classroom demo hit 30
+// times in a minute) can be answered without executing anything.
+//
+//   - Entries are stored in BinaryEventFormat, about a tenth of the JSON, and
+//     kept in an LRU bounded by total bytes (kidcode.cache.max-bytes). A run
+//     bigger than max-bytes / 8 is streamed as usual but not kept.
+//   - Identical requests arriving while the first is still running wait for
+//     it instead of running again (single flight). The first one still
+//     streams live; the others get the finished result.
+//   - With kidcode.cache.dir set, entries are also written there and survive
+//     a restart, up to kidcode.cache.disk-max-bytes (oldest files go first).
+//
+// The cache is best effort: a disk error is logged and treated as a miss.
+@Component
+public class ExecutionCache {
+    private static final Logger log = LoggerFactory.getLogger(ExecutionCache.class);
+
+    // Part of every key; bump it when the engine's output for a program changes.
+    private static final String VERSION = "1";
+    private static final String FILE_SUFFIX = ".kce";
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final Path dir;
+    private final long diskMaxBytes;
+
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    public ExecutionCache(@Value("${kidcode.cache.max-bytes:67108864}") long maxBytes,
+                          @Value("${kidcode.cache.dir:}") String dir,
+                          @Value("${kidcode.cache.disk-max-bytes:536870912}") long diskMaxBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 8;
+        this.diskMaxBytes = diskMaxBytes;
+        this.dir = dir.isBlank() ? null : openDirectory(Path.of(dir));
+    }
+
+    // The content address of a run: SHA-256 over the source, every option
+    // that changes the events, and the limits it runs under, since the disk
+    // tier outlives a change to the server's budgets. A null source is the
+    // empty program.
+    public static String key(String code, boolean compact, int maxEvents, ResourceLimits limits) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((VERSION + '\0' + compact + '\0' + maxEvents + '\0' + limits + '\0').getBytes(StandardCharsets.UTF_8));
+            digest.update(((code != null) ? code : "").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM has SHA-256
+        }
+    }
+
+    // Produces a run's events into the sink and closes it, as
+    // KidCodeEngine.execute does. Returns false if the events depend on more
+    // than the key (e.g. the run hit a wall-clock deadline), so they are not kept.
+    @FunctionalInterface
+    public interface Run {
+        boolean execute(EventSink sink);
+    }
+
+    // Sends the events for 'key' to 'out' and closes it. On a miss, 'run' is
+    // called with a sink that reaches 'out' and records the events.
+    public void execute(String key, Run run, EventSink out) {
+        byte[] cached = get(key);
+        if (cached != null) {
+            replay(cached, out);
+            return;
+        }
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            byte[] result = leader.exceptionally(e -> null).join();
+            if (result != null) {
+                replay(result, out);
+            } else {
+                run.execute(out); // the leader failed or its result was not kept
+            }
+            return;
+        }
+
+        byte[] result = null;
+        try {
+            Recording recording = new Recording(maxEntryBytes);
+            boolean keep = run.execute(EventSink.tee(out, new BinaryEventWriter(recording)));
+            result = keep ? recording.result() : null;
+            if (result != null) {
+                put(key, result);
+            }
+        } finally {
+            inFlight.remove(key, mine);
+            mine.complete(result);
+        }
+    }
+
+    // Whether a result for 'key' is already stored, without running anything.
+    public boolean contains(String key) {
+        synchronized (this) {
+            if (entries.containsKey(key)) return true;
+        }
+        return dir != null && Files.exists(file(key));
+    }
+
+    // Sends stored events (from get()) to 'out' and closes it.
+    public static void replay(byte[] bytes, EventSink out) {
+        try (out) {
+            BinaryEventReader reader = new BinaryEventReader(new ByteArrayInputStream(bytes));
+            for (ExecutionEvent event = reader.read(); event != null; event = reader.read()) {
+                out.accept(event);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // --- Memory tier ---
+
+    // The stored events for 'key', or null; nothing is run.
+    public byte[] get(String key) {
+        synchronized (this) {
+            byte[] bytes = entries.get(key);
+            if (bytes != null) return bytes;
+        }
+        byte[] bytes = readFile(key);
+        if (bytes != null) {
+            remember(key, bytes);
+        }
+        return bytes;
+    }
+
+    private void put(String key, byte[] bytes) {
+        remember(key, bytes);
+        writeFile(key, bytes);
+    }
+
+    private synchronized void remember(String key, byte[] bytes) {
+        byte[] previous = entries.put(key, bytes);
+        totalBytes += bytes.length - (previous != null ? previous.length : 0);
+        Iterator<byte[]> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    // --- Disk tier ---
+
+    private Path openDirectory(Path path) {
+        try {
+            Files.createDirectories(path);
+            try (Stream<Path> files = Files.list(path)) {
+                diskBytes.set(files.filter(p -> p.toString().endsWith(FILE_SUFFIX)).mapToLong(ExecutionCache::size).sum());
+            }
+            return path;
+        } catch (IOException e) {
+            log.warn("Disk cache disabled, cannot use {}: {}", path, e.toString());
+            return null;
+        }
+    }
+
+    private Path file(String key) {
+        return dir.resolve(key + FILE_SUFFIX);
+    }
+
+    private byte[] readFile(String key) {
+        if (dir == null) return null;
+        try {
+            return Files.readAllBytes(file(key));
+        } catch (java.nio.file.NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Cannot read cached run {}: {}", key, e.toString());
+            return null;
+        }
+    }
+
+    private void writeFile(String key, byte[] bytes) {
+        if (dir == null) return;
+        try {
+            // Written under a temporary name and moved, so a reader never sees half a file.
+            Path temp = Files.createTempFile(dir, key, ".tmp");
+            Files.write(temp, bytes);
+            long replaced = size(file(key));
+            Files.move(temp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (diskBytes.addAndGet(bytes.length - replaced) > diskMaxBytes) {
+                trimDisk();
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write cached run {}: {}", key, e.toString());
+        }
+    }
+
+    private synchronized void trimDisk() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(p -> p.toString().endsWith(FILE_SUFFIX))
+                .sorted(Comparator.comparingLong(ExecutionCache::lastModified))
+                .toList();
+        }
+        for (Path path : files) {
+            if (diskBytes.get() <= diskMaxBytes) break;
+            long size = size(path);
+            if (Files.deleteIfExists(path)) {
+                diskBytes.addAndGet(-size);
+            }
+        }
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // The encoded events of the leader's run, dropped once they pass the limit.
+    private static final class Recording extends ByteArrayOutputStream {
+        private final long limit;
+        private boolean overflowed = false;
+
+        Recording(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (overflowed) return;
+            if (count + (long) len > limit) {
+                overflowed = true;
+                buf = new byte[0];
+                count = 0;
+                return;
+            }
+            super.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        byte[] result() {
+            return overflowed ? null : toByteArray();
+        }
+    }
+}
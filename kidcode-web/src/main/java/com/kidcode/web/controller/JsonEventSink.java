@@ -0,0 +1,88 @@
+package com.kidcode.web.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kidcode.core.event.EventSink;
+import com.kidcode.core.event.ExecutionEvent;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+// Writes events to the response with Jackson's streaming generator as the
+// engine produces them, so the server never builds the whole result.
+//
+// Two framings:
+//   - array: the JSON array /api/execute has always returned; bytes go out
+//     whenever the servlet buffer fills,
+//   - NDJSON: one event per line, flushed every FLUSH_EVERY events so the
+//     client can start drawing while the program is still running.
+class JsonEventSink implements EventSink {
+    static final int FLUSH_EVERY = 256;
+
+    private final JsonGenerator generator;
+    private final ObjectWriter writer;
+    private final boolean lineDelimited;
+    private int unflushed = 0;
+
+    private JsonEventSink(ObjectMapper mapper, OutputStream out, boolean lineDelimited) throws IOException {
+        // Typed writer so every event gets its "type" property, and no flush
+        // per event: this class decides when bytes go out.
+        this.writer = mapper.writerFor(ExecutionEvent.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = mapper.getFactory().createGenerator(out);
+        this.lineDelimited = lineDelimited;
+        if (lineDelimited) {
+            // Each line ends with '\n' instead of Jackson's default " " between root values.
+            generator.setRootValueSeparator(null);
+        } else {
+            generator.writeStartArray();
+        }
+    }
+
+    static JsonEventSink array(ObjectMapper mapper, OutputStream out) throws IOException {
+        return new JsonEventSink(mapper, out, false);
+    }
+
+    static JsonEventSink ndjson(ObjectMapper mapper, OutputStream out) throws IOException {
+        return new JsonEventSink(mapper, out, true);
+    }
+
+    @Override
+    public void accept(ExecutionEvent event) {
+        try {
+            writer.writeValue(generator, event);
+            if (lineDelimited) {
+                generator.writeRaw('\n');
+                if (++unflushed >= FLUSH_EVERY) {
+                    flush();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            generator.flush();
+            unflushed = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (!lineDelimited) {
+                generator.writeEndArray();
+            }
+            generator.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,12 +1,45 @@
 package com.kidcode.web.controller;
 
-import com.kidcode.core.KidCodeEngine;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kidcode.core.ExecutionHandle;
+import com.kidcode.core.batch.BatchRunner;
+import com.kidcode.core.batch.RunSummary;
+import com.kidcode.core.event.BinaryEventFormat;
+import com.kidcode.core.event.BinaryEventWriter;
+import com.kidcode.core.event.EventCompactor;
+import com.kidcode.core.event.EventSink;
 import com.kidcode.core.event.ExecutionEvent;
+import com.kidcode.core.evaluator.LineProfile;
 import com.kidcode.core.lexer.Lexer;
+import com.kidcode.core.parser.Diagnostic;
 import com.kidcode.core.parser.Parser;
+import com.kidcode.core.render.SegmentList;
+import com.kidcode.core.render.SvgEventWriter;
+import com.kidcode.core.render.TileRasterizer;
+import com.kidcode.web.cache.ExecutionCache;
+import com.kidcode.web.execution.ExecutionMetrics;
+import com.kidcode.web.execution.ExecutionService;
+import com.kidcode.web.validation.ValidationSessions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api") // All routes in this controller will start with /api
@@ -14,24 +47,290 @@ public class KidCodeController {
 
     // A private record to define the structure of our expected JSON request body.
     // Spring Boot will automatically deserialize {"code": "..."} into this object.
-    private record CodeExecutionRequest(String code) {}
+    // Optional: "compact": true drops redundant events without changing the
+    // drawing; "maxEvents": n also simplifies paths to stay under n events.
+    // Both need the whole run first, so the response starts after it ends.
+    private record CodeExecutionRequest(String code, Boolean compact, Integer maxEvents) {}
 
     // A record for the validation error response
-    public record ValidationError(String message, int lineNumber) {}
+    public record ValidationError(String message, int lineNumber, int column) {}
 
-    @PostMapping("/execute")
-    public List<ExecutionEvent> executeCode(@RequestBody CodeExecutionRequest request) {
-        // Check for null or empty code to be safe
-        if (request.code() == null || request.code().trim().isEmpty()) {
-            return List.of(new ExecutionEvent.ErrorEvent("Code cannot be empty."));
+    private final ObjectMapper objectMapper;
+    private final ExecutionCache cache;
+    private final ValidationSessions validationSessions;
+    private final ExecutionService executions;
+    private final ExecutionMetrics metrics;
+    private final int maxBatchPrograms;
+
+    public KidCodeController(ObjectMapper objectMapper, ExecutionCache cache, ValidationSessions validationSessions,
+                             ExecutionService executions, ExecutionMetrics metrics,
+                             @Value("${kidcode.batch.max-programs:1000}") int maxBatchPrograms) {
+        this.objectMapper = objectMapper;
+        this.cache = cache;
+        this.validationSessions = validationSessions;
+        this.executions = executions;
+        this.metrics = metrics;
+        this.maxBatchPrograms = maxBatchPrograms;
+    }
+
+    // Opens the sink that writes one response format onto the servlet stream.
+    private interface SinkFactory {
+        EventSink open(OutputStream out) throws IOException;
+    }
+
+    @PostMapping(value = "/execute", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> executeCode(@RequestBody CodeExecutionRequest request,
+                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Events are written to the response while the program runs, so the
+        // server never holds the whole result in memory.
+        return respond(request, ifNoneMatch, MediaType.APPLICATION_JSON, "json",
+            out -> JsonEventSink.array(objectMapper, out));
+    }
+
+    // Same events, one JSON object per line, flushed in chunks so the client
+    // can draw while execution is still running. Chosen with
+    // "Accept: application/x-ndjson".
+    @PostMapping(value = "/execute", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> executeCodeStreaming(@RequestBody CodeExecutionRequest request,
+                                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return respond(request, ifNoneMatch, MediaType.APPLICATION_NDJSON, "ndjson",
+            out -> JsonEventSink.ndjson(objectMapper, out));
+    }
+
+    // Same events in the compact BinaryEventFormat (delta-encoded varints,
+    // color palette, text table), about a tenth of the JSON size. Chosen with
+    // "Accept: application/x-kidcode-events".
+    @PostMapping(value = "/execute", produces = BinaryEventFormat.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> executeCodeBinary(@RequestBody CodeExecutionRequest request,
+                                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return respond(request, ifNoneMatch, MediaType.parseMediaType(BinaryEventFormat.MEDIA_TYPE), "bin",
+            out -> new BinaryEventWriter(out, JsonEventSink.FLUSH_EVERY));
+    }
+
+    // A result already in the ExecutionCache is replayed from the bytes
+    // looked up here, with an ETag derived from the program and its options;
+    // a client sending it back in If-None-Match gets a 304 while the result
+    // is still cached. Anything else may run fresh, so it has no ETag: the
+    // run may be cut short (a deadline, a DELETE), and only the cache knows
+    // afterwards whether it was complete. A run gets a 503 if the execution
+    // queue is full.
+    private ResponseEntity<StreamingResponseBody> respond(CodeExecutionRequest request, String ifNoneMatch,
+                                                          MediaType type, String variant, SinkFactory sinks) {
+        if (isBlank(request.code())) {
+            // Nothing to run or cache: the response is just the error.
+            StreamingResponseBody body = out -> {
+                ExecutionMetrics.ByteCounter counted = metrics.countBytes(out);
+                try (EventSink sink = sinks.open(counted)) {
+                    sink.accept(new ExecutionEvent.ErrorEvent(EMPTY_CODE));
+                }
+                metrics.recordResponse(counted);
+            };
+            return ResponseEntity.ok().contentType(type).body(body);
+        }
+        boolean compact = Boolean.TRUE.equals(request.compact());
+        int maxEvents = (request.maxEvents() != null) ? request.maxEvents() : 0;
+        String key = ExecutionCache.key(request.code(), compact, maxEvents, executions.limits());
+        String eTag = "\"" + key.substring(0, 32) + "-" + variant + "\"";
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            if (matches(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+            StreamingResponseBody body = out -> {
+                ExecutionMetrics.ByteCounter counted = metrics.countBytes(out);
+                ExecutionCache.replay(cached, sinks.open(counted));
+                metrics.recordResponse(counted);
+            };
+            return ResponseEntity.ok().contentType(type).eTag(eTag).body(body);
+        }
+        if (executions.isSaturated()) {
+            return busy();
+        }
+        String id = track();
+        StreamingResponseBody body = out -> {
+            ExecutionMetrics.ByteCounter counted = metrics.countBytes(out);
+            cache.execute(key, sink -> run(id, request, sink), sinks.open(counted));
+            metrics.recordResponse(counted);
+        };
+        return ResponseEntity.ok().contentType(type).header(EXECUTION_ID_HEADER, id).body(body);
+    }
+
+    // Sent when the execution queue is full; the client should try again shortly.
+    private <T> ResponseEntity<T> busy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(executions.retryAfterSeconds()))
+            .build();
+    }
+
+    // The queue filled up between the check above and the hand-off to the pool.
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> executionRejected() {
+        return busy();
+    }
+
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+            if (candidate.equals(eTag) || candidate.equals("*")) return true;
+        }
+        return false;
+    }
+
+    private static final String EMPTY_CODE = "Code cannot be empty.";
+
+    // Blank programs are turned away before the cache, so no endpoint ever
+    // stores a result under their key.
+    private static boolean isBlank(String code) {
+        return code == null || code.isBlank();
+    }
+
+    private boolean run(String id, CodeExecutionRequest request, EventSink sink) {
+        int maxEvents = (request.maxEvents() != null) ? request.maxEvents() : 0;
+        if (Boolean.TRUE.equals(request.compact()) || maxEvents > 0) {
+            sink = EventCompactor.compacting(sink, maxEvents);
+        }
+
+        return executions.run(id, request.code(), sink);
+    }
+
+    private static final int MAX_RENDER_SCALE = 4;
+    private final TileRasterizer rasterizer = new TileRasterizer();
+
+    // Runs the program on the server and returns only the picture, as PNG
+    // (rasterized in parallel tiles) or SVG (streamed while it runs), so
+    // thumbnails and grading never download the event list. Messages and
+    // errors are not part of the image; blank code is a 400.
+    @PostMapping("/render")
+    public ResponseEntity<StreamingResponseBody> renderCode(@RequestBody CodeExecutionRequest request,
+                                                            @RequestParam(defaultValue = "png") String format,
+                                                            @RequestParam(defaultValue = "1") int scale) {
+        int clampedScale = Math.max(1, Math.min(MAX_RENDER_SCALE, scale));
+        if (isBlank(request.code())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, EMPTY_CODE);
+        }
+        String code = request.code();
+        String key = ExecutionCache.key(code, false, 0, executions.limits());
+        if (executions.isSaturated()) {
+            return busy();
+        }
+        String id = track();
+        ExecutionCache.Run run = sink -> executions.run(id, code, sink);
+        if (format.equalsIgnoreCase("svg")) {
+            StreamingResponseBody body = out -> {
+                ExecutionMetrics.ByteCounter counted = metrics.countBytes(out);
+                cache.execute(key, run, new SvgEventWriter(new OutputStreamWriter(counted, StandardCharsets.UTF_8), clampedScale));
+                metrics.recordResponse(counted);
+            };
+            return ResponseEntity.ok().contentType(MediaType.valueOf("image/svg+xml")).header(EXECUTION_ID_HEADER, id).body(body);
+        }
+        StreamingResponseBody body = out -> {
+            SegmentList segments = new SegmentList();
+            cache.execute(key, run, segments::add);
+            ExecutionMetrics.ByteCounter counted = metrics.countBytes(out);
+            rasterizer.writePng(segments, clampedScale, counted);
+            metrics.recordResponse(counted);
+        };
+        return ResponseEntity.ok().contentType(MediaType.IMAGE_PNG).header(EXECUTION_ID_HEADER, id).body(body);
+    }
+
+    // Runs the program with the per-line profiler (see LineProfiler) and
+    // returns, for every line that ran, how often, for how long and how many
+    // events it sent, for the editor's heat-map. The drawing itself is not
+    // sent; errors are, so a run that timed out says so. Never cached, since
+    // the times differ on every run.
+    public record ProfileResponse(List<LineProfile.Line> lines, long totalNanos, String exhausted, List<String> errors) {}
+
+    private static final int MAX_PROFILE_ERRORS = 20;
+
+    @PostMapping(value = "/profile", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> profileCode(@RequestBody CodeExecutionRequest request) {
+        String code = (request.code() != null) ? request.code() : "";
+        if (executions.isSaturated()) {
+            return busy();
         }
+        String id = track();
+        StreamingResponseBody body = out -> {
+            List<String> errors = new ArrayList<>();
+            ExecutionService.Profiled profiled = executions.profile(id, code, event -> {
+                if (event instanceof ExecutionEvent.ErrorEvent error && errors.size() < MAX_PROFILE_ERRORS) {
+                    errors.add(error.errorMessage());
+                }
+            });
+            LineProfile profile = profiled.profile();
+            String exhausted = (profiled.exhausted() != null) ? profiled.exhausted().name().toLowerCase(Locale.ROOT) : null;
+            ExecutionMetrics.ByteCounter counted = metrics.countBytes(out);
+            objectMapper.writeValue(counted, new ProfileResponse(profile.lines(), profile.totalNanos(), exhausted, errors));
+            metrics.recordResponse(counted);
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).header(EXECUTION_ID_HEADER, id).body(body);
+    }
+
+    // --- Following and cancelling runs ---
+    // Every /api/execute, /api/render and /api/profile response carries the
+    // id of its run in X-Execution-Id. While the response is still being
+    // produced, GET shows how far the run has got and DELETE stops it: the
+    // response ends with what was sent so far. Both are 404 once the
+    // request is over.
+    private static final String EXECUTION_ID_HEADER = "X-Execution-Id";
+
+    public record ExecutionProgress(String id, long instructions, long events, boolean cancelled) {}
+
+    @GetMapping("/executions/{id}")
+    public ResponseEntity<ExecutionProgress> executionProgress(@PathVariable String id) {
+        ExecutionHandle handle = executions.handle(id);
+        if (handle == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new ExecutionProgress(id, handle.instructions(), handle.events(), handle.isCancelled()));
+    }
+
+    @DeleteMapping("/executions/{id}")
+    public ResponseEntity<Void> cancelExecution(@PathVariable String id) {
+        return executions.cancel(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    // Registers this request's run, and marks the request with it so the run
+    // is released when the request ends (see ExecutionConfig).
+    private String track() {
+        String id = executions.track();
+        RequestContextHolder.currentRequestAttributes()
+            .setAttribute(ExecutionService.EXECUTION_ID, id, RequestAttributes.SCOPE_REQUEST);
+        return id;
+    }
+
+    // Runs many programs at once (say, every submission for an assignment)
+    // and returns one RunSummary per program, in order: how it ended, event
+    // and segment counts, bounding box and the drawing hash to compare with
+    // a reference solution's. A program may ask for a lower instruction
+    // budget or deadline than the server's, never a higher one. Programs
+    // without an id are numbered from 0. More than kidcode.batch.max-programs
+    // is a 400; a full execution queue a 503, as for the other endpoints.
+    private record BatchProgram(String id, String code, Long maxInstructions, Long deadlineMs) {}
+    private record BatchRequest(List<BatchProgram> programs) {}
 
-        // Instantiate our engine from the core module
-        KidCodeEngine engine = new KidCodeEngine();
+    private static final long BATCH_MARGIN_MILLIS = 60_000;
 
-        // Execute the code and return the list of events.
-        // Spring Boot will handle converting this list into a JSON array.
-        return engine.execute(request.code());
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public WebAsyncTask<List<RunSummary>> batch(@RequestBody BatchRequest request) {
+        List<BatchProgram> requested = (request.programs() != null) ? request.programs() : List.of();
+        if (requested.size() > maxBatchPrograms) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "A batch can have at most " + maxBatchPrograms + " programs.");
+        }
+        if (executions.isSaturated()) {
+            throw new TaskRejectedException("Execution queue is full");
+        }
+        List<BatchRunner.Program> programs = new ArrayList<>(requested.size());
+        for (int i = 0; i < requested.size(); i++) {
+            BatchProgram program = requested.get(i);
+            programs.add(new BatchRunner.Program((program.id() != null) ? program.id() : String.valueOf(i),
+                (program.code() != null) ? program.code() : "",
+                executions.limits(program.maxInstructions(), program.deadlineMs())));
+        }
+        long timeout = executions.batchDeadlineMillis(programs.size()) + BATCH_MARGIN_MILLIS;
+        return new WebAsyncTask<>(timeout, executions.executor(), () -> executions.batch(programs));
     }
 
     // --- NEW VALIDATION ENDPOINT ---
@@ -44,23 +343,56 @@ public class KidCodeController {
         Lexer lexer = new Lexer(request.code());
         Parser parser = new Parser(lexer);
         parser.parseProgram(); // This populates the error list in the parser
+        return toValidationErrors(parser.getDiagnostics());
+    }
+
+    // --- Incremental validation ---
+    // The editor opens a session with the whole document once, then sends
+    // only its edits (Monaco content changes, in the order they apply). The
+    // server re-lexes and re-parses just the part each edit touches.
+    private record OpenSessionRequest(String code, int version) {}
+    private record TextChange(int rangeOffset, int rangeLength, String text) {}
+    private record EditSessionRequest(int baseVersion, int version, List<TextChange> changes) {}
+    public record ValidationResult(String sessionId, int version, List<ValidationError> errors) {}
+
+    @PostMapping("/validate/sessions")
+    public ValidationResult openValidationSession(@RequestBody OpenSessionRequest request) {
+        String code = (request.code() != null) ? request.code() : "";
+        ValidationSessions.Entry entry = validationSessions.open(code, request.version());
+        return new ValidationResult(entry.id(), request.version(), toValidationErrors(entry.session().diagnostics()));
+    }
+
+    // 404 when the session has expired and 409 when the edits do not start
+    // from the version the server has; either way the editor opens a new one.
+    @PostMapping("/validate/sessions/{id}")
+    public ResponseEntity<ValidationResult> editValidationSession(@PathVariable String id,
+                                                                  @RequestBody EditSessionRequest request) {
+        ValidationSessions.Entry entry = validationSessions.get(id);
+        if (entry == null) {
+            return ResponseEntity.notFound().build();
+        }
+        synchronized (entry) {
+            if (entry.version() != request.baseVersion()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            try {
+                for (TextChange change : (request.changes() != null) ? request.changes() : List.<TextChange>of()) {
+                    entry.session().edit(change.rangeOffset(), change.rangeLength(),
+                        (change.text() != null) ? change.text() : "");
+                }
+            } catch (IllegalArgumentException e) {
+                entry.setVersion(-1); // out of step with the editor; only a new session can fix it
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            entry.setVersion(request.version());
+            return ResponseEntity.ok(new ValidationResult(id, request.version(),
+                toValidationErrors(entry.session().diagnostics())));
+        }
+    }
 
-        // Convert the parser's string errors into structured ValidationError objects
-        return parser.getErrors().stream()
-                .map(errorString -> {
-                    // Simple parsing to extract line number. Example error: "Error line 5: ..."
-                    int lineNumber = 1; // Default
-                    try {
-                        String[] parts = errorString.split(":");
-                        String linePart = parts[0].replaceAll("\\D+", "");
-                        if (!linePart.isEmpty()) {
-                            lineNumber = Integer.parseInt(linePart);
-                        }
-                    } catch (Exception e) {
-                        // Ignore parsing errors, just use line 1
-                    }
-                    return new ValidationError(errorString, lineNumber);
-                })
+    private static List<ValidationError> toValidationErrors(List<Diagnostic> diagnostics) {
+        return diagnostics.stream()
+                .map(d -> new ValidationError(d.message(), Math.max(1, d.lineNumber()), Math.max(1, d.column())))
                 .toList();
     }
-} 
\ No newline at end of file
+}
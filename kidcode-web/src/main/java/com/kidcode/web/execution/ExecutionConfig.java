@@ -0,0 +1,41 @@
+package com.kidcode.web.execution;
+
+import java.util.concurrent.Callable;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Streaming responses run on the ExecutionService pool instead of Spring's
+// default async executor. The async timeout leaves room for waiting in the
+// queue and writing out a run that used its whole deadline.
+//
+// However a streaming request ends (its run is done, it timed out, or the
+// client went away), its run is released, so one still going or still
+// queued gives up its thread at once instead of running to its deadline.
+@Configuration
+public class ExecutionConfig implements WebMvcConfigurer {
+    private static final long STREAMING_MARGIN_MILLIS = 60_000;
+
+    private final ExecutionService executions;
+
+    public ExecutionConfig(ExecutionService executions) {
+        this.executions = executions;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(executions.executor());
+        configurer.setDefaultTimeout(2 * executions.deadlineMillis() + STREAMING_MARGIN_MILLIS);
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                if (request.getAttribute(ExecutionService.EXECUTION_ID, RequestAttributes.SCOPE_REQUEST) instanceof String id) {
+                    executions.release(id);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,160 @@
+package com.kidcode.web.execution;
+
+import com.kidcode.core.ExecutionListener;
+import com.kidcode.core.event.EventSink;
+import com.kidcode.core.event.ExecutionEvent;
+import com.kidcode.core.evaluator.ResourceLimits;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+
+// Micrometer meters for program runs, published through Actuator
+// (/actuator/metrics, /actuator/prometheus):
+//
+//   kidcode.execution.phase{phase}     time per engine phase (lex, parse,
+//                                      analyze, compile, evaluate) and
+//                                      serialize, the time spent in the sink
+//   kidcode.execution.instructions     statements executed per run
+//   kidcode.execution.events           events emitted per run
+//   kidcode.executions{outcome,budget} runs by how they ended; timeouts are
+//                                      outcome=exhausted, budget=time
+//   kidcode.response.size              bytes written per /api response
+//
+// The engine phases come from KidCodeEngine's ExecutionListener hooks. Events
+// stream while the program runs, so "evaluate" here leaves out the time the
+// sink took, which is reported as "serialize" instead.
+@Component
+public class ExecutionMetrics {
+    private final MeterRegistry registry;
+    private final Map<ExecutionListener.Phase, Timer> phases = new EnumMap<>(ExecutionListener.Phase.class);
+    private final Timer serialize;
+    private final DistributionSummary instructions;
+    private final DistributionSummary events;
+    private final DistributionSummary responseSize;
+
+    public ExecutionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (ExecutionListener.Phase phase : ExecutionListener.Phase.values()) {
+            phases.put(phase, phaseTimer(phase.name()));
+        }
+        this.serialize = phaseTimer("SERIALIZE");
+        this.instructions = DistributionSummary.builder("kidcode.execution.instructions")
+            .description("Statements executed per run")
+            .publishPercentileHistogram()
+            .register(registry);
+        this.events = DistributionSummary.builder("kidcode.execution.events")
+            .description("Events emitted per run")
+            .publishPercentileHistogram()
+            .register(registry);
+        this.responseSize = DistributionSummary.builder("kidcode.response.size")
+            .description("Bytes written per response")
+            .baseUnit("bytes")
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    private Timer phaseTimer(String phase) {
+        return Timer.builder("kidcode.execution.phase")
+            .description("Time spent in each phase of a run")
+            .tag("phase", phase.toLowerCase(Locale.ROOT))
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    // A listener and sink wrapper for one run.
+    public Recorder recorder() {
+        return new Recorder();
+    }
+
+    // Wraps a response stream; record the count once the response is written.
+    public ByteCounter countBytes(OutputStream out) {
+        return new ByteCounter(out);
+    }
+
+    public void recordResponse(ByteCounter counter) {
+        responseSize.record(counter.count);
+    }
+
+    public final class Recorder implements ExecutionListener {
+        private long sinkNanos = 0;
+
+        @Override
+        public void phase(Phase phase, long nanos) {
+            if (phase == Phase.EVALUATE) {
+                nanos = Math.max(0, nanos - sinkNanos);
+            }
+            phases.get(phase).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void finished(Outcome outcome, ResourceLimits.Budget exhausted, long instructionCount, long eventCount) {
+            instructions.record(instructionCount);
+            events.record(eventCount);
+            Counter.builder("kidcode.executions")
+                .description("Runs by how they ended")
+                .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                .tag("budget", (exhausted != null) ? exhausted.name().toLowerCase(Locale.ROOT) : "none")
+                .register(registry)
+                .increment();
+        }
+
+        // Times everything the sink does, closing included.
+        public EventSink timed(EventSink sink) {
+            return new EventSink() {
+                @Override
+                public void accept(ExecutionEvent event) {
+                    long start = System.nanoTime();
+                    sink.accept(event);
+                    sinkNanos += System.nanoTime() - start;
+                }
+
+                @Override
+                public void flush() {
+                    long start = System.nanoTime();
+                    sink.flush();
+                    sinkNanos += System.nanoTime() - start;
+                }
+
+                @Override
+                public void close() {
+                    long start = System.nanoTime();
+                    try {
+                        sink.close();
+                    } finally {
+                        sinkNanos += System.nanoTime() - start;
+                        serialize.record(sinkNanos, TimeUnit.NANOSECONDS);
+                    }
+                }
+            };
+        }
+    }
+
+    public static final class ByteCounter extends FilterOutputStream {
+        private long count = 0;
+
+        private ByteCounter(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.kidcode.web.execution;
+
+import com.kidcode.core.ExecutionHandle;
+import com.kidcode.core.ExecutionListener;
+import com.kidcode.core.ExecutionMode;
+import com.kidcode.core.ExecutionResult;
+import com.kidcode.core.KidCodeEngine;
+import com.kidcode.core.batch.BatchRunner;
+import com.kidcode.core.batch.RunSummary;
+import com.kidcode.core.event.EventSink;
+import com.kidcode.core.evaluator.LineProfile;
+import com.kidcode.core.evaluator.ResourceLimits;
+import jakarta.annotation.PreDestroy;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+// Runs programs away from Tomcat's request threads, so a handful of long
+// programs cannot stall validation and static files.
+//
+//   - Streaming responses (/api/execute, /api/render) are written on a fixed
+//     pool of kidcode.execution.threads threads (default: one per CPU); see
+//     ExecutionConfig. Up to kidcode.execution.queue more wait for a thread.
+//     Those threads have KidCodeEngine.THREAD_STACK_SIZE stacks, so deep
+//     recursion ends at kidcode.execution.max-call-depth, not in a stack overflow.
+//   - Past that, requests are turned away at once with 503 and Retry-After
+//     instead of piling up.
+//   - Every run gets the engine's ResourceLimits with a wall-clock budget of
+//     kidcode.execution.deadline-ms, and smaller event, list, string and
+//     call-depth budgets if configured. A run that uses one up ends with an
+//     ErrorEvent saying which.
+//   - A kidcode.profile.sample-rate fraction of runs are profiled per line
+//     (see LineProfiler). When one of those runs out of a budget, its
+//     hottest lines are logged, so support can see where submissions that
+//     time out spend their time.
+//   - Every streamed run has an id (track()), sent as X-Execution-Id, so the
+//     client can follow or cancel it through /api/executions/{id}. When the
+//     request ends for any reason (done, timed out, client gone) the run is
+//     released: cancelled if it is still going or waiting for a thread.
+//   - /api/batch runs its programs on a separate pool of
+//     kidcode.batch.threads threads (BatchRunner.newPool, with the same
+//     stacks), each within the same limits, or lower ones the request asks for.
+@Component
+public class ExecutionService {
+    private static final Logger log = LoggerFactory.getLogger(ExecutionService.class);
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private final long deadlineMillis;
+    private final int retryAfterSeconds;
+    private final ResourceLimits limits;
+    private final ExecutionMetrics metrics;
+    private final double profileSampleRate;
+    private final int batchThreads;
+    private final ExecutorService batchPool;
+    private final Map<String, ExecutionHandle> running = new ConcurrentHashMap<>();
+
+    public ExecutionService(ExecutionMetrics metrics,
+                            @Value("${kidcode.execution.threads:0}") int threads,
+                            @Value("${kidcode.execution.queue:32}") int queue,
+                            @Value("${kidcode.execution.deadline-ms:10000}") long deadlineMillis,
+                            @Value("${kidcode.execution.retry-after-seconds:2}") int retryAfterSeconds,
+                            @Value("${kidcode.execution.max-events:2000000}") long maxEvents,
+                            @Value("${kidcode.execution.max-list-size:100000}") int maxListSize,
+                            @Value("${kidcode.execution.max-string-length:1000000}") int maxStringLength,
+                            @Value("${kidcode.execution.max-call-depth:1000}") int maxCallDepth,
+                            @Value("${kidcode.profile.sample-rate:0}") double profileSampleRate,
+                            @Value("${kidcode.batch.threads:0}") int batchThreads) {
+        int size = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setQueueCapacity(queue);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor.setThreadFactory(runnable -> new Thread(null, runnable,
+            "kidcode-exec-" + threadCount.incrementAndGet(), KidCodeEngine.THREAD_STACK_SIZE));
+        executor.initialize();
+        this.deadlineMillis = deadlineMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.metrics = metrics;
+        this.profileSampleRate = profileSampleRate;
+        this.batchThreads = (batchThreads > 0) ? batchThreads : Runtime.getRuntime().availableProcessors();
+        this.batchPool = BatchRunner.newPool(this.batchThreads);
+        this.limits = ResourceLimits.DEFAULT
+            .withTimeMillis(deadlineMillis)
+            .withEvents(maxEvents)
+            .withListSize(maxListSize)
+            .withStringLength(maxStringLength)
+            .withCallDepth(maxCallDepth);
+    }
+
+    public AsyncTaskExecutor executor() {
+        return executor;
+    }
+
+    public long deadlineMillis() {
+        return deadlineMillis;
+    }
+
+    public int retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    // Whether every thread is busy and the queue is full, so a new run
+    // would be rejected. A queue of 0 is always full, so the threads decide.
+    public boolean isSaturated() {
+        ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+        return pool.getQueue().remainingCapacity() == 0 && pool.getActiveCount() >= pool.getMaximumPoolSize();
+    }
+
+    // Request attribute holding the id of the request's run, for ExecutionConfig.
+    public static final String EXECUTION_ID = ExecutionService.class.getName() + ".id";
+
+    // Registers a run before it is queued, so it can be cancelled from the start.
+    public String track() {
+        String id = UUID.randomUUID().toString();
+        running.put(id, new ExecutionHandle());
+        return id;
+    }
+
+    // The tracked run, or null if there is none (any more).
+    public ExecutionHandle handle(String id) {
+        return running.get(id);
+    }
+
+    // Returns false if there is no such run.
+    public boolean cancel(String id) {
+        ExecutionHandle handle = running.get(id);
+        if (handle == null) return false;
+        handle.cancel();
+        return true;
+    }
+
+    // The request is over: stop the run if it has not finished and forget it.
+    public void release(String id) {
+        ExecutionHandle handle = running.remove(id);
+        if (handle != null) handle.cancel();
+    }
+
+    // Runs the tracked program into the sink (closing it) within the limits.
+    // Returns false if it was cancelled or the deadline ended it, so the
+    // result depends on timing.
+    public boolean run(String id, String code, EventSink sink) {
+        if (profileSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < profileSampleRate) {
+            Profiled profiled = profile(id, code, sink);
+            if (profiled.exhausted() != null) {
+                log.info("Run exhausted its {} budget; hottest lines: {}",
+                    profiled.exhausted().name().toLowerCase(Locale.ROOT), hottest(profiled.profile(), 3));
+            }
+            return isRepeatable(profiled.result());
+        }
+        ExecutionMetrics.Recorder recorder = metrics.recorder();
+        KidCodeEngine engine = new KidCodeEngine(ExecutionMode.INTERPRETER, limits, recorder);
+        return isRepeatable(engine.execute(code, recorder.timed(sink), handleFor(id)));
+    }
+
+    // A profiled run and how it ended.
+    public record Profiled(LineProfile profile, ExecutionResult result) {
+        // The budget that ended it, or null if none did.
+        public ResourceLimits.Budget exhausted() {
+            return result.exhausted();
+        }
+    }
+
+    // Runs the tracked program like run() and also returns its per-line profile.
+    public Profiled profile(String id, String code, EventSink sink) {
+        ExecutionMetrics.Recorder recorder = metrics.recorder();
+        KidCodeEngine engine = new KidCodeEngine(ExecutionMode.INTERPRETER, limits, recorder);
+        ExecutionHandle handle = handleFor(id);
+        LineProfile profile = engine.profile(code, recorder.timed(sink), handle);
+        return new Profiled(profile, handle.result().join());
+    }
+
+    // A run released before it started belongs to a request that is already
+    // over, so it gets a cancelled handle and never runs.
+    private ExecutionHandle handleFor(String id) {
+        ExecutionHandle handle = running.get(id);
+        if (handle == null) {
+            handle = new ExecutionHandle();
+            handle.cancel();
+        }
+        return handle;
+    }
+
+    private static boolean isRepeatable(ExecutionResult result) {
+        return result.exhausted() != ResourceLimits.Budget.TIME
+            && result.outcome() != ExecutionListener.Outcome.STOPPED;
+    }
+
+    // The limits every run gets.
+    public ResourceLimits limits() {
+        return limits;
+    }
+
+    // The server's limits, lowered to what the caller asks for (null keeps the server's).
+    public ResourceLimits limits(Long maxInstructions, Long deadlineMillis) {
+        ResourceLimits result = limits;
+        if (maxInstructions != null && maxInstructions >= 0) {
+            result = result.withInstructions(Math.min(maxInstructions, limits.instructions()));
+        }
+        if (deadlineMillis != null && deadlineMillis > 0) {
+            result = result.withTimeMillis((limits.timeMillis() > 0) ? Math.min(deadlineMillis, limits.timeMillis()) : deadlineMillis);
+        }
+        return result;
+    }
+
+    // Runs every program (programs without limits get the server's) and
+    // returns their summaries in order.
+    public List<RunSummary> batch(List<BatchRunner.Program> programs) {
+        return new BatchRunner(ExecutionMode.INTERPRETER, limits, batchPool).run(programs);
+    }
+
+    // How long a batch of 'count' programs can take if each one uses its
+    // whole deadline.
+    public long batchDeadlineMillis(int count) {
+        int rounds = (count + batchThreads - 1) / batchThreads;
+        return Math.max(1, rounds) * deadlineMillis;
+    }
+
+    // "line 7 (12000 runs, 85 ms), ..." for the 'n' lines with the most self time.
+    private static String hottest(LineProfile profile, int n) {
+        return profile.lines().stream()
+            .sorted(Comparator.comparingLong(LineProfile.Line::selfNanos).reversed())
+            .limit(n)
+            .map(line -> "line " + line.lineNumber() + " (" + line.count() + " runs, "
+                + TimeUnit.NANOSECONDS.toMillis(line.selfNanos()) + " ms)")
+            .collect(Collectors.joining(", "));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        batchPool.shutdown();
+    }
+}
@@ -0,0 +1,60 @@
+package com.kidcode.web.validation;
+
+import com.kidcode.core.parser.ValidationSession;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// The editors' open ValidationSessions, by id. Each browser tab keeps one
+// and sends its edits instead of the whole document; the least recently
+// used sessions are dropped past kidcode.validation.max-sessions, and a tab
+// whose session is gone simply opens a new one.
+@Component
+public class ValidationSessions {
+
+    // A session, its id, and the editor version its text matches.
+    public static final class Entry {
+        private final String id;
+        private final ValidationSession session;
+        private int version;
+
+        Entry(String id, ValidationSession session, int version) {
+            this.id = id;
+            this.session = session;
+            this.version = version;
+        }
+
+        public String id() { return id; }
+        public ValidationSession session() { return session; }
+        public int version() { return version; }
+        public void setVersion(int version) { this.version = version; }
+    }
+
+    private final Map<String, Entry> sessions;
+
+    public ValidationSessions(@Value("${kidcode.validation.max-sessions:1000}") int maxSessions) {
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSessions;
+            }
+        };
+    }
+
+    // Returns the new session itself: with many tabs opening at once (or
+    // max-sessions 0) it may already be dropped again by the time it is looked up.
+    public Entry open(String code, int version) {
+        Entry entry = new Entry(UUID.randomUUID().toString(), new ValidationSession(code), version);
+        synchronized (this) {
+            sessions.put(entry.id(), entry);
+        }
+        return entry;
+    }
+
+    // Null when the session expired or never existed.
+    public synchronized Entry get(String id) {
+        return sessions.get(id);
+    }
+}
@@ -10,6 +10,7 @@ const helpButton = document.getElementById("help-button");
 const helpModal = document.getElementById("help-modal");
 const closeButton = document.querySelector(".close-button");
 const downloadButton = document.getElementById("download-btn");
+const profileButton = document.getElementById("profile-button");
 
 // --- Key for browser's local storage ---
 const KIDCODE_STORAGE_KEY = "kidcode.savedCode";
@@ -17,6 +18,14 @@ const KIDCODE_STORAGE_KEY = "kidcode.savedCode";
 // --- MONACO: Global variable to hold the editor instance ---
 let editor;
 let validationTimeout;
+// Incremental validation: the server keeps the document in a session and
+// gets only the edits made since the last request.
+let validationSession = null; // { id, version }
+let pendingChanges = [];
+let validationInFlight = false;
+let validationQueued = false;
+// Heat-map decorations from the last profile; cleared on the next edit.
+let profileDecorations = [];
 
 // --- MONACO: Function to define and register our custom language ---
 function registerKidCodeLanguage() {
@@ -127,10 +136,24 @@ require(["vs/editor/editor.main"], function () {
   });
 
   // Monaco live validation and auto-saving
-  editor.onDidChangeModelContent(() => {
+  editor.onDidChangeModelContent((e) => {
     // Save the current code to local storage
     localStorage.setItem(KIDCODE_STORAGE_KEY, editor.getValue());
 
+    // The changes of one event all refer to the text before it; applied from
+    // the end of the document backwards, each leaves the others' offsets valid.
+    const changes = [...e.changes].sort((a, b) => b.rangeOffset - a.rangeOffset);
+    for (const change of changes) {
+      pendingChanges.push({
+        rangeOffset: change.rangeOffset,
+        rangeLength: change.rangeLength,
+        text: change.text,
+      });
+    }
+
+    // The profile no longer matches the code
+    clearProfile();
+
     // Debounce validation
     clearTimeout(validationTimeout);
     validationTimeout = setTimeout(validateCode, 500);
@@ -180,9 +203,14 @@ runButton.addEventListener("click", async () => {
   outputArea.textContent = "";
 
   try {
+    // Ask for a streamed format so we can draw while the program is still
+    // running: the compact binary one, or NDJSON as a fallback.
     const response = await fetch("/api/execute", {
       method: "POST",
-      headers: { "Content-Type": "application/json" },
+      headers: {
+        "Content-Type": "application/json",
+        Accept: `${BINARY_EVENTS_TYPE}, application/x-ndjson;q=0.9`,
+      },
       body: JSON.stringify({ code }),
     });
 
@@ -190,13 +218,72 @@ runButton.addEventListener("click", async () => {
       throw new Error(`HTTP error! status: ${response.status}`);
     }
 
-    const events = await response.json();
-    renderEvents(events);
+    await streamEvents(response);
   } catch (error) {
     logToOutput(`Network or server error: ${error.message}`, "error");
   }
 });
 
+// --- Profile button: per-line heat-map ---
+// Runs the program with the profiler and colors each line that ran by its
+// share of the run's time; hovering a line shows its numbers.
+const HEAT_LEVELS = 5;
+
+if (profileButton) {
+  profileButton.addEventListener("click", async () => {
+    clearProfile();
+    outputArea.textContent = "";
+    try {
+      const response = await fetch("/api/profile", {
+        method: "POST",
+        headers: { "Content-Type": "application/json" },
+        body: JSON.stringify({ code: editor.getValue() }),
+      });
+      if (!response.ok) {
+        throw new Error(`HTTP error! status: ${response.status}`);
+      }
+      showProfile(await response.json());
+    } catch (error) {
+      logToOutput(`Network or server error: ${error.message}`, "error");
+    }
+  });
+}
+
+function showProfile(profile) {
+  profile.errors.forEach((message) => logToOutput(`ERROR: ${message}`, "error"));
+  const maxNanos = Math.max(1, ...profile.lines.map((line) => line.selfNanos));
+  const lineCount = editor.getModel().getLineCount();
+  const decorations = profile.lines
+    .filter((line) => line.lineNumber <= lineCount)
+    .map((line) => {
+      const level = Math.min(HEAT_LEVELS, Math.ceil((line.selfNanos / maxNanos) * HEAT_LEVELS));
+      const share = profile.totalNanos > 0 ? (100 * line.selfNanos) / profile.totalNanos : 0;
+      return {
+        range: new monaco.Range(line.lineNumber, line.column, line.lineNumber, line.column),
+        options: {
+          isWholeLine: true,
+          className: `heat-line heat-${level}`,
+          linesDecorationsClassName: `heat-bar heat-${level}`,
+          hoverMessage: {
+            value: `Ran ${line.count} times, ${(line.selfNanos / 1e6).toFixed(2)} ms ` +
+              `(${share.toFixed(1)}%), ${line.events} events`,
+          },
+        },
+      };
+    });
+  profileDecorations = editor.deltaDecorations(profileDecorations, decorations);
+  const total = (profile.totalNanos / 1e6).toFixed(2);
+  logToOutput(profile.exhausted
+    ? `Profile: stopped by the ${profile.exhausted.replace("_", " ")} limit after ${total} ms. Hover the colored lines for details.`
+    : `Profile: ran in ${total} ms. Hover the colored lines for details.`);
+}
+
+function clearProfile() {
+  if (editor && profileDecorations.length > 0) {
+    profileDecorations = editor.deltaDecorations(profileDecorations, []);
+  }
+}
+
 // --- NEW: Event listener for Download button ---
 if (downloadButton) {
   downloadButton.addEventListener("click", () => {
@@ -214,26 +301,63 @@ if (downloadButton) {
 }
 
 // --- NEW: Function to handle validation ---
+// Sends the pending edits to the validation session, or opens a new session
+// with the whole document when there is none (or the server lost it).
+// One request at a time, so edits always reach the server in order.
 async function validateCode() {
-  const code = editor.getValue();
+  if (validationInFlight) {
+    validationQueued = true;
+    return;
+  }
+  validationInFlight = true;
+  const model = editor.getModel();
   try {
-    const response = await fetch("/api/validate", {
-      method: "POST",
-      headers: { "Content-Type": "application/json" },
-      body: JSON.stringify({ code: code }),
-    });
-    const errors = await response.json();
-    const markers = errors.map((err) => ({
+    const version = model.getVersionId();
+    let result = null;
+    if (validationSession) {
+      const changes = pendingChanges;
+      pendingChanges = [];
+      const response = await fetch(`/api/validate/sessions/${validationSession.id}`, {
+        method: "POST",
+        headers: { "Content-Type": "application/json" },
+        body: JSON.stringify({
+          baseVersion: validationSession.version,
+          version: version,
+          changes: changes,
+        }),
+      });
+      if (response.ok) {
+        result = await response.json();
+      }
+    }
+    if (!result) {
+      pendingChanges = [];
+      const response = await fetch("/api/validate/sessions", {
+        method: "POST",
+        headers: { "Content-Type": "application/json" },
+        body: JSON.stringify({ code: model.getValue(), version: version }),
+      });
+      result = await response.json();
+    }
+    validationSession = { id: result.sessionId, version: result.version };
+    const markers = result.errors.map((err) => ({
       message: err.message,
       severity: monaco.MarkerSeverity.Error,
       startLineNumber: err.lineNumber,
       endLineNumber: err.lineNumber,
-      startColumn: 1,
-      endColumn: 100,
+      startColumn: err.column,
+      endColumn: model.getLineMaxColumn(Math.min(err.lineNumber, model.getLineCount())),
     }));
-    monaco.editor.setModelMarkers(editor.getModel(), "kidcode", markers);
+    monaco.editor.setModelMarkers(model, "kidcode", markers);
   } catch (error) {
+    validationSession = null; // start over with the whole document next time
     console.error("Validation request failed:", error);
+  } finally {
+    validationInFlight = false;
+    if (validationQueued) {
+      validationQueued = false;
+      validateCode();
+    }
   }
 }
 
@@ -274,60 +398,235 @@ function logToOutput(message, type = "info") {
   outputArea.appendChild(line);
 }
 
-// Store lines and Cody state for redraw
-let drawnLines = [];
+// Lines are drawn once onto an offscreen canvas as they arrive; each frame
+// copies it to the screen and draws Cody on top. Nothing else is kept, so
+// memory does not grow with the length of the drawing.
+const linesCanvas = document.createElement("canvas");
+linesCanvas.width = drawingCanvas.width;
+linesCanvas.height = drawingCanvas.height;
+const linesCtx = linesCanvas.getContext("2d");
 let codyState = { x: 250, y: 250, direction: 0, color: "blue" };
+let redrawPending = false;
+
+const BINARY_EVENTS_TYPE = "application/x-kidcode-events";
+
+// Renders a streamed response as it arrives, in whichever format the server chose.
+async function streamEvents(response) {
+  const contentType = response.headers.get("Content-Type") || "";
+  const push = contentType.startsWith(BINARY_EVENTS_TYPE)
+    ? createBinaryDecoder(renderEvent)
+    : createNdjsonDecoder(renderEvent);
+  const reader = response.body.getReader();
+  while (true) {
+    const { done, value } = await reader.read();
+    push(done ? null : value);
+    scheduleRedraw();
+    if (done) break;
+  }
+}
 
-function renderEvents(events) {
-  if (!events || events.length === 0) return;
+// Splits NDJSON into lines; call with null at the end of the stream.
+function createNdjsonDecoder(onEvent) {
+  const decoder = new TextDecoder();
+  let buffered = "";
+  return (chunk) => {
+    buffered += chunk ? decoder.decode(chunk, { stream: true }) : decoder.decode();
+    const lines = buffered.split("\n");
+    buffered = chunk ? lines.pop() : "";
+    for (const line of lines) {
+      if (line.trim()) onEvent(JSON.parse(line));
+    }
+  };
+}
+
+// Decodes the binary event format (see BinaryEventFormat.java in kidcode-core)
+// into the same event objects as the JSON formats. Records may be split across
+// chunks, so an incomplete record is kept until the next chunk arrives.
+function createBinaryDecoder(onEvent) {
+  const INCOMPLETE = {};
+  const textDecoder = new TextDecoder();
+  const palette = [];
+  const texts = [];
+  let lastX = 0;
+  let lastY = 0;
+  let direction = 0;
+  let color = null;
+  let headerRead = false;
+  let pending = new Uint8Array(0);
+  let bytes;
+  let pos;
+
+  function readByte() {
+    if (pos >= bytes.length) throw INCOMPLETE;
+    return bytes[pos++];
+  }
+  function readVarint() {
+    let value = 0;
+    for (let shift = 0; ; shift += 7) {
+      const b = readByte();
+      value += (b & 0x7f) * 2 ** shift;
+      if ((b & 0x80) === 0) return value;
+    }
+  }
+  function readSigned() {
+    const v = readVarint();
+    return v % 2 === 0 ? v / 2 : -(v + 1) / 2;
+  }
+  function readDouble() {
+    if (pos + 8 > bytes.length) throw INCOMPLETE;
+    const value = new DataView(bytes.buffer, bytes.byteOffset + pos, 8).getFloat64(0);
+    pos += 8;
+    return value;
+  }
+  function readString() {
+    const length = readVarint();
+    if (pos + length > bytes.length) throw INCOMPLETE;
+    const text = textDecoder.decode(bytes.subarray(pos, pos + length));
+    pos += length;
+    return text;
+  }
 
-  for (const event of events) {
-    switch (event.type) {
-      case "ClearEvent":
-        drawnLines = [];
-        codyState = { x: 250, y: 250, direction: 0, color: "blue" };
+  // Reads one record; state only changes once the whole record is available.
+  function readRecord() {
+    const tag = readByte();
+    switch (tag & 0x07) {
+      case 0:
+        onEvent({ type: "ClearEvent" });
         break;
-      case "MoveEvent":
-        if (
-          event.isPenDown &&
-          (event.fromX !== event.toX || event.fromY !== event.toY)
-        ) {
-          drawnLines.push({
-            fromX: event.fromX,
-            fromY: event.fromY,
-            toX: event.toX,
-            toY: event.toY,
-            color: event.color,
-          });
+      case 1: {
+        let fromX = lastX;
+        let fromY = lastY;
+        if (tag & 0x10) {
+          fromX += readSigned();
+          fromY += readSigned();
+        }
+        let toX = fromX;
+        let toY = fromY;
+        if (tag & 0x20) {
+          toX += readSigned();
+          toY += readSigned();
         }
-        codyState = {
-          x: event.toX,
-          y: event.toY,
-          direction: event.newDirection,
-          color: event.color,
-        };
+        let newDirection = direction;
+        if (tag & 0x40) newDirection = readSigned();
+        else if (tag & 0x80) newDirection = readDouble();
+        lastX = toX;
+        lastY = toY;
+        direction = newDirection;
+        onEvent({
+          type: "MoveEvent",
+          fromX,
+          fromY,
+          toX,
+          toY,
+          newDirection,
+          isPenDown: (tag & 0x08) !== 0,
+          color,
+        });
+        break;
+      }
+      case 2:
+        color = palette[readVarint()];
+        break;
+      case 3:
+        palette.push(readString());
         break;
-      case "SayEvent":
-        logToOutput(`Cody says: ${event.message}`);
+      case 4:
+        texts.push(readString());
         break;
-      case "ErrorEvent":
-        logToOutput(`ERROR: ${event.errorMessage}`, "error");
+      case 5:
+        onEvent({ type: "SayEvent", message: texts[readVarint()] });
         break;
+      case 6:
+        onEvent({ type: "ErrorEvent", errorMessage: texts[readVarint()] });
+        break;
+      default:
+        throw new Error(`Unknown event record ${tag & 0x07}`);
+    }
+  }
+
+  return (chunk) => {
+    if (!chunk) {
+      if (pending.length > 0) throw new Error("Truncated event stream");
+      return;
+    }
+    bytes = new Uint8Array(pending.length + chunk.length);
+    bytes.set(pending);
+    bytes.set(chunk, pending.length);
+    pos = 0;
+    if (!headerRead) {
+      if (bytes.length < 4) {
+        pending = bytes;
+        return;
+      }
+      pos = 4; // "KCE1"
+      headerRead = true;
+    }
+    let recordStart = pos;
+    try {
+      while (pos < bytes.length) {
+        readRecord();
+        recordStart = pos;
+      }
+    } catch (e) {
+      if (e !== INCOMPLETE) throw e;
     }
+    pending = bytes.slice(recordStart);
+  };
+}
+
+function renderEvents(events) {
+  if (!events || events.length === 0) return;
+  events.forEach(renderEvent);
+  scheduleRedraw();
+}
+
+function renderEvent(event) {
+  switch (event.type) {
+    case "ClearEvent":
+      linesCtx.clearRect(0, 0, linesCanvas.width, linesCanvas.height);
+      codyState = { x: 250, y: 250, direction: 0, color: "blue" };
+      break;
+    case "MoveEvent":
+      if (
+        event.isPenDown &&
+        (event.fromX !== event.toX || event.fromY !== event.toY)
+      ) {
+        linesCtx.beginPath();
+        linesCtx.moveTo(event.fromX, event.fromY);
+        linesCtx.lineTo(event.toX, event.toY);
+        linesCtx.strokeStyle = event.color;
+        linesCtx.lineWidth = 2;
+        linesCtx.stroke();
+      }
+      codyState = {
+        x: event.toX,
+        y: event.toY,
+        direction: event.newDirection,
+        color: event.color,
+      };
+      break;
+    case "SayEvent":
+      logToOutput(`Cody says: ${event.message}`);
+      break;
+    case "ErrorEvent":
+      logToOutput(`ERROR: ${event.errorMessage}`, "error");
+      break;
   }
-  redrawCanvas();
+}
+
+// Coalesces redraws to at most one per animation frame.
+function scheduleRedraw() {
+  if (redrawPending) return;
+  redrawPending = true;
+  requestAnimationFrame(() => {
+    redrawPending = false;
+    redrawCanvas();
+  });
 }
 
 function redrawCanvas() {
   ctx.clearRect(0, 0, drawingCanvas.width, drawingCanvas.height);
-  drawnLines.forEach((line) => {
-    ctx.beginPath();
-    ctx.moveTo(line.fromX, line.fromY);
-    ctx.lineTo(line.toX, line.toY);
-    ctx.strokeStyle = line.color;
-    ctx.lineWidth = 2;
-    ctx.stroke();
-  });
+  ctx.drawImage(linesCanvas, 0, 0);
   drawCody(codyState.x, codyState.y, codyState.direction, codyState.color);
 }
 
@@ -0,0 +1,210 @@
+package com.kidcode.web.cache;
+
+import com.kidcode.core.event.BinaryEventWriter;
+import com.kidcode.core.event.ExecutionEvent;
+import com.kidcode.core.evaluator.ResourceLimits;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ExecutionCacheTest {
+
+    private static final List<ExecutionEvent> EVENTS = List.of(
+        new ExecutionEvent.ClearEvent(),
+        new ExecutionEvent.MoveEvent(250, 250, 250, 200, 0, true, "blue"),
+        new ExecutionEvent.SayEvent("done"));
+
+    // A run that sends EVENTS, counting how often it is called.
+    private static ExecutionCache.Run counted(AtomicInteger runs, boolean keep) {
+        return sink -> {
+            runs.incrementAndGet();
+            try (sink) {
+                EVENTS.forEach(sink::accept);
+            }
+            return keep;
+        };
+    }
+
+    private static final ExecutionCache.Run NEVER = sink -> {
+        throw new AssertionError("should have been served from the cache");
+    };
+
+    private static List<ExecutionEvent> execute(ExecutionCache cache, String key, ExecutionCache.Run run) {
+        List<ExecutionEvent> events = new ArrayList<>();
+        cache.execute(key, run, events::add);
+        return events;
+    }
+
+    // Bytes one stored EVENTS takes.
+    private static long entryBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BinaryEventWriter writer = new BinaryEventWriter(bytes)) {
+            EVENTS.forEach(writer::accept);
+        }
+        return bytes.size();
+    }
+
+    @Test
+    public void repeatedRunsAreServedFromMemory() {
+        ExecutionCache cache = new ExecutionCache(1 << 20, "", 0);
+        AtomicInteger runs = new AtomicInteger();
+        assertFalse(cache.contains("a"));
+        assertEquals(EVENTS, execute(cache, "a", counted(runs, true)));
+        assertTrue(cache.contains("a"));
+        assertEquals(EVENTS, execute(cache, "a", NEVER));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void resultsThatAreNotKeptRunAgain() {
+        ExecutionCache cache = new ExecutionCache(1 << 20, "", 0);
+        AtomicInteger runs = new AtomicInteger();
+        execute(cache, "a", counted(runs, false));
+        assertFalse(cache.contains("a"));
+        assertEquals(EVENTS, execute(cache, "a", counted(runs, false)));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void concurrentIdenticalRequestsShareOneRun() throws Exception {
+        ExecutionCache cache = new ExecutionCache(1 << 20, "", 0);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutionCache.Run slow = sink -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return counted(runs, true).execute(sink);
+        };
+        ExecutorService threads = Executors.newFixedThreadPool(9);
+        try {
+            Future<List<ExecutionEvent>> leader = threads.submit(() -> execute(cache, "a", slow));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            List<Future<List<ExecutionEvent>>> followers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                followers.add(threads.submit(() -> execute(cache, "a", counted(runs, true))));
+            }
+            Thread.sleep(50); // let the followers find the leader
+            release.countDown();
+            assertEquals(EVENTS, leader.get(10, TimeUnit.SECONDS));
+            for (Future<List<ExecutionEvent>> follower : followers) {
+                assertEquals(EVENTS, follower.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, runs.get());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void followersRunThemselvesWhenTheLeaderResultIsNotKept() throws Exception {
+        ExecutionCache cache = new ExecutionCache(1 << 20, "", 0);
+        AtomicInteger followerRuns = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutionCache.Run cutShort = sink -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            sink.accept(new ExecutionEvent.ClearEvent());
+            sink.close();
+            return false; // e.g. the deadline ended it
+        };
+        ExecutorService threads = Executors.newFixedThreadPool(3);
+        try {
+            Future<List<ExecutionEvent>> leader = threads.submit(() -> execute(cache, "a", cutShort));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<List<ExecutionEvent>> first = threads.submit(() -> execute(cache, "a", counted(followerRuns, true)));
+            Future<List<ExecutionEvent>> second = threads.submit(() -> execute(cache, "a", counted(followerRuns, true)));
+            Thread.sleep(50);
+            release.countDown();
+            assertEquals(List.of(new ExecutionEvent.ClearEvent()), leader.get(10, TimeUnit.SECONDS));
+            assertEquals(EVENTS, first.get(10, TimeUnit.SECONDS));
+            assertEquals(EVENTS, second.get(10, TimeUnit.SECONDS));
+            assertEquals(2, followerRuns.get());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedPastMaxBytes() {
+        long entry = entryBytes();
+        ExecutionCache cache = new ExecutionCache(8 * entry, "", 0); // exactly eight entries
+        AtomicInteger runs = new AtomicInteger();
+        for (int i = 0; i < 8; i++) {
+            execute(cache, "k" + i, counted(runs, true));
+        }
+        execute(cache, "k0", NEVER); // now k1 is the eldest
+        execute(cache, "k8", counted(runs, true));
+        assertTrue(cache.contains("k0"));
+        assertFalse(cache.contains("k1"));
+        for (int i = 2; i <= 8; i++) {
+            assertTrue(cache.contains("k" + i), "k" + i);
+        }
+    }
+
+    @Test
+    public void doesNotKeepRunsLargerThanAnEighthOfMaxBytes() {
+        ExecutionCache cache = new ExecutionCache(8 * entryBytes() - 8, "", 0);
+        AtomicInteger runs = new AtomicInteger();
+        assertEquals(EVENTS, execute(cache, "a", counted(runs, true)));
+        assertFalse(cache.contains("a"));
+    }
+
+    @Test
+    public void diskEntriesSurviveARestart(@TempDir Path dir) {
+        AtomicInteger runs = new AtomicInteger();
+        execute(new ExecutionCache(1 << 20, dir.toString(), 1 << 20), "a", counted(runs, true));
+
+        ExecutionCache restarted = new ExecutionCache(1 << 20, dir.toString(), 1 << 20);
+        assertTrue(restarted.contains("a"));
+        assertEquals(EVENTS, execute(restarted, "a", NEVER));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void diskTierDropsTheOldestFilesPastItsLimit(@TempDir Path dir) throws Exception {
+        ExecutionCache cache = new ExecutionCache(1 << 20, dir.toString(), 2 * entryBytes());
+        AtomicInteger runs = new AtomicInteger();
+        execute(cache, "a", counted(runs, true));
+        Thread.sleep(20); // distinct modification times
+        execute(cache, "b", counted(runs, true));
+        Thread.sleep(20);
+        execute(cache, "c", counted(runs, true));
+
+        ExecutionCache restarted = new ExecutionCache(1 << 20, dir.toString(), 2 * entryBytes());
+        assertFalse(restarted.contains("a"));
+        assertTrue(restarted.contains("b"));
+        assertTrue(restarted.contains("c"));
+    }
+
+    @Test
+    public void keysCoverTheOptionsAndLimits() {
+        ResourceLimits limits = ResourceLimits.DEFAULT;
+        String key = ExecutionCache.key("move forward 10", false, 0, limits);
+        assertEquals(key, ExecutionCache.key("move forward 10", false, 0, limits));
+        assertNotEquals(key, ExecutionCache.key("move forward 10", true, 0, limits));
+        assertNotEquals(key, ExecutionCache.key("move forward 10", false, 5, limits));
+        assertNotEquals(key, ExecutionCache.key("move forward 10", false, 0, limits.withCallDepth(10)));
+        assertEquals(ExecutionCache.key("", false, 0, limits), ExecutionCache.key(null, false, 0, limits));
+        assertNotEquals(ExecutionCache.key("null", false, 0, limits), ExecutionCache.key(null, false, 0, limits));
+    }
+}
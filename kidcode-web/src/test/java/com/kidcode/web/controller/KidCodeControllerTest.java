@@ -0,0 +1,154 @@
+package com.kidcode.web.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kidcode.web.cache.ExecutionCache;
+import com.kidcode.web.execution.ExecutionMetrics;
+import com.kidcode.web.execution.ExecutionService;
+import com.kidcode.web.validation.ValidationSessions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// The ETag / If-None-Match and 503 paths of /api/execute against a real
+// ExecutionCache and ExecutionService.
+public class KidCodeControllerTest {
+
+    private static final String SQUARE = "{\"code\": \"repeat 4\\n    move forward 50\\n    turn right 90\\nend repeat\\n\"}";
+    private static final String ENDLESS = "{\"code\": \"set i = 0\\nrepeat 2000000000\\n    set i = i + 1\\nend repeat\\n\"}";
+
+    private ExecutionService executions;
+
+    // A controller whose runs get 'deadlineMillis' each.
+    private MockMvc mvc(long deadlineMillis) {
+        return mvc(deadlineMillis, 2, 8);
+    }
+
+    private MockMvc mvc(long deadlineMillis, int threads, int queue) {
+        ExecutionMetrics metrics = new ExecutionMetrics(new SimpleMeterRegistry());
+        executions = new ExecutionService(metrics, threads, queue, deadlineMillis, 2,
+            2_000_000, 100_000, 1_000_000, 1000, 0, 0);
+        KidCodeController controller = new KidCodeController(new ObjectMapper(), new ExecutionCache(1 << 20, "", 0),
+            new ValidationSessions(10), executions, metrics, 1000);
+        return MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executions.shutdown();
+    }
+
+    // Runs the request to the end and returns the finished response.
+    private static MvcResult execute(MockMvc mvc, String body, String ifNoneMatch) throws Exception {
+        var request = post("/api/execute").contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON).content(body);
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        MvcResult result = mvc.perform(request).andReturn();
+        if (!result.getRequest().isAsyncStarted()) {
+            return result;
+        }
+        return mvc.perform(asyncDispatch(result)).andReturn();
+    }
+
+    @Test
+    public void onlyCachedResultsCarryAnETag() throws Exception {
+        MockMvc mvc = mvc(10_000);
+        MvcResult fresh = execute(mvc, SQUARE, null);
+        assertEquals(200, fresh.getResponse().getStatus());
+        assertNull(fresh.getResponse().getHeader(HttpHeaders.ETAG));
+
+        MvcResult cached = execute(mvc, SQUARE, null);
+        String eTag = cached.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+        assertEquals(fresh.getResponse().getContentAsString(), cached.getResponse().getContentAsString());
+
+        MvcResult revalidated = execute(mvc, SQUARE, eTag);
+        assertEquals(304, revalidated.getResponse().getStatus());
+        assertEquals(eTag, revalidated.getResponse().getHeader(HttpHeaders.ETAG));
+        assertEquals(304, execute(mvc, SQUARE, "*").getResponse().getStatus());
+    }
+
+    @Test
+    public void runsCutShortAreNeverNotModified() throws Exception {
+        MockMvc mvc = mvc(1); // well before the instruction budget, which would be a repeatable result
+        MvcResult first = execute(mvc, ENDLESS, null);
+        assertTrue(first.getResponse().getContentAsString().contains("Time limit exceeded"));
+        assertNull(first.getResponse().getHeader(HttpHeaders.ETAG));
+
+        // The tag the result would have had: still a full run, not a 304.
+        String key = ExecutionCache.key("set i = 0\nrepeat 2000000000\n    set i = i + 1\nend repeat\n", false, 0, executions.limits());
+        String eTag = "\"" + key.substring(0, 32) + "-json\"";
+        for (String ifNoneMatch : new String[] { eTag, "*" }) {
+            MvcResult again = execute(mvc, ENDLESS, ifNoneMatch);
+            assertEquals(200, again.getResponse().getStatus());
+            assertNull(again.getResponse().getHeader(HttpHeaders.ETAG));
+        }
+    }
+
+    @Test
+    public void blankCodeIsAnErrorAndNeverCached() throws Exception {
+        MockMvc mvc = mvc(10_000);
+        for (String body : new String[] { "{\"code\": null}", "{\"code\": \"  \"}", "{\"code\": null}" }) {
+            MvcResult result = execute(mvc, body, "*");
+            assertEquals(200, result.getResponse().getStatus());
+            assertEquals("[{\"type\":\"ErrorEvent\",\"errorMessage\":\"Code cannot be empty.\"}]",
+                result.getResponse().getContentAsString());
+            assertNull(result.getResponse().getHeader(HttpHeaders.ETAG));
+        }
+    }
+
+    @Test
+    public void aFullQueueIsTurnedAwayButCachedResultsAreNot() throws Exception {
+        for (int queue : new int[] { 0, 1 }) {
+            MockMvc mvc = mvc(10_000, 1, queue);
+            assertFalse(executions.isSaturated(), "queue " + queue);
+            assertEquals(200, execute(mvc, SQUARE, null).getResponse().getStatus());
+
+            // Take the one thread, and the queue slot if there is one.
+            ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) executions.executor();
+            CountDownLatch release = new CountDownLatch(1);
+            Runnable blocker = () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            for (int i = 0; i <= queue; i++) {
+                while (true) {
+                    try {
+                        executor.execute(blocker);
+                        break;
+                    } catch (TaskRejectedException e) {
+                        Thread.sleep(1); // the thread has not yet gone back for work
+                    }
+                }
+            }
+            while (!executions.isSaturated()) {
+                Thread.sleep(1);
+            }
+
+            MvcResult busy = execute(mvc, ENDLESS, null);
+            assertEquals(503, busy.getResponse().getStatus(), "queue " + queue);
+            assertEquals("2", busy.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+            MvcResult cached = execute(mvc, SQUARE, null);
+            assertEquals(200, cached.getResponse().getStatus());
+            assertNotNull(cached.getResponse().getHeader(HttpHeaders.ETAG));
+
+            release.countDown();
+            executions.shutdown();
+        }
+    }
+}